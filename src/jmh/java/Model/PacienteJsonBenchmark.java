@@ -0,0 +1,125 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Benchmark JMH de la serialización JSON-B de pacientes: un paciente suelto
+ * (respuesta de buscarPorId) y listas grandes (respuesta de listar y de
+ * exportar), tanto a String como directamente a un flujo de salida.
+ * También compara el formato columnar y el costo de comprimir con gzip; el
+ * tamaño resultante de cada variante se imprime al preparar el estado.
+ */
+import Controller.PacientesColumnarWriter;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacienteJsonBenchmark {
+
+    @Param({"100", "10000"})
+    public int tamano;
+
+    private Jsonb jsonb;
+    private Paciente paciente;
+    private List<Paciente> pacientes;
+    private PacientesColumnarWriter columnar;
+
+    @Setup
+    public void preparar() {
+        jsonb = JsonbBuilder.create();
+        paciente = paciente(1);
+        pacientes = new ArrayList<>(tamano);
+        for (int i = 1; i <= tamano; i++) {
+            pacientes.add(paciente(i));
+        }
+        columnar = new PacientesColumnarWriter();
+        byte[] json = jsonb.toJson(pacientes).getBytes(StandardCharsets.UTF_8);
+        byte[] compacto = columnar();
+        System.out.printf("%n  tamano=%d json=%d bytes (gzip %d), columnar=%d bytes (gzip %d)%n",
+                tamano, json.length, gzip(json).length, compacto.length, gzip(compacto).length);
+    }
+
+    @TearDown
+    public void cerrar() throws Exception {
+        jsonb.close();
+    }
+
+    @Benchmark
+    public String serializarPaciente() {
+        return jsonb.toJson(paciente);
+    }
+
+    @Benchmark
+    public String serializarLista() {
+        return jsonb.toJson(pacientes);
+    }
+
+    @Benchmark
+    public void serializarListaAFlujo() {
+        jsonb.toJson(pacientes, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public byte[] serializarListaColumnar() {
+        return columnar();
+    }
+
+    @Benchmark
+    public byte[] serializarListaGzip() {
+        return gzip(jsonb.toJson(pacientes).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] serializarListaColumnarGzip() {
+        return gzip(columnar());
+    }
+
+    private byte[] columnar() {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        columnar.writeTo(pacientes, List.class, List.class, null, null, null, salida);
+        return salida.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    private static Paciente paciente(int id) {
+        return new Paciente(id, "Paciente de prueba " + id, "1710034065",
+                "paciente" + id + "@example.com", 20 + id % 60,
+                "Av. Amazonas N34-" + id + ", Quito", id % 10 != 0);
+    }
+}
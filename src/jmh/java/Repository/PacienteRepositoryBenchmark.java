@@ -0,0 +1,76 @@
+package Repository;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Benchmark JMH del mapeo de filas a Paciente. Usa un ResultSet falso
+ * (proxy en memoria) para medir solo el costo de mapearPaciente, sin red
+ * ni controlador JDBC de por medio.
+ */
+import Model.Paciente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacienteRepositoryBenchmark {
+
+    private PacienteRepository repository;
+    private ResultSet rs;
+
+    @Setup
+    public void preparar() {
+        // El mapeo no usa la conexión, por eso basta con null
+        repository = new PacienteRepository(null);
+        rs = filaFalsa(Map.of(
+                "id", 12345,
+                "nombre", "María Fernanda López",
+                "cedula", "1710034065",
+                "correo", "maria.lopez@example.com",
+                "edad", 42,
+                "direccion", "Av. Amazonas N34-120 y Av. Naciones Unidas, Quito",
+                "activo", Boolean.TRUE));
+    }
+
+    @Benchmark
+    public Paciente mapearPaciente() throws SQLException {
+        return repository.mapearPaciente(rs);
+    }
+
+    /**
+     * Crea un ResultSet que siempre devuelve la misma fila. Solo implementa
+     * los getters por nombre de columna que usa el mapeo.
+     */
+    private static ResultSet filaFalsa(Map<String, Object> fila) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, metodo, args) -> switch (metodo.getName()) {
+                    case "getInt" -> (Integer) fila.get((String) args[0]);
+                    case "getString" -> (String) fila.get((String) args[0]);
+                    case "getBoolean" -> (Boolean) fila.get((String) args[0]);
+                    case "next" -> true;
+                    case "wasNull" -> false;
+                    default -> throw new UnsupportedOperationException(metodo.getName());
+                });
+    }
+}
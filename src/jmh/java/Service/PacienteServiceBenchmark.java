@@ -0,0 +1,147 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Benchmark JMH del camino completo de PacienteServiceImpl (servicio,
+ * repositorio y JDBC) contra una base H2 embebida en memoria en modo MySQL.
+ * No incluye la latencia de red de un servidor real, pero detecta
+ * regresiones en el código propio de cada operación.
+ *
+ * La caché de pacientes se desactiva para que buscarPorId llegue siempre
+ * a la base de datos.
+ *
+ * buscarCienEnCiclo y buscarCienPorIds comparan resolver 100 ids uno por uno
+ * contra un solo lookup; con H2 embebido no hay viajes de red, así que la
+ * diferencia real contra MySQL es mayor que la medida aquí.
+ */
+import Model.FiltroPaciente;
+import Model.Paciente;
+import Model.PaginaPacientes;
+import Model.ResultadoConsultaIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Dhospital.cache.habilitado=false")
+public class PacienteServiceBenchmark {
+
+    private static final int FILAS = 10_000;
+
+    private Connection conn;
+    private PacienteService service;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:hospital_db;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE paciente ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "nombre VARCHAR(100) NOT NULL, "
+                    + "cedula VARCHAR(10) NOT NULL, "
+                    + "correo VARCHAR(100), "
+                    + "edad INT, "
+                    + "direccion VARCHAR(200), "
+                    + "activo BOOLEAN DEFAULT TRUE)");
+            st.execute("CREATE INDEX idx_paciente_activo_id ON paciente (activo, id)");
+            st.execute("CREATE INDEX idx_paciente_nombre ON paciente (nombre)");
+            st.execute("CREATE TABLE tabla_version (tabla VARCHAR(64) NOT NULL, fragmento TINYINT NOT NULL, "
+                    + "version BIGINT NOT NULL, PRIMARY KEY (tabla, fragmento))");
+            for (int fragmento = 0; fragmento < 16; fragmento++) {
+                st.execute("INSERT INTO tabla_version VALUES ('paciente', " + fragmento + ", 0)");
+            }
+        }
+        String sql = "INSERT INTO paciente (nombre, cedula, correo, edad, direccion, activo) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= FILAS; i++) {
+                ps.setString(1, "Paciente " + i);
+                ps.setString(2, "1710034065");
+                ps.setString(3, "paciente" + i + "@example.com");
+                ps.setInt(4, 20 + i % 60);
+                ps.setString(5, "Av. Amazonas N34-" + i + ", Quito");
+                ps.setBoolean(6, i % 10 != 0);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        // Conexión en autocommit: cada operación se confirma sola
+        service = new PacienteServiceImpl(conn);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    @Benchmark
+    public Paciente buscarPorId() {
+        return service.buscarPorId(ThreadLocalRandom.current().nextInt(1, FILAS + 1));
+    }
+
+    @Benchmark
+    public int buscarCienEnCiclo() {
+        int encontrados = 0;
+        for (Integer id : idsAleatorios(100)) {
+            if (service.buscarPorId(id) != null) encontrados++;
+        }
+        return encontrados;
+    }
+
+    @Benchmark
+    public ResultadoConsultaIds buscarCienPorIds() {
+        return service.buscarPorIds(idsAleatorios(100));
+    }
+
+    private static List<Integer> idsAleatorios(int cantidad) {
+        List<Integer> ids = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            ids.add(ThreadLocalRandom.current().nextInt(1, FILAS + 1));
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public PaginaPacientes listarPagina() {
+        FiltroPaciente filtro = new FiltroPaciente();
+        filtro.setDespuesDe(ThreadLocalRandom.current().nextInt(0, FILAS - 50));
+        filtro.setLimite(50);
+        filtro.setActivo(Boolean.TRUE);
+        return service.listarPagina(filtro);
+    }
+
+    @Benchmark
+    public Paciente guardar() {
+        Paciente p = new Paciente(0, "Paciente nuevo", "1710034065",
+                "nuevo@example.com", 35, "Av. 10 de Agosto, Quito", true);
+        service.guardar(p);
+        return p;
+    }
+}
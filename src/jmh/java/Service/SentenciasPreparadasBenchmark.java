@@ -0,0 +1,148 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Benchmark JMH de buscarPorId y guardar contra un MySQL real en tres modos:
+ * - cliente: sentencias preparadas emuladas por el driver (el servidor analiza
+ *   el SQL completo en cada ejecución).
+ * - servidor: sentencias del servidor sin caché (prepare + execute + close,
+ *   tres viajes de red por operación).
+ * - servidorCache: sentencias del servidor con cachePrepStmts, la
+ *   configuración de Conexion (solo execute a partir de la primera vez).
+ *
+ * Requiere una base de datos con la tabla paciente, indicada con las mismas
+ * variables que la aplicación (se heredan en los procesos de JMH):
+ *     HOSPITAL_DB_URL=jdbc:mysql://localhost:3307/hospital_db?serverTimezone=UTC
+ *     HOSPITAL_DB_USUARIO=root HOSPITAL_DB_CLAVE=root
+ *     mvn -Pbenchmark compile exec:exec -Djmh.args="SentenciasPreparadas"
+ *
+ * Al terminar cada iteración se imprime, por operación, cuántos comandos
+ * recibió el servidor (Questions) y cuántos COM_STMT_PREPARE/CLOSE, leídos de
+ * SHOW SESSION STATUS. Los guardados se
+ * deshacen con rollback, por lo que la tabla no crece.
+ */
+import Model.Paciente;
+import Util.Configuracion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Dhospital.cache.habilitado=false")
+public class SentenciasPreparadasBenchmark {
+
+    @Param({"cliente", "servidor", "servidorCache"})
+    public String modo;
+
+    private Connection conn;
+    private PacienteService service;
+    private int maximoId;
+    private long[] contadoresInicio;
+    private long operaciones;
+
+    @Setup(Level.Trial)
+    public void conectar() throws SQLException {
+        Properties propiedades = new Properties();
+        propiedades.setProperty("user", Configuracion.texto("db.usuario", "root"));
+        propiedades.setProperty("password", Configuracion.texto("db.clave", "root"));
+        propiedades.setProperty("useServerPrepStmts", String.valueOf(!modo.equals("cliente")));
+        propiedades.setProperty("cachePrepStmts", String.valueOf(modo.equals("servidorCache")));
+        propiedades.setProperty("prepStmtCacheSize", "250");
+        propiedades.setProperty("prepStmtCacheSqlLimit", "2048");
+        conn = DriverManager.getConnection(
+                Configuracion.texto("db.url", "jdbc:mysql://localhost:3307/hospital_db?serverTimezone=UTC"),
+                propiedades);
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 1) FROM paciente")) {
+            rs.next();
+            maximoId = rs.getInt(1);
+        }
+        // un servicio por conexión, como en una solicitud real
+        service = new PacienteServiceImpl(conn);
+    }
+
+    @Setup(Level.Iteration)
+    public void iniciarIteracion() throws SQLException {
+        contadoresInicio = contadores();
+        operaciones = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void terminarIteracion() throws SQLException {
+        conn.rollback();
+        long[] contadoresFin = contadores();
+        double ops = Math.max(1, operaciones);
+        System.out.printf("%n  modo=%s, por operación: %.2f comandos, %.2f COM_STMT_PREPARE, %.2f COM_STMT_CLOSE%n",
+                modo,
+                (contadoresFin[0] - contadoresInicio[0]) / ops,
+                (contadoresFin[1] - contadoresInicio[1]) / ops,
+                (contadoresFin[2] - contadoresInicio[2]) / ops);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        conn.rollback();
+        conn.close();
+    }
+
+    @Benchmark
+    public Paciente buscarPorId() {
+        operaciones++;
+        return service.buscarPorId(ThreadLocalRandom.current().nextInt(1, maximoId + 1));
+    }
+
+    @Benchmark
+    public Paciente guardar() {
+        operaciones++;
+        Paciente p = new Paciente(0, "Paciente benchmark", "1710034065",
+                "benchmark@example.com", 35, "Av. 10 de Agosto, Quito", true);
+        service.guardar(p);
+        return p;
+    }
+
+    /**
+     * Contadores de la sesión: Questions, Com_stmt_prepare y Com_stmt_close.
+     */
+    private long[] contadores() throws SQLException {
+        long[] valores = new long[3];
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SHOW SESSION STATUS WHERE Variable_name IN "
+                     + "('Questions', 'Com_stmt_prepare', 'Com_stmt_close')")) {
+            while (rs.next()) {
+                switch (rs.getString(1)) {
+                    case "Questions" -> valores[0] = rs.getLong(2);
+                    case "Com_stmt_prepare" -> valores[1] = rs.getLong(2);
+                    case "Com_stmt_close" -> valores[2] = rs.getLong(2);
+                    default -> { }
+                }
+            }
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,107 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Benchmark JMH del modelo de pacientes en memoria. Compara la búsqueda por
+ * id en TablaPacientes con un HashMap<Integer, Paciente>, y mide una página
+ * de 50 filas con y sin filtros (el prefijo de nombre obliga a leer el texto).
+ * Al preparar imprime la memoria por fila de cada estructura, medida con el
+ * heap usado antes y después de llenarla.
+ */
+import Model.FiltroPaciente;
+import Model.Paciente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class TablaPacientesBenchmark {
+
+    @Param({"1000000"})
+    public int filas;
+
+    private TablaPacientes tabla;
+    private Map<Integer, Paciente> mapa;
+    private FiltroPaciente sinFiltro;
+    private FiltroPaciente conFiltro;
+
+    @Setup
+    public void preparar() {
+        long antes = usado();
+        tabla = new TablaPacientes(1024, 0);
+        for (int id = 1; id <= filas; id++) {
+            tabla.poner(paciente(id));
+        }
+        long conTabla = usado();
+        mapa = new HashMap<>();
+        for (int id = 1; id <= filas; id++) {
+            mapa.put(id, paciente(id));
+        }
+        long conMapa = usado();
+        System.out.printf("%nBytes por fila: TablaPacientes %d (estimado %d), HashMap %d%n",
+                (conTabla - antes) / filas, tabla.bytesAproximados() / filas, (conMapa - conTabla) / filas);
+
+        sinFiltro = new FiltroPaciente();
+        sinFiltro.setDespuesDe(filas / 2);
+        conFiltro = new FiltroPaciente();
+        conFiltro.setDespuesDe(filas / 2);
+        conFiltro.setActivo(true);
+        conFiltro.setPrefijoNombre("Paciente 9");
+    }
+
+    @Benchmark
+    public Paciente obtenerTabla() {
+        return tabla.obtener(1 + ThreadLocalRandom.current().nextInt(filas));
+    }
+
+    @Benchmark
+    public Paciente obtenerHashMap() {
+        return mapa.get(1 + ThreadLocalRandom.current().nextInt(filas));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Paciente> paginaSinFiltro() {
+        return tabla.pagina(sinFiltro, 51);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Paciente> paginaConFiltro() {
+        return tabla.pagina(conFiltro, 51);
+    }
+
+    private static Paciente paciente(int id) {
+        return new Paciente(id, "Paciente " + id + " Pérez", String.format("%010d", id),
+                "paciente" + id + "@correo.ec", id % 90, "Av. Amazonas " + id, id % 3 != 0);
+    }
+
+    private static long usado() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
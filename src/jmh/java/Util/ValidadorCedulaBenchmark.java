@@ -0,0 +1,72 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Benchmark JMH del validador de cédulas. Mide cédulas válidas y distintos
+ * tipos de cédulas inválidas (longitud, caracteres, provincia y dígito
+ * verificador), ya que cada una sale del algoritmo en un punto diferente.
+ */
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidadorCedulaBenchmark {
+
+    // Cédula válida según el algoritmo módulo 10
+    private static final String VALIDA = "1710034065";
+
+    @Param({"valida", "longitud", "letras", "provincia", "verificador"})
+    public String caso;
+
+    private String cedula;
+    private List<String> lote;
+
+    @Setup
+    public void preparar() {
+        switch (caso) {
+            case "valida" -> cedula = VALIDA;
+            case "longitud" -> cedula = "171003406";
+            case "letras" -> cedula = "17100A4065";
+            case "provincia" -> cedula = "9910034065";
+            case "verificador" -> cedula = "1710034060";
+            default -> throw new IllegalArgumentException("Caso desconocido: " + caso);
+        }
+        // Lote de 1000 cédulas del mismo caso para medir validarLote
+        lote = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            lote.add(new String(cedula.toCharArray()));
+        }
+    }
+
+    @Benchmark
+    public boolean esCedulaValida() {
+        return ValidadorCedula.esCedulaValida(cedula);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public BitSet validarLote() {
+        return ValidadorCedula.validarLote(lote);
+    }
+}
@@ -0,0 +1,52 @@
+package Config;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Escucha el ciclo de vida de la aplicación web. Al detener o redesplegar la
+ * aplicación libera los recursos compartidos, como el pool de conexiones y el
+ * ejecutor de hilos virtuales, para no dejar conexiones abiertas hacia MySQL.
+ * También cierra el bus de eventos, con lo que terminan los flujos de cambios.
+ * Al iniciar arranca el despachador del outbox de eventos, si hay un destino
+ * configurado (hospital.outbox.destino), y la carga del modelo de pacientes
+ * en memoria si hospital.servicio.modo=memoria y la cola de cambios de
+ * estado diferidos si está habilitada. Al detener, esa cola se vacía antes de
+ * cerrar el pool.
+ */
+import Service.ColaEstados;
+import Service.DespachadorOutbox;
+import Service.ModeloPacientes;
+import Util.BusEventosPaciente;
+import Util.Conexion;
+import Util.EjecutorPeticiones;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+@WebListener
+public class AplicacionListener implements ServletContextListener {
+
+    /**
+     * Se ejecuta cuando el contenedor inicia la aplicación.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        DespachadorOutbox.iniciar();
+        ModeloPacientes.iniciar();
+        ColaEstados.iniciar();
+    }
+
+    /**
+     * Se ejecuta cuando el contenedor detiene la aplicación.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ColaEstados.detener();
+        DespachadorOutbox.detener();
+        ModeloPacientes.detener();
+        BusEventosPaciente.getInstancia().cerrar();
+        EjecutorPeticiones.detener();
+        Conexion.cerrar();
+    }
+}
@@ -0,0 +1,81 @@
+package Controller;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Recurso REST de administración. Expone información operativa del servidor,
+ * como las estadísticas del pool de conexiones, de la caché, del modelo en memoria y de las sentencias SQL, para diagnosticar problemas
+ * de rendimiento sin necesidad de acceder a la base de datos.
+ */
+import Repository.EstadisticasSql;
+import Service.ModeloPacientes;
+import Util.CachePacientes;
+import Util.Conexion;
+import Util.PoolConexiones;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Path("/admin")
+public class AdminResource {
+
+    /**
+     * Endpoint GET con las estadísticas de cada pool (primario y réplicas):
+     * conexiones activas, inactivas,
+     * solicitudes en espera y latencia de préstamo (p50/p99/máx en milisegundos).
+     */
+    @GET
+    @Path("/pool")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response pool() {
+        List<Map<String, Object>> pools = new ArrayList<>();
+        for (PoolConexiones pool : Conexion.getPools()) {
+            pools.add(pool.estadisticas());
+        }
+        return Response.ok(pools).build();
+    }
+
+    /**
+     * Endpoint GET con los contadores de la caché de pacientes por id:
+     * aciertos, fallos, desalojos, expiraciones e invalidaciones.
+     */
+    @GET
+    @Path("/cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cache() {
+        return Response.ok(CachePacientes.getInstancia().estadisticas()).build();
+    }
+
+    /**
+     * Endpoint GET con el estado del modelo de pacientes en memoria: si está
+     * listo, filas, memoria aproximada (total y por fila), versión y resultado
+     * de la última reconciliación con la base de datos.
+     */
+    @GET
+    @Path("/modelo")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response modelo() {
+        return Response.ok(ModeloPacientes.estadisticas()).build();
+    }
+
+    /**
+     * Endpoint GET con las sentencias SQL más costosas en la ventana reciente
+     * (tiempo total, ejecuciones, percentiles, filas y bytes promedio).
+     * Parámetro top: cantidad de sentencias a devolver (1 a 100, por defecto 20).
+     */
+    @GET
+    @Path("/sql")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response sql(@QueryParam("top") @DefaultValue("20") int top) {
+        return Response.ok(EstadisticasSql.top(Math.max(1, Math.min(top, 100)))).build();
+    }
+}
@@ -0,0 +1,104 @@
+package Controller;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Evaluación de las cabeceras condicionales If-None-Match e If-Match
+ * (RFC 9110). Se hace a partir del texto de la cabecera, leído en el hilo del
+ * contenedor, porque en el modo de hilos virtuales la lógica del endpoint
+ * corre en otro hilo donde el Request de JAX-RS no está disponible.
+ */
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Response;
+
+import java.util.HashSet;
+import java.util.Set;
+
+final class Condiciones {
+
+    /** Valor de If-Match que acepta cualquier versión existente. */
+    static final String CUALQUIERA = "*";
+
+    // Sufijos que CompresionInterceptor agrega a la ETag de una respuesta comprimida
+    private static final String[] SUFIJOS_CODIFICACION = {".gzip", ".deflate"};
+
+    private Condiciones() {
+    }
+
+    /**
+     * Indica si el cliente ya tiene la versión actual (If-None-Match con
+     * comparación débil, como pide la norma para GET).
+     * @param cabecera valor de If-None-Match o null.
+     * @param etiqueta etiqueta actual del recurso.
+     */
+    static boolean noModificado(String cabecera, String etiqueta) {
+        if (cabecera == null) {
+            return false;
+        }
+        for (String valor : cabecera.split(",")) {
+            String texto = valor.trim();
+            if (texto.equals(CUALQUIERA)) {
+                return true;
+            }
+            // comparación débil: se ignora el prefijo W/
+            String fuerte = texto.startsWith("W/") ? texto.substring(2) : texto;
+            if (etiqueta.equals(opaco(fuerte))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Versiones que el cliente acepta sobrescribir según If-Match (comparación
+     * fuerte: las etiquetas débiles W/ nunca coinciden).
+     * @return null si no se envió la cabecera; un conjunto con "*" si acepta cualquiera.
+     */
+    static Set<String> versionesAceptadas(String cabecera) {
+        if (cabecera == null) {
+            return null;
+        }
+        Set<String> versiones = new HashSet<>();
+        for (String valor : cabecera.split(",")) {
+            String texto = valor.trim();
+            if (texto.equals(CUALQUIERA)) {
+                versiones.add(CUALQUIERA);
+                continue;
+            }
+            String opaco = opaco(texto);
+            if (opaco != null) {
+                versiones.add(opaco);
+            }
+        }
+        return versiones;
+    }
+
+    /**
+     * Respuesta 304 con la etiqueta actual y sin cuerpo.
+     */
+    static Response noModificado(String etiqueta) {
+        return Response.notModified(new EntityTag(etiqueta))
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+
+    /**
+     * Valor de una etiqueta fuerte entre comillas ("abc" → abc); null si está
+     * mal formada o es débil (W/"abc"). Se quita el sufijo de codificación que
+     * agrega CompresionInterceptor ("abc.gzip" → abc): la versión del recurso es
+     * la misma aunque se haya enviado comprimido.
+     */
+    private static String opaco(String texto) {
+        if (texto.length() < 2 || texto.charAt(0) != '"' || texto.charAt(texto.length() - 1) != '"') {
+            return null;
+        }
+        String valor = texto.substring(1, texto.length() - 1);
+        for (String sufijo : SUFIJOS_CODIFICACION) {
+            if (valor.endsWith(sufijo)) {
+                return valor.substring(0, valor.length() - sufijo.length());
+            }
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,153 @@
+package Controller;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Lee el cuerpo de una carga masiva de pacientes de forma incremental, sin
+ * cargar todo el documento en memoria. Soporta dos formatos:
+ * - Arreglo JSON: [ {...}, {...} ]
+ * - NDJSON: un objeto JSON por línea.
+ * Cada elemento se entrega como un Paciente a través de un Iterator. Si una
+ * fila no se puede convertir, next() lanza HospitalException con el motivo,
+ * para que el servicio la reporte como rechazada y continúe con las demás.
+ */
+import Model.Paciente;
+import Util.HospitalException;
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbException;
+import jakarta.json.stream.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+final class LectorCargaMasiva {
+
+    private LectorCargaMasiva() {
+    }
+
+    /**
+     * Itera los elementos de un arreglo JSON usando el parser de streaming.
+     * Un error de sintaxis no permite continuar, por lo que termina la lectura
+     * después de reportar la fila afectada.
+     */
+    static Iterator<Paciente> deArreglo(InputStream cuerpo, Jsonb jsonb) {
+        JsonParser parser = Json.createParser(cuerpo);
+        if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
+            throw new HospitalException("Se esperaba un arreglo JSON");
+        }
+        return new Iterator<>() {
+            private JsonParser.Event siguiente;
+            private String error;
+            private boolean terminado;
+
+            @Override
+            public boolean hasNext() {
+                if (error != null) {
+                    return true;
+                }
+                if (terminado) {
+                    return false;
+                }
+                if (siguiente == null) {
+                    try {
+                        siguiente = parser.hasNext() ? parser.next() : JsonParser.Event.END_ARRAY;
+                    } catch (JsonException e) {
+                        // error de sintaxis: se reporta una vez como fila rechazada
+                        terminado = true;
+                        error = "JSON mal formado: " + e.getMessage();
+                        return true;
+                    }
+                }
+                if (siguiente == JsonParser.Event.END_ARRAY) {
+                    terminado = true;
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Paciente next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (error != null) {
+                    String motivo = error;
+                    error = null;
+                    throw new HospitalException(motivo);
+                }
+                JsonParser.Event evento = siguiente;
+                siguiente = null;
+                if (evento != JsonParser.Event.START_OBJECT) {
+                    if (evento == JsonParser.Event.START_ARRAY) {
+                        parser.skipArray();
+                    }
+                    throw new HospitalException("Se esperaba un objeto JSON");
+                }
+                String objeto;
+                try {
+                    objeto = parser.getObject().toString();
+                } catch (JsonException e) {
+                    terminado = true;
+                    throw new HospitalException("JSON mal formado: " + e.getMessage());
+                }
+                return convertir(objeto, jsonb);
+            }
+        };
+    }
+
+    /**
+     * Itera las líneas de un documento NDJSON. Las líneas vacías se ignoran y una
+     * línea mal formada solo afecta a esa fila.
+     */
+    static Iterator<Paciente> deNdjson(InputStream cuerpo, Jsonb jsonb) {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8));
+        return new Iterator<>() {
+            private String linea;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (linea == null) {
+                        String leida = lector.readLine();
+                        if (leida == null) {
+                            return false;
+                        }
+                        if (!leida.isBlank()) {
+                            linea = leida;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Paciente next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String actual = linea;
+                linea = null;
+                return convertir(actual, jsonb);
+            }
+        };
+    }
+
+    private static Paciente convertir(String json, Jsonb jsonb) {
+        try {
+            return jsonb.fromJson(json, Paciente.class);
+        } catch (JsonbException e) {
+            throw new HospitalException("Fila con formato invalido: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package Controller;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Recurso REST que expone las métricas de la aplicación en el formato de texto
+ * de Prometheus (/api/metrics): solicitudes y errores por endpoint, latencias,
+ * tiempos de conexión, consultas y commit, y el estado de los pools.
+ */
+import Util.Metricas;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+
+@Path("/metrics")
+public class MetricasResource {
+
+    /** Tipo de contenido del formato de exposición de Prometheus. */
+    static final String PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Endpoint GET que devuelve todas las métricas registradas.
+     */
+    @GET
+    @Produces(PROMETHEUS)
+    public Response metricas() {
+        return Response.ok(Metricas.exportar()).build();
+    }
+}
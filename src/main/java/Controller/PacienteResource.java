@@ -7,21 +7,71 @@ package Controller;
  * Recurso REST que gestiona las operaciones CRUD de la entidad Paciente.
  * Expone endpoints para listar, buscar, registrar, actualizar y cambiar
  * el estado de los pacientes, delegando la lógica de negocio al servicio.
- * Utiliza la conexión proporcionada por el filtro/servlet para interactuar
+ * Utiliza el proveedor de conexión creado por el filtro/servlet para interactuar
  * con la base de datos.
+ *
+ * Los endpoints CRUD se ejecutan a través de EjecutorPeticiones: por defecto en
+ * el mismo hilo de la solicitud, o en hilos virtuales si se habilita
+ * hospital.hilosVirtuales.habilitado. Los datos de la solicitud (parámetros,
+ * UriInfo, proveedor) se leen antes de delegar, en el hilo del contenedor.
+ *
+ * Las lecturas envían ETag fuertes y responden 304 si coinciden con
+ * If-None-Match (sin serializar el cuerpo); las modificaciones aceptan If-Match
+ * y responden 412 si el paciente cambió desde que el cliente lo leyó.
+ *
+ * GET /pacientes/changes entrega los cambios confirmados como Server-Sent
+ * Events, para que otros sistemas no tengan que consultar el listado una y
+ * otra vez para detectarlos.
  */
+import Model.FiltroPaciente;
 import Model.Paciente;
+import Model.PaginaPacientes;
+import Model.ResultadoCambioEstado;
+import Model.ResultadoCargaMasiva;
+import Model.SolicitudCambioEstado;
+import Service.ModeloPacientes;
 import Service.PacienteService;
 import Service.PacienteServiceImpl;
+import Service.PacienteServiceMemoria;
+import Util.CedulaDuplicadaException;
+import Util.Configuracion;
+import Util.EjecutorPeticiones;
 import Util.HospitalException;
+import Util.PrecondicionFallidaException;
+import Util.ProveedorConexion;
+import Util.RegistroIdempotencia;
+import Util.RespuestasError;
+import Util.VersionPaciente;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
-import java.sql.Connection;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 /**
  * Define la URL base para todos los endpoints relacionados con pacientes.
@@ -29,134 +79,628 @@ import java.util.List;
 @Path("/pacientes") //nombre de la url
 public class PacienteResource {
 
+    private static final Logger LOG = Logger.getLogger(PacienteResource.class.getName());
+
+    /** Tipo de contenido para JSON delimitado por saltos de línea. */
+    static final String NDJSON = "application/x-ndjson";
+
+    /** Serializador JSON-B reutilizable (es seguro entre hilos). */
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    /** Filas por lote en la carga masiva (configurable por despliegue y por solicitud). */
+    private static final int LOTE_POR_DEFECTO = Configuracion.entero("cargaMasiva.tamanoLote", 500);
+    private static final int LOTE_MAXIMO = Configuracion.entero("cargaMasiva.tamanoLoteMaximo", 5000);
+
+    /** Largo máximo de Idempotency-Key y espera máxima por la solicitud original. */
+    private static final int LARGO_MAXIMO_CLAVE = 255;
+    private static final long ESPERA_IDEMPOTENCIA_MS = Configuracion.largo("idempotencia.esperaMs", 10_000);
+
+    /** Espera máxima por la confirmación de un cambio de estado diferido (?durable=true). */
+    private static final long ESPERA_ESTADO_MS = Configuracion.largo("estados.diferido.esperaMs", 5_000);
+
+    @Context
+    HttpServletRequest request; // Permite acceder al proveedor de conexión creado por el filtro
+
     @Context
-    HttpServletRequest request; // Permite acceder a la conexión inyectada por el filtro
+    UriInfo uriInfo; // Permite construir el enlace a la siguiente página
 
     /**
-     * Endpoint GET para obtener la lista completa de pacientes.
-     * Retorna HTTP 200 junto con un arreglo JSON.
+     * Endpoint GET para obtener la lista de pacientes paginada por cursor.
+     * Parámetros opcionales:
+     * - after: último id recibido (cursor); se devuelven los ids mayores.
+     * - limit: tamaño de la página (acotado por el servicio).
+     * - activo, edadMin, edadMax, nombre (prefijo): filtros.
+     * - campos: columnas a devolver separadas por comas (ej. id,nombre,cedula).
+     * Retorna HTTP 200 junto con un arreglo JSON. Si hay más datos, el cursor de la
+     * siguiente página se envía en la cabecera X-Siguiente-Cursor y en Link (rel="next").
+     * Con Accept: application/vnd.hospital.columnar+json se responde en formato
+     * columnar (nombres de campos una sola vez), más compacto para clientes masivos.
+     * La ETag depende de la versión de la tabla y de los parámetros: con If-None-Match
+     * igual se responde 304 sin leer los pacientes.
      */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response listar() {
-        try {
-            //1. obtener la conexion
-            Connection conn = (Connection) request.getAttribute("conn");
+    @Produces({MediaType.APPLICATION_JSON, PacientesColumnarWriter.COLUMNAR})
+    public void listar(@QueryParam("after") Integer after,
+                       @QueryParam("limit") Integer limit,
+                       @QueryParam("activo") Boolean activo,
+                       @QueryParam("edadMin") Integer edadMin,
+                       @QueryParam("edadMax") Integer edadMax,
+                       @QueryParam("nombre") String nombre,
+                       @QueryParam("campos") String campos,
+                       @Suspended AsyncResponse async) {
+        //1. instanciar el servicio (usando la interfaz); la conexion
+        //se tomara del pool solo cuando el servicio la necesite
+        PacienteService service = servicio();
 
-            //2.instanciar el servicio (usando la interfaz)
-            PacienteService service = new PacienteServiceImpl(conn);
+        //2. armar el filtro a partir de los parametros de consulta
+        FiltroPaciente filtro = new FiltroPaciente();
+        filtro.setDespuesDe(after == null ? 0 : after);
+        filtro.setLimite(limit == null ? 0 : limit);
+        filtro.setActivo(activo);
+        filtro.setEdadMin(edadMin);
+        filtro.setEdadMax(edadMax);
+        filtro.setPrefijoNombre(nombre == null || nombre.isBlank() ? null : nombre.trim());
+        if (campos != null) {
+            for (String campo : campos.split(",")) {
+                if (!campo.isBlank()) {
+                    filtro.getCampos().add(campo.trim());
+                }
+            }
+        }
+        UriBuilder enlace = uriInfo.getRequestUriBuilder();
+        // la representación (JSON o columnar) también forma parte de la versión
+        String consulta = uriInfo.getRequestUri().getRawQuery() + "|" + variante();
+        String siNoCoincide = request.getHeader("If-None-Match");
+
+        EjecutorPeticiones.ejecutar(async, proveedor(),
+                () -> listar(service, filtro, enlace, consulta, siNoCoincide));
+    }
+
+    private Response listar(PacienteService service, FiltroPaciente filtro, UriBuilder enlace,
+                            String consulta, String siNoCoincide) {
+        try {
+            //3. comparar la version de la tabla con la que ya tiene el cliente
+            String etiqueta = VersionPaciente.etiquetaColeccion(service.versionPacientes(), consulta);
+            if (Condiciones.noModificado(siNoCoincide, etiqueta)) {
+                return Condiciones.noModificado(etiqueta);
+            }
 
-            //3. llamar a la logica
-            List<Paciente> lista = service.listar();
+            //4. llamar a la logica
+            PaginaPacientes pagina = service.listarPagina(filtro);
 
-            //4. envolver en respuesta HTTP 200 OK
-            return Response.ok(lista).build();
+            //5. envolver en respuesta HTTP 200 OK, solo con las columnas pedidas
+            Response.ResponseBuilder respuesta = Response.ok(proyectar(pagina.getPacientes(), filtro.getCampos()))
+                    .tag(new EntityTag(etiqueta))
+                    .header("Cache-Control", "no-cache");
+            if (pagina.getSiguiente() != null) {
+                String cursor = String.valueOf(pagina.getSiguiente());
+                respuesta.header("X-Siguiente-Cursor", cursor);
+                respuesta.link(enlace.replaceQueryParam("after", cursor).build(), "next");
+            }
+            return respuesta.build();
 
+        } catch (HospitalException e) {
+            // parámetros inválidos; los errores de base de datos traen causa
+            if (e.getCause() == null) {
+                return error(e, 400, "{\"error\": \"" + e.getMessage() + "\"}");
+            }
+            return error(e, 500, "{\"error\": \"Error al listar pacientes\"}");
         }catch (Exception e){
-            return Response.status(500).entity(e.getMessage()).build();
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
         }
     }
 
+    /**
+     * Endpoint GET de búsqueda para recepción.
+     * Parámetros:
+     * - q: cédula parcial, correo parcial o palabras del nombre (obligatorio).
+     * - limit: cantidad máxima de resultados (acotada por el servicio).
+     * Retorna 200 con los pacientes ordenados por relevancia, o 400 si falta q.
+     */
+    @GET
+    @Path("/search")
+    @Produces({MediaType.APPLICATION_JSON, PacientesColumnarWriter.COLUMNAR})
+    public void buscar(@QueryParam("q") String q, @QueryParam("limit") Integer limit,
+                       @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        int limite = limit == null ? 0 : limit;
+        EjecutorPeticiones.ejecutar(async, proveedor(), () -> buscar(service, q, limite));
+    }
+
+    private Response buscar(PacienteService service, String q, int limite) {
+        try {
+            return Response.ok(service.buscar(q, limite)).build();
+        } catch (HospitalException e) {
+            // texto vacío o demasiado largo; los errores de base de datos traen causa
+            if (e.getCause() == null) {
+                return error(e, 400, "{\"error\": \"" + e.getMessage() + "\"}");
+            }
+            return error(e, 500, "{\"error\": \"Error al buscar pacientes\"}");
+        } catch (Exception e) {
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
+        }
+    }
+
+    /**
+     * Endpoint GET con el flujo de cambios de pacientes (Server-Sent Events).
+     * Cada evento se llama creado, actualizado o estado, su id permite reanudar y
+     * sus datos son el EventoPaciente en JSON. El cliente retoma desde donde quedó
+     * con la cabecera Last-Event-ID (o el parámetro lastEventId, para EventSource
+     * de navegador en la primera conexión); sin ella solo recibe los cambios nuevos.
+     * Si los eventos pedidos ya no están en memoria se envía un evento "resync":
+     * el cliente debe volver a leer el listado y seguir con el flujo.
+     * Responde 503 si se alcanzó el máximo de suscriptores.
+     */
+    @GET
+    @Path("/changes")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void cambios(@HeaderParam("Last-Event-ID") String ultimoId,
+                        @QueryParam("lastEventId") String ultimoIdParametro,
+                        @Context SseEventSink sink, @Context Sse sse) {
+        if (!TransmisorCambios.suscribir(sink, sse, ultimoId != null ? ultimoId : ultimoIdParametro)) {
+            throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity("{\"error\": \"Demasiados suscriptores, intente nuevamente\"}")
+                    .build());
+        }
+    }
+
+    /**
+     * Endpoint GET para exportar la tabla completa de pacientes.
+     * Las filas se escriben en la respuesta a medida que se leen con un cursor
+     * del lado del servidor, por lo que la memoria usada es constante sin importar
+     * el tamaño de la tabla. La transacción del filtro termina cuando termina el flujo.
+     * Parámetro formato:
+     * - ndjson (por defecto): un objeto JSON por línea (application/x-ndjson).
+     * - json: un único arreglo JSON.
+     */
+    @GET
+    @Path("/export")
+    @Produces({NDJSON, MediaType.APPLICATION_JSON})
+    public Response exportar(@QueryParam("formato") @DefaultValue("ndjson") String formato) {
+        PacienteService service = servicio();
+        boolean arreglo = "json".equalsIgnoreCase(formato);
+
+        StreamingOutput flujo = salida -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            int[] filas = {0};
+            if (arreglo) writer.write('[');
+            service.exportar(p -> {
+                if (arreglo && filas[0] > 0) writer.write(',');
+                writer.write(JSONB.toJson(p));
+                if (!arreglo) writer.write('\n');
+                // vaciamos periódicamente para que el cliente reciba datos sin esperar al final
+                if (++filas[0] % 1000 == 0) writer.flush();
+            });
+            if (arreglo) writer.write(']');
+            writer.flush();
+        };
+        return Response.ok(flujo, arreglo ? MediaType.APPLICATION_JSON : NDJSON).build();
+    }
+
+    /**
+     * Representación que pidió el cliente, para distinguir las ETag del listado.
+     */
+    private String variante() {
+        String acepta = request.getHeader("Accept");
+        return acepta != null && acepta.contains(PacientesColumnarWriter.COLUMNAR) ? "columnar" : "json";
+    }
+
+    /**
+     * Crea el servicio con el proveedor de conexión de la solicitud. El proveedor
+     * toma la conexión del pool de forma perezosa, en el primer uso.
+     * Con hospital.servicio.modo=memoria las lecturas salen del modelo en memoria.
+     */
+    private PacienteService servicio() {
+        return ModeloPacientes.isHabilitado()
+                ? new PacienteServiceMemoria(proveedor())
+                : new PacienteServiceImpl(proveedor());
+    }
+
+    /**
+     * Proveedor de conexión que el filtro dejó en la solicitud.
+     */
+    private ProveedorConexion proveedor() {
+        return (ProveedorConexion) request.getAttribute(ProveedorConexion.ATRIBUTO);
+    }
+
+    /**
+     * Construye la respuesta de error (ver RespuestasError): 504 si la solicitud
+     * superó su plazo, 503 con Retry-After si el pool estaba agotado y, si no,
+     * el estado y cuerpo indicados.
+     */
+    private static Response error(Throwable e, int estado, Object cuerpo) {
+        return RespuestasError.error(e, estado, cuerpo);
+    }
+
+    /**
+     * Convierte la página en la representación JSON: si no se pidieron columnas se
+     * devuelven los pacientes completos; si no, un mapa solo con las columnas pedidas.
+     */
+    private Object proyectar(List<Paciente> pacientes, Set<String> campos) {
+        if (campos.isEmpty()) {
+            return pacientes;
+        }
+        List<Map<String, Object>> filas = new ArrayList<>(pacientes.size());
+        for (Paciente p : pacientes) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            for (String campo : campos) {
+                switch (campo) {
+                    case "id" -> fila.put(campo, p.getId());
+                    case "nombre" -> fila.put(campo, p.getNombre());
+                    case "cedula" -> fila.put(campo, p.getCedula());
+                    case "correo" -> fila.put(campo, p.getCorreo());
+                    case "edad" -> fila.put(campo, p.getEdad());
+                    case "direccion" -> fila.put(campo, p.getDireccion());
+                    case "activo" -> fila.put(campo, p.isActivo());
+                    default -> { }
+                }
+            }
+            filas.add(fila);
+        }
+        return filas;
+    }
+
     /**
      * Endpoint GET que permite buscar un paciente por ID.
-     * Retorna 200 si existe, o 404 si no se encuentra.
+     * Retorna 200 si existe (con su ETag), 304 si coincide con If-None-Match,
+     * o 404 si no se encuentra.
      */
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response buscarPorId(@PathParam("id") int id) {
-        try {
-            Connection conn = (Connection) request.getAttribute("conn");
-            PacienteService service = new PacienteServiceImpl(conn);
+    public void buscarPorId(@PathParam("id") int id, @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        String siNoCoincide = request.getHeader("If-None-Match");
+        EjecutorPeticiones.ejecutar(async, proveedor(), () -> buscarPorId(service, id, siNoCoincide));
+    }
 
+    private Response buscarPorId(PacienteService service, int id, String siNoCoincide) {
+        try {
             Paciente p = service.buscarPorId(id);
             if(p != null) {
-                return Response.ok(p).build();
+                String etiqueta = VersionPaciente.etiqueta(p);
+                if (Condiciones.noModificado(siNoCoincide, etiqueta)) {
+                    return Condiciones.noModificado(etiqueta);
+                }
+                return Response.ok(p)
+                        .tag(new EntityTag(etiqueta))
+                        .header("Cache-Control", "no-cache")
+                        .build();
             } else {
                 return Response.status(Response.Status.NOT_FOUND).entity("Paciente no encontrado").build();
             }
         }catch (Exception e){
-            return Response.status(500).entity(e.getMessage()).build();
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
+        }
+    }
+
+    /**
+     * Endpoint POST para obtener muchos pacientes por id en una sola solicitud.
+     * Cuerpo: arreglo JSON de ids, por ejemplo [12, 15, 40].
+     * Retorna 200 con {"pacientes": {"12": {...}, ...}, "faltantes": [40]}, en el
+     * orden pedido; 400 si no hay ids o se supera hospital.lookup.maximoIds.
+     */
+    @POST
+    @Path("/lookup")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void buscarPorIds(List<Integer> ids, @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        EjecutorPeticiones.ejecutar(async, proveedor(), () -> buscarPorIds(service, ids));
+    }
+
+    /**
+     * Endpoint GET equivalente, con los ids separados por comas: ?ids=12,15,40.
+     */
+    @GET
+    @Path("/lookup")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void buscarPorIds(@QueryParam("ids") String ids, @Suspended AsyncResponse async) {
+        List<Integer> lista = new ArrayList<>();
+        if (ids != null) {
+            try {
+                for (String id : ids.split(",")) {
+                    if (!id.isBlank()) {
+                        lista.add(Integer.parseInt(id.trim()));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                async.resume(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Los ids deben ser números enteros\"}")
+                        .build());
+                return;
+            }
+        }
+        buscarPorIds(lista, async);
+    }
+
+    private Response buscarPorIds(PacienteService service, List<Integer> ids) {
+        try {
+            return Response.ok(service.buscarPorIds(ids)).build();
+        } catch (HospitalException e) {
+            // lista vacía o demasiado grande; los errores de base de datos traen causa
+            if (e.getCause() == null) {
+                return error(e, 400, "{\"error\": \"" + e.getMessage() + "\"}");
+            }
+            return error(e, 500, "{\"error\": \"Error al buscar pacientes\"}");
+        } catch (Exception e) {
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
         }
     }
 
     /**
      * Endpoint POST para registrar un nuevo paciente.
      * El servicio valida la cédula y lanza HospitalException si hay error.
+     * Con la cabecera Idempotency-Key los reintentos del cliente reciben la
+     * respuesta original sin volver a insertar (con Idempotency-Replayed: true);
+     * los reintentos que llegan mientras la original sigue en curso esperan su
+     * resultado en lugar de ejecutarse otra vez.
      * Respuestas:
      * - 200: creación correcta
      * - 400: datos inválidos
+     * - 409: ya existe un paciente con esa cédula, o la solicitud original con
+     *        la misma clave sigue en curso después de la espera máxima
+     * - 422: la clave de idempotencia ya se usó con otros datos
      * - 500: error interno
      */
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response guardar(Paciente p) {
-        try {
-            Connection conn = (Connection) request.getAttribute("conn");
-            PacienteService service = new PacienteServiceImpl(conn);
+    public void guardar(Paciente p, @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        ProveedorConexion proveedor = proveedor();
+        String clave = request.getHeader("Idempotency-Key");
+        if (clave == null || clave.isBlank() || p == null) {
+            EjecutorPeticiones.ejecutar(async, proveedor, () -> guardar(service, p));
+            return;
+        }
+        if (clave.length() > LARGO_MAXIMO_CLAVE) {
+            async.resume(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Idempotency-Key demasiado larga\"}").build());
+            return;
+        }
+        // la huella distingue un reintento de otra solicitud que reutiliza la clave
+        RegistroIdempotencia registro = RegistroIdempotencia.getInstancia();
+        RegistroIdempotencia.Reserva reserva = registro.reservar(clave, "POST /pacientes " + VersionPaciente.etiqueta(p));
+        switch (reserva.estado()) {
+            case HUELLA_DISTINTA -> async.resume(Response.status(422)
+                    .entity("{\"error\": \"La Idempotency-Key ya se usó con otros datos\"}").build());
+            case COMPLETADA, EN_CURSO -> reserva.resultado().copy()
+                    .orTimeout(ESPERA_IDEMPOTENCIA_MS, TimeUnit.MILLISECONDS)
+                    .whenComplete((guardada, e) -> async.resume(e == null ? repetir(guardada)
+                            : Response.status(Response.Status.CONFLICT)
+                                .header("Retry-After", "1")
+                                .entity("{\"error\": \"La solicitud original sigue en proceso\"}").build()));
+            case NUEVA -> EjecutorPeticiones.ejecutar(async, proveedor, () -> {
+                Response respuesta = guardar(service, p);
+                RegistroIdempotencia.Respuesta guardada =
+                        new RegistroIdempotencia.Respuesta(respuesta.getStatus(), String.valueOf(respuesta.getEntity()));
+                // los errores 5xx son transitorios: no se guardan para que el reintento se ejecute
+                boolean conservar = respuesta.getStatus() < 500;
+                proveedor.alTerminar(() -> registro.terminar(clave, reserva, guardada, conservar),
+                        () -> registro.terminar(clave, reserva, new RegistroIdempotencia.Respuesta(500,
+                                "{\"error\": \"Error interno\"}"), false));
+                return respuesta;
+            });
+        }
+    }
 
+    /**
+     * Respuesta guardada de una solicitud idempotente, marcada como repetida.
+     */
+    private static Response repetir(RegistroIdempotencia.Respuesta guardada) {
+        return Response.status(guardada.estado())
+                .entity(guardada.cuerpo())
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .header("Idempotency-Replayed", "true")
+                .build();
+    }
+
+    private Response guardar(PacienteService service, Paciente p) {
+        try {
             service.guardar(p); //esto validará la cedula internamente
 
             return Response.ok("{\"mensaje\": \"Guardado exitoso\"}").build();
+        } catch (CedulaDuplicadaException e) {
+            return error(e, 409, "{\"error\": \"" + e.getMessage() + "\"}");
         } catch (HospitalException e) {
-            // Si falla la cédula o la BD, devolvemos error 400 (Bad Request)
-            return Response.status(400).entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+            // Si falla la cédula devolvemos 400 (Bad Request); los errores de la BD
+            // traen causa y son 500, para que un reintento con la misma
+            // Idempotency-Key vuelva a ejecutarse en lugar de repetir el error
+            if (e.getCause() == null) {
+                return error(e, 400, "{\"error\": \"" + e.getMessage() + "\"}");
+            }
+            // el mensaje es el de la SQLException: se registra en el log, no se devuelve
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
         }catch (Exception e){
-            return Response.status(500).entity("Error interno").build();
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
+        }
+    }
+
+    /**
+     * Endpoint POST para registrar muchos pacientes a la vez (arreglo JSON).
+     * Las filas se leen de forma incremental, se valida la cédula de cada una y
+     * las válidas se insertan en lotes de "lote" filas, con un commit por lote.
+     * Respuesta 200 con las filas aceptadas y las rechazadas por índice y motivo.
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cargarMasivo(@QueryParam("lote") Integer lote, InputStream cuerpo) {
+        try {
+            return cargarMasivo(LectorCargaMasiva.deArreglo(cuerpo, JSONB), lote);
+        } catch (HospitalException e) {
+            return error(e, 400, "{\"error\": \"" + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * Endpoint POST para registrar muchos pacientes a la vez (NDJSON, un objeto por línea).
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes(NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cargarMasivoNdjson(@QueryParam("lote") Integer lote, InputStream cuerpo) {
+        return cargarMasivo(LectorCargaMasiva.deNdjson(cuerpo, JSONB), lote);
+    }
+
+    private Response cargarMasivo(Iterator<Paciente> filas, Integer lote) {
+        try {
+            PacienteService service = servicio();
+
+            int tamanoLote = lote == null || lote <= 0 ? LOTE_POR_DEFECTO : Math.min(lote, LOTE_MAXIMO);
+            ResultadoCargaMasiva resultado = service.cargarMasivo(filas, tamanoLote);
+
+            return Response.ok(resultado).build();
+        }catch (Exception e){
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
         }
     }
 
     /**
      * Endpoint PUT para actualizar un paciente existente.
      * El ID de la URL tiene prioridad sobre el del cuerpo del JSON.
+     * Con la cabecera If-Match solo se actualiza si el paciente sigue en esa versión.
      * Respuestas:
-     * - 200: actualización exitosa
+     * - 200: actualización exitosa (con la nueva ETag)
      * - 404: paciente no encontrado
+     * - 409: la nueva cédula ya pertenece a otro paciente
+     * - 412: el paciente cambió desde que el cliente lo leyó
      */
     @PUT
     @Path("/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response actualizar(@PathParam("id")int id, Paciente p) {
-        try {
-            Connection conn = (Connection) request.getAttribute("conn");
-            PacienteService service = new PacienteServiceImpl(conn);
+    public void actualizar(@PathParam("id")int id, Paciente p, @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        Set<String> versiones = Condiciones.versionesAceptadas(request.getHeader("If-Match"));
+        EjecutorPeticiones.ejecutar(async, proveedor(), () -> actualizar(service, id, p, versiones));
+    }
 
+    private Response actualizar(PacienteService service, int id, Paciente p, Set<String> versiones) {
+        try {
             p.setId(id); //aseguramos que el ID sea el de la url
 
-            Paciente actualizado = service.actualizar(p);
+            Paciente actualizado = service.actualizar(p, versiones);
 
             if (actualizado != null) {
                 // Devolvemos 200 OK y el objeto actualizado
-                return Response.ok(actualizado).build();
+                return Response.ok(actualizado).tag(new EntityTag(VersionPaciente.etiqueta(actualizado))).build();
             }else {
                 // Devolvemos 404 Not Found si el ID no existe
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity("{\"error\": \"Paciente no encontrado\"}")
                         .build();
             }
+        }catch (PrecondicionFallidaException e){
+            return error(e, 412, "{\"error\": \"" + e.getMessage() + "\"}");
+        }catch (CedulaDuplicadaException e){
+            return error(e, 409, "{\"error\": \"" + e.getMessage() + "\"}");
         }catch (Exception e){
-            return Response.status(500).entity(e.getMessage()).build();        }
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
+        }
+    }
+
+    /**
+     * Endpoint PUT para activar o desactivar muchos pacientes en una sola
+     * solicitud (limpiezas administrativas). Cuerpo JSON con el estado destino
+     * y una lista de ids o un filtro:
+     * {"activo": false, "ids": [12, 15, 40]}
+     * {"activo": false, "filtro": {"activo": true, "edadMin": 90, "despuesDe": 0}}
+     * Se procesa en bloques de hospital.estadoMasivo.tamanoBloque, con un commit
+     * por bloque. Retorna 200 con {"afectados": n, "bloques": [{"desde", "hasta",
+     * "afectados"}...]}; 400 si la solicitud no es válida; 500 con los bloques ya
+     * confirmados y el error si un bloque falla.
+     */
+    @PUT
+    @Path("/estado")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void cambiarEstadoMasivo(SolicitudCambioEstado solicitud, @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        EjecutorPeticiones.ejecutar(async, proveedor(), () -> cambiarEstadoMasivo(service, solicitud));
+    }
+
+    private Response cambiarEstadoMasivo(PacienteService service, SolicitudCambioEstado solicitud) {
+        try {
+            ResultadoCambioEstado resultado = service.cambiarEstadoMasivo(solicitud);
+            if (resultado.getError() != null) {
+                LOG.warning("Cambio de estado masivo incompleto: " + resultado.getError());
+                return Response.serverError().entity(resultado).build();
+            }
+            return Response.ok(resultado).build();
+        } catch (HospitalException e) {
+            return error(e, 400, "{\"error\": \"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
+        }
     }
 
     /**
      * Endpoint PUT para activar o desactivar un paciente.
      * El estado se recibe mediante un parámetro de consulta (?activo=true/false).
+     * Acepta If-Match igual que la actualización (412 si la versión cambió).
+     * Con la cola de estados diferidos habilitada (y sin If-Match) el cambio se
+     * encola y se aplica en lote con otros:
+     * - por defecto responde 202 Accepted de inmediato (sin saber si el id existe).
+     * - con ?durable=true espera el commit del lote y responde como siempre
+     *   (200 o 404); si no se confirma en hospital.estados.diferido.esperaMs,
+     *   responde 202 (el cambio sigue en la cola).
      */
     @PUT
     @Path("/{id}/estado")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response cambiarEstado(@PathParam("id")int id, @QueryParam("activo")boolean activo) {
-        try {
-            Connection conn = (Connection) request.getAttribute("conn");
-            PacienteService service = new PacienteServiceImpl(conn);
-            service.cambiarEstado(id, activo);
+    public void cambiarEstado(@PathParam("id")int id, @QueryParam("activo")boolean activo,
+                              @QueryParam("durable") boolean durable,
+                              @Suspended AsyncResponse async) {
+        PacienteService service = servicio();
+        Set<String> versiones = Condiciones.versionesAceptadas(request.getHeader("If-Match"));
+        // la verificación de versión necesita la fila bloqueada: solo en el camino directo
+        CompletableFuture<Boolean> encolado = versiones == null ? service.encolarEstado(id, activo) : null;
+        if (encolado == null) {
+            EjecutorPeticiones.ejecutar(async, proveedor(), () -> cambiarEstado(service, id, activo, versiones));
+            return;
+        }
+        if (!durable) {
+            async.resume(estadoEnCola());
+            return;
+        }
+        // se espera el commit sin ocupar un hilo; la respuesta se escribe fuera del hilo de la cola
+        encolado.copy()
+                .orTimeout(ESPERA_ESTADO_MS, TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((existe, e) -> async.resume(e != null ? estadoEnCola()
+                        : existe ? estadoCambiado(activo) : pacienteNoEncontrado()));
+    }
 
-            String mensaje = activo ? "Activado" : "Desactivado";
-            return Response.ok("{\"mensaje\": \"Paciente " + mensaje + "\"}").build();
+    private Response cambiarEstado(PacienteService service, int id, boolean activo, Set<String> versiones) {
+        try {
+            if (!service.cambiarEstado(id, activo, versiones)) {
+                return pacienteNoEncontrado();
+            }
+            return estadoCambiado(activo);
+        }catch (PrecondicionFallidaException e){
+            return error(e, 412, "{\"error\": \"" + e.getMessage() + "\"}");
         }catch (Exception e){
-            return Response.status(500).entity(e.getMessage()).build();
+            return error(e, 500, RespuestasError.ERROR_INTERNO);
         }
     }
+
+    private static Response estadoCambiado(boolean activo) {
+        String mensaje = activo ? "Activado" : "Desactivado";
+        return Response.ok("{\"mensaje\": \"Paciente " + mensaje + "\"}").build();
+    }
+
+    private static Response pacienteNoEncontrado() {
+        return Response.status(Response.Status.NOT_FOUND)
+                .entity("{\"error\": \"Paciente no encontrado\"}")
+                .build();
+    }
+
+    private static Response estadoEnCola() {
+        return Response.accepted("{\"mensaje\": \"Cambio de estado en cola\"}").build();
+    }
 }
@@ -0,0 +1,104 @@
+package Controller;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Representación compacta de listas de pacientes para clientes masivos
+ * (application/vnd.hospital.columnar+json). En lugar de repetir los nombres
+ * de los campos en cada objeto, se envían una sola vez:
+ *   {"columnas":["id","nombre",...],"filas":[[1,"Ana",...],[2,"Luis",...]]}
+ * Se escribe con el generador de JSON-P en streaming, sin armar el documento
+ * en memoria. Acepta listas de Paciente y las listas proyectadas (mapas de
+ * columna a valor) que devuelve el listado con ?campos=.
+ */
+import Model.FiltroPaciente;
+import Model.Paciente;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Provider
+@Produces(PacientesColumnarWriter.COLUMNAR)
+public class PacientesColumnarWriter implements MessageBodyWriter<List<?>> {
+
+    /** Tipo de contenido de la representación columnar. */
+    public static final String COLUMNAR = "application/vnd.hospital.columnar+json";
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return List.class.isAssignableFrom(type) && MediaType.valueOf(COLUMNAR).isCompatible(mediaType);
+    }
+
+    @Override
+    public void writeTo(List<?> filas, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream salida) {
+        List<String> columnas = columnas(filas);
+        // el generador no cierra el flujo del contenedor, solo lo vacía
+        JsonGenerator json = Json.createGenerator(salida);
+        json.writeStartObject();
+        json.writeStartArray("columnas");
+        for (String columna : columnas) {
+            json.write(columna);
+        }
+        json.writeEnd();
+        json.writeStartArray("filas");
+        for (Object fila : filas) {
+            json.writeStartArray();
+            if (fila instanceof Paciente p) {
+                json.write(p.getId());
+                escribir(json, p.getNombre());
+                escribir(json, p.getCedula());
+                escribir(json, p.getCorreo());
+                json.write(p.getEdad());
+                escribir(json, p.getDireccion());
+                json.write(p.isActivo());
+            } else if (fila instanceof Map<?, ?> mapa) {
+                for (String columna : columnas) {
+                    escribir(json, mapa.get(columna));
+                }
+            }
+            json.writeEnd();
+        }
+        json.writeEnd();
+        json.writeEnd();
+        json.flush();
+    }
+
+    /**
+     * Columnas de la lista: todas las de Paciente, o las claves de la proyección.
+     */
+    private static List<String> columnas(List<?> filas) {
+        if (!filas.isEmpty() && filas.get(0) instanceof Map<?, ?> mapa) {
+            List<String> columnas = new ArrayList<>(mapa.size());
+            for (Object clave : mapa.keySet()) {
+                columnas.add(String.valueOf(clave));
+            }
+            return columnas;
+        }
+        return FiltroPaciente.COLUMNAS;
+    }
+
+    private static void escribir(JsonGenerator json, Object valor) {
+        if (valor == null) {
+            json.writeNull();
+        } else if (valor instanceof Integer entero) {
+            json.write(entero);
+        } else if (valor instanceof Boolean logico) {
+            json.write(logico);
+        } else {
+            json.write(valor.toString());
+        }
+    }
+}
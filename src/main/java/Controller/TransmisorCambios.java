@@ -0,0 +1,167 @@
+package Controller;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Envía los eventos del bus de pacientes a un cliente conectado por
+ * Server-Sent Events (GET /pacientes/changes). Cada suscriptor tiene su propio
+ * hilo virtual y su propio cursor: un cliente lento solo retrasa su hilo, nunca
+ * a quien publica ni a los demás suscriptores.
+ *
+ * Política ante clientes lentos: si el cursor de un suscriptor queda fuera del
+ * anillo del bus (o el Last-Event-ID no es de esta instancia), se le envía un
+ * evento "resync" con el id actual y se sigue desde el final. El cliente debe
+ * volver a leer GET /pacientes y continuar con el flujo.
+ *
+ * Mientras no hay cambios se envía un comentario cada hospital.eventos.latidoMs
+ * para mantener viva la conexión a través de proxies y detectar clientes que
+ * se desconectaron.
+ */
+import Model.EventoPaciente;
+import Util.BusEventosPaciente;
+import Util.Configuracion;
+import Util.Metricas;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class TransmisorCambios implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(TransmisorCambios.class.getName());
+
+    private static final long LATIDO_MS = Configuracion.largo("eventos.latidoMs", 15_000);
+    private static final int MAXIMO_SUSCRIPTORES = Configuracion.entero("eventos.maximoSuscriptores", 200);
+    // Eventos que se leen del bus en cada vuelta
+    private static final int LOTE = 256;
+
+    private static final Semaphore CUPOS = new Semaphore(MAXIMO_SUSCRIPTORES);
+    private static final ExecutorService HILOS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final LongAdder ENVIADOS = Metricas.contador("hospital_eventos_enviados_total");
+    private static final LongAdder RESINCRONIZACIONES = Metricas.contador("hospital_eventos_resincronizaciones_total");
+
+    static {
+        Metricas.indicador("hospital_eventos_suscriptores",
+                () -> MAXIMO_SUSCRIPTORES - CUPOS.availablePermits());
+    }
+
+    private final BusEventosPaciente bus;
+    private final SseEventSink sink;
+    private final Sse sse;
+    private final String ultimoId;
+
+    private TransmisorCambios(BusEventosPaciente bus, SseEventSink sink, Sse sse, String ultimoId) {
+        this.bus = bus;
+        this.sink = sink;
+        this.sse = sse;
+        this.ultimoId = ultimoId;
+    }
+
+    /**
+     * Registra un suscriptor y empieza a enviarle eventos en un hilo virtual.
+     * @param ultimoId Last-Event-ID del cliente o null para recibir solo los cambios nuevos.
+     * @return false si ya se alcanzó hospital.eventos.maximoSuscriptores.
+     */
+    static boolean suscribir(SseEventSink sink, Sse sse, String ultimoId) {
+        if (!CUPOS.tryAcquire()) {
+            return false;
+        }
+        BusEventosPaciente bus = BusEventosPaciente.getInstancia();
+        bus.abrirLector();
+        try {
+            HILOS.execute(new TransmisorCambios(bus, sink, sse, ultimoId));
+            return true;
+        } catch (RuntimeException e) {
+            bus.cerrarLector();
+            CUPOS.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            long cursor = ultimoId == null || ultimoId.isBlank() ? bus.getUltima() : bus.posicion(ultimoId.trim());
+            if (cursor < 0) {
+                cursor = resincronizar();
+            }
+            while (!sink.isClosed() && !bus.isCerrado()) {
+                if (!bus.esperar(cursor, LATIDO_MS, TimeUnit.MILLISECONDS)) {
+                    if (!bus.isCerrado()) {
+                        enviar(sse.newEventBuilder().comment("latido").build());
+                    }
+                    continue;
+                }
+                List<EventoPaciente> eventos = bus.leer(cursor, LOTE);
+                if (eventos == null) {
+                    // el cliente se atrasó más que el anillo: sus eventos se perdieron
+                    cursor = resincronizar();
+                    continue;
+                }
+                for (EventoPaciente evento : eventos) {
+                    enviar(sse.newEventBuilder()
+                            .id(bus.id(evento.getSecuencia()))
+                            .name(evento.getTipo().name().toLowerCase(Locale.ROOT))
+                            .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                            .data(EventoPaciente.class, evento)
+                            .build());
+                    cursor = evento.getSecuencia();
+                }
+                ENVIADOS.add(eventos.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompletionException | IllegalStateException e) {
+            // el cliente cerró la conexión mientras se le escribía
+            LOG.log(Level.FINE, "Suscriptor de cambios desconectado", e);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Error enviando el flujo de cambios", e);
+        } finally {
+            bus.cerrarLector();
+            CUPOS.release();
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                LOG.log(Level.FINE, "No se pudo cerrar el flujo de cambios", e);
+            }
+        }
+    }
+
+    /**
+     * Avisa al cliente que perdió eventos y lo ubica al final del bus.
+     * @return la nueva posición del cursor.
+     */
+    private long resincronizar() {
+        long ultima = bus.getUltima();
+        RESINCRONIZACIONES.increment();
+        enviar(sse.newEventBuilder()
+                .id(bus.id(ultima))
+                .name("resync")
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(Map.class, Map.of("secuencia", ultima))
+                .build());
+        return ultima;
+    }
+
+    /**
+     * Escribe el evento y espera a que termine, así este hilo avanza al ritmo
+     * del cliente (el envío bloquea solo al hilo virtual del suscriptor).
+     */
+    private void enviar(OutboundSseEvent evento) {
+        sink.send(evento).toCompletableFuture().join();
+    }
+}
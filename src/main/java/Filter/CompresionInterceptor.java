@@ -0,0 +1,292 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Compresión de las respuestas de la API (gzip o deflate) negociada con la
+ * cabecera Accept-Encoding del cliente. Se registra igual que CorsFilter, con
+ * @Provider, y actúa sobre el cuerpo de cualquier respuesta.
+ *
+ * Solo se comprime si el cuerpo supera hospital.compresion.umbralBytes (1024
+ * por defecto): los primeros bytes se acumulan en memoria y, si la respuesta
+ * termina antes del umbral, se envían sin comprimir (comprimir cuerpos
+ * pequeños cuesta CPU y casi no ahorra bytes). En las respuestas en flujo
+ * (export) cada flush del recurso se traslada al compresor, así el cliente
+ * sigue recibiendo los datos a medida que se generan. Los Server-Sent Events
+ * no se comprimen: cada evento debe llegar al cliente apenas se envía.
+ *
+ * zstd y brotli no están disponibles en el JDK (requieren bibliotecas nativas),
+ * por lo que solo se negocian gzip y deflate.
+ */
+import Util.Configuracion;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Provider
+public class CompresionInterceptor implements ContainerRequestFilter, WriterInterceptor {
+
+    private static final boolean HABILITADA = Configuracion.logico("compresion.habilitada", true);
+    private static final int UMBRAL_BYTES = Configuracion.entero("compresion.umbralBytes", 1024);
+
+    // Propiedad de la solicitud con la codificación elegida (gzip, deflate o ausente)
+    private static final String PROPIEDAD = "compresion.codificacion";
+
+    /**
+     * Lee Accept-Encoding al recibir la solicitud, en el hilo del contenedor, y
+     * deja la codificación elegida como propiedad para el interceptor.
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (HABILITADA) {
+            String codificacion = elegir(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+            if (codificacion != null) {
+                requestContext.setProperty(PROPIEDAD, codificacion);
+            }
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        if (!HABILITADA) {
+            context.proceed();
+            return;
+        }
+        MultivaluedMap<String, Object> cabeceras = context.getHeaders();
+        // la respuesta puede variar según Accept-Encoding aunque esta vez no se comprima
+        cabeceras.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        Object codificacion = context.getProperty(PROPIEDAD);
+        if (codificacion == null || cabeceras.containsKey(HttpHeaders.CONTENT_ENCODING)
+                || MediaType.SERVER_SENT_EVENTS_TYPE.isCompatible(context.getMediaType())) {
+            context.proceed();
+            return;
+        }
+        SalidaCompresible salida = new SalidaCompresible(context.getOutputStream(), cabeceras, (String) codificacion);
+        context.setOutputStream(salida);
+        try {
+            context.proceed();
+        } finally {
+            salida.terminar();
+        }
+    }
+
+    /**
+     * Elige la codificación según Accept-Encoding: gzip si se acepta, si no
+     * deflate; null si ninguna (se respetan q=0 y el comodín *).
+     */
+    static String elegir(String aceptadas) {
+        if (aceptadas == null || aceptadas.isBlank()) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean comodin = false;
+        boolean gzipRechazado = false;
+        boolean deflateRechazado = false;
+        for (String parte : aceptadas.toLowerCase(Locale.ROOT).split(",")) {
+            String[] elementos = parte.trim().split(";");
+            String nombre = elementos[0].trim();
+            boolean aceptada = true;
+            for (int i = 1; i < elementos.length; i++) {
+                String parametro = elementos[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        aceptada = Double.parseDouble(parametro.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        aceptada = false;
+                    }
+                }
+            }
+            switch (nombre) {
+                case "gzip", "x-gzip" -> { gzip |= aceptada; gzipRechazado |= !aceptada; }
+                case "deflate" -> { deflate |= aceptada; deflateRechazado |= !aceptada; }
+                case "*" -> comodin = aceptada;
+                default -> { }
+            }
+        }
+        if (gzip || (comodin && !gzipRechazado)) {
+            return "gzip";
+        }
+        if (deflate || (comodin && !deflateRechazado)) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    /**
+     * Flujo que acumula hasta el umbral y recién entonces decide si comprime.
+     * Las cabeceras se modifican antes del primer byte enviado al cliente.
+     */
+    private static final class SalidaCompresible extends OutputStream {
+
+        private final OutputStream original;
+        private final MultivaluedMap<String, Object> cabeceras;
+        private final String codificacion;
+        private ByteArrayOutputStream pendiente = new ByteArrayOutputStream(UMBRAL_BYTES);
+        private OutputStream destino;   // null mientras no se decide
+        private DeflaterOutputStream compresor;
+        // Deflater propio del compresor deflate: close() no lo libera, se libera en terminar()
+        private Deflater deflater;
+
+        SalidaCompresible(OutputStream original, MultivaluedMap<String, Object> cabeceras, String codificacion) {
+            this.original = original;
+            this.cabeceras = cabeceras;
+            this.codificacion = codificacion;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (destino != null) {
+                destino.write(b);
+                return;
+            }
+            pendiente.write(b);
+            if (pendiente.size() > UMBRAL_BYTES) {
+                comprimir();
+            }
+        }
+
+        @Override
+        public void write(byte[] datos, int desde, int largo) throws IOException {
+            if (destino != null) {
+                destino.write(datos, desde, largo);
+                return;
+            }
+            pendiente.write(datos, desde, largo);
+            if (pendiente.size() > UMBRAL_BYTES) {
+                comprimir();
+            }
+        }
+
+        /**
+         * Antes de decidir se sigue acumulando (el umbral es pequeño); después
+         * se vacía el compresor para que el cliente reciba lo generado.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (destino != null) {
+                destino.flush();
+            }
+        }
+
+        /**
+         * El contenedor cierra el flujo original; aquí solo se termina el nuestro.
+         */
+        @Override
+        public void close() throws IOException {
+            terminar();
+        }
+
+        private void comprimir() throws IOException {
+            cabeceras.putSingle(HttpHeaders.CONTENT_ENCODING, codificacion);
+            cabeceras.remove(HttpHeaders.CONTENT_LENGTH);
+            etiquetarCodificacion();
+            // syncFlush: flush() envía lo comprimido hasta el momento (necesario en export).
+            // El compresor escribe a través de SinCierre para que al cerrarlo no se
+            // cierre el flujo del contenedor. GZIPOutputStream libera su Deflater al
+            // cerrarse; el de deflate se pasa explícito (para el búfer de 8 KB) y
+            // close() no lo libera, así que terminar() llama a end().
+            OutputStream sinCierre = new SinCierre(original);
+            if (codificacion.equals("gzip")) {
+                compresor = new GZIPOutputStream(sinCierre, 8192, true);
+            } else {
+                deflater = new Deflater();
+                compresor = new DeflaterOutputStream(sinCierre, deflater, 8192, true);
+            }
+            destino = compresor;
+            pendiente.writeTo(compresor);
+            pendiente = null;
+        }
+
+        /**
+         * Una ETag fuerte identifica una representación exacta: la versión
+         * comprimida lleva un sufijo (".gzip") que Controller.Condiciones ignora
+         * al comparar If-None-Match / If-Match.
+         */
+        private void etiquetarCodificacion() {
+            Object etag = cabeceras.getFirst(HttpHeaders.ETAG);
+            if (etag == null) {
+                return;
+            }
+            String texto = etag.toString();
+            if (texto.endsWith("\"") && !texto.startsWith("W/")) {
+                cabeceras.putSingle(HttpHeaders.ETAG,
+                        texto.substring(0, texto.length() - 1) + "." + codificacion + "\"");
+            }
+        }
+
+        /**
+         * Termina la respuesta: envía sin comprimir si no se alcanzó el umbral,
+         * o escribe el final del formato comprimido.
+         */
+        void terminar() throws IOException {
+            if (destino == null) {
+                if (pendiente != null) {
+                    destino = original;
+                    pendiente.writeTo(original);
+                    pendiente = null;
+                }
+                return;
+            }
+            if (compresor != null) {
+                DeflaterOutputStream cerrar = compresor;
+                compresor = null;
+                try {
+                    cerrar.close();
+                } finally {
+                    // memoria nativa de zlib: sin end() queda tomada hasta el GC
+                    if (deflater != null) {
+                        deflater.end();
+                        deflater = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Envoltorio que delega la escritura pero no cierra el flujo original.
+     */
+    private static final class SinCierre extends OutputStream {
+
+        private final OutputStream original;
+
+        SinCierre(OutputStream original) {
+            this.original = original;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            original.write(b);
+        }
+
+        @Override
+        public void write(byte[] datos, int desde, int largo) throws IOException {
+            original.write(datos, desde, largo);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            original.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            original.flush();
+        }
+    }
+}
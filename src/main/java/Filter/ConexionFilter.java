@@ -5,28 +5,48 @@ package Filter;
  * Versión: 1.0
  * Descripción:
  * Filtro encargado de gestionar la conexión JDBC para toda la aplicación.
- * Intercepta cada solicitud entrante, crea una conexión, la comparte con los
- * servlets/recursos REST y controla explícitamente las transacciones mediante
- * commit y rollback. Garantiza integridad de datos y centraliza la apertura
- * y cierre de conexiones.
+ * Intercepta cada solicitud entrante, le asigna un proveedor de conexión que
+ * toma la conexión del pool solo si algún servlet/recurso REST la necesita, y
+ * controla explícitamente las transacciones mediante commit y rollback.
+ * Garantiza integridad de datos y centraliza la apertura y cierre de conexiones.
+ *
+ * Cada solicitud recibe un plazo: el de la cabecera X-Request-Timeout (en
+ * milisegundos, acotado por hospital.plazo.maximoMs) o hospital.plazo.porDefectoMs
+ * (0 = sin plazo). Si se supera, las consultas se cancelan, la transacción se
+ * deshace y se responde 504.
  */
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import Service.ServiceJdbcException;
-import Util.Conexion;
+import Util.Metricas;
+import Util.Configuracion;
+import Util.PoolAgotadoException;
+import Util.ProveedorConexion;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Aplica el filtro a todas las rutas del proyecto (/*).
  * Esto permite que cualquier servlet, JSP o recurso REST
- * pueda usar la conexión asignada en la solicitud.
+ * pueda usar la conexión asignada en la solicitud (a través de ProveedorConexion).
  */
-@WebFilter("/*")
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class ConexionFilter implements Filter {
+
+    private static final Logger LOG = Logger.getLogger(ConexionFilter.class.getName());
+
+    // Largo máximo aceptado de X-Cliente-Id; uno mayor se ignora y se usa la IP
+    private static final int LARGO_MAXIMO_CLIENTE = 64;
+
+    private static final long PLAZO_POR_DEFECTO_MS = Configuracion.largo("plazo.porDefectoMs", 30_000);
+    private static final long PLAZO_MAXIMO_MS = Configuracion.largo("plazo.maximoMs", 120_000);
+
     /**
      * una clase filter en java es un objeto que realiza tareas
      * de filtrado en las solicitudes cliente servidor
@@ -47,43 +67,127 @@ public class ConexionFilter implements Filter {
          * que puede ser un servlet o jsp
          */
 
-        // Abrimos una conexión utilizando la clase utilitaria "Conexion"
-        try (Connection connection = Conexion.getConnection()) {
-            // Asegura que el manejo de transacciones sea manual
-            if (connection.getAutoCommit()) {
-                //cambiamos a una conexion manual
-                connection.setAutoCommit(false);
+        // Creamos el proveedor de la conexión; la conexión real se toma del pool
+        // solo cuando un recurso la pide por primera vez
+        ProveedorConexion proveedor = new ProveedorConexion(identificarCliente(request));
+        proveedor.establecerPlazo(plazoSolicitud(request));
+        try {
+            //agregamos el proveedor como un atributo en la solicitud
+            //esto nos permite que otros componentes como servlet o DAOS
+            //puedan obtener la conexion cuando la necesiten
+            request.setAttribute(ProveedorConexion.ATRIBUTO, proveedor);
+            //pasa la solicitud y la respuesta al siguiente filtro o al recurso destino
+            chain.doFilter(request, response);
+            /**
+             * si la solicitud continua en un hilo virtual, ese hilo es el
+             * responsable de la transaccion y de devolver la conexion
+             */
+            if (proveedor.esDelegado()) {
+                return;
+            }
+            /**
+             * si el procesamiento se realizo correctamente sin lanzar excepciones
+             * se confirma la solicitud y se aplica todos los cambios a la bdd
+             * (solo si realmente se uso una conexion)
+             */
+            //si el plazo vencio y la respuesta aun no salio, se deshace y se responde 504
+            if (!response.isCommitted()) {
+                proveedor.verificarPlazo();
+            }
+            proveedor.confirmar();
+            /**
+             * si ocurre algun error durante el procesamiento (dentro del doFilter),
+             * se captura la excepcion
+             */
+        }catch (SQLException | ServiceJdbcException e) {
+            //se deshace los cambios con un rollback y de esa forma se
+            // mantiene la integridad de los datos
+            deshacer(proveedor);
+            //contamos el fallo; estos errores no pasan por el filtro de metricas de JAX-RS
+            //cuando ocurren al confirmar, despues de generada la respuesta
+            Metricas.contador("hospital_db_transacciones_fallidas_total", "causa",
+                    e instanceof PoolAgotadoException ? "pool_agotado"
+                            : e instanceof SQLTimeoutException ? "plazo" : "sql").increment();
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            if (!httpResponse.isCommitted()) {
+                if (e instanceof SQLTimeoutException) {
+                    //la solicitud supero su plazo: la transaccion ya se deshizo
+                    httpResponse.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT, e.getMessage());
+                } else if (e instanceof PoolAgotadoException) {
+                    //el pool no tuvo conexiones libres a tiempo: respondemos 503
+                    //para que el cliente reintente en lugar de quedar bloqueado
+                    httpResponse.setHeader("Retry-After", "1");
+                    httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+                } else {
+                    //enviamos un codigo de error Http 500 al cliente
+                    //indicando un problema interno del servidor
+                    httpResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+                }
             }
+            LOG.log(Level.SEVERE, "Error de base de datos en la solicitud; se hizo rollback", e);
+        } catch (IOException | ServletException | RuntimeException e) {
+            deshacer(proveedor);
+            throw e;
+        } finally {
+            //devolvemos la conexion al pool (si se llego a tomar)
             try {
-                //agregamos la conexion como un atributo en la solicitud
-                //esto nos permite que otros componentes como servlet o DAOS
-                //puedan acceder a la conexion
-                request.setAttribute("conn", connection);
-                //pasa la solicitud y la respuesta al siguiente filtro o al recurso destino
-                chain.doFilter(request, response);
-                /**
-                 * si el procesamiento se realizo correctamente sin lanzar excepciones
-                 * se confirma la solicitud y se aplica todos los cambios a la bdd
-                 */
-                connection.commit();
-                /**
-                 * si ocurre algun error durante el procesamiento (dentro del doFilter),
-                 * se captura la excepcion
-                 */
-            }catch (SQLException | ServiceJdbcException e) {
-                //se deshace los cambios con un rollback y de esa forma se
-                // mantiene la integridad de los datos
-                connection.rollback();
-                //enviamos un codigo de error Http 500 al cliente
-                //indicando un problema interno del servidor
-                ((HttpServletResponse)response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
-                e.printStackTrace();
+                if (!proveedor.esDelegado()) {
+                    proveedor.cerrar();
+                }
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "No se pudo devolver la conexión al pool", e);
+            }
+        }
+    }
 
+    /**
+     * Identifica al cliente para la afinidad de lectura propia: la cabecera
+     * X-Cliente-Id si viene (y no supera LARGO_MAXIMO_CLIENTE), o la dirección
+     * IP de origen. La cabecera la elige el cliente: sirve para la afinidad,
+     * no para aplicar límites (ver ControlAdmisionFilter).
+     */
+    static String identificarCliente(ServletRequest request) {
+        if (request instanceof HttpServletRequest httpRequest) {
+            String cliente = httpRequest.getHeader("X-Cliente-Id");
+            if (cliente != null && !cliente.isBlank() && cliente.length() <= LARGO_MAXIMO_CLIENTE) {
+                return cliente;
+            }
+        }
+        return request.getRemoteAddr();
+    }
 
+    /**
+     * Plazo de la solicitud en milisegundos: la cabecera X-Request-Timeout si
+     * es un número válido (acotado al máximo configurado) o el valor por defecto.
+     */
+    static long plazoSolicitud(ServletRequest request) {
+        if (request instanceof HttpServletRequest httpRequest) {
+            String valor = httpRequest.getHeader("X-Request-Timeout");
+            if (valor != null) {
+                try {
+                    long pedido = Long.parseLong(valor.trim());
+                    if (pedido > 0) {
+                        return PLAZO_MAXIMO_MS > 0 ? Math.min(pedido, PLAZO_MAXIMO_MS) : pedido;
+                    }
+                } catch (NumberFormatException e) {
+                    // valor inválido: se usa el plazo por defecto
+                }
             }
-        }catch (SQLException throwables) {
-            throwables.printStackTrace();
         }
+        return PLAZO_POR_DEFECTO_MS;
+    }
 
+    /**
+     * Rollback que no oculta la excepción original si también falla.
+     */
+    private void deshacer(ProveedorConexion proveedor) {
+        if (proveedor.esDelegado()) {
+            return;
+        }
+        try {
+            proveedor.deshacer();
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Falló el rollback de la solicitud", e);
+        }
     }
 }
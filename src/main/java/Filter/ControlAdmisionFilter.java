@@ -0,0 +1,218 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Control de admisión delante de PacienteResource. En un pico de carga es
+ * mejor rechazar rápido lo que no se puede atender que dejar que todas las
+ * solicitudes esperen una conexión del pool hasta que venzan juntas.
+ *
+ * - Cada solicitud pertenece a una clase de endpoints con su propio límite de
+ *   concurrencia adaptativo (LimiteAdaptativo): lectura (GET, HEAD y POST
+ *   /lookup), escritura (altas, modificaciones y cambios de estado) y masiva
+ *   (export, bulk y cambio de estado masivo, con límite fijo por defecto).
+ *   Si la clase está llena se responde 503 con Retry-After sin tocar el pool.
+ * - Opcionalmente, un límite de tasa por cliente (hospital.admision.cliente.tasa
+ *   en solicitudes por segundo, 0 = sin límite). El cliente es el usuario
+ *   autenticado o, si no hay, la IP de origen; nunca X-Cliente-Id, que el
+ *   propio cliente puede cambiar en cada solicitud para estrenar una cubeta
+ *   llena. Si se supera, 429 con Retry-After en segundos hasta la próxima ficha.
+ * - El flujo de cambios (/changes) queda fuera: es una conexión larga que no
+ *   usa el pool y ocuparía un lugar durante toda su vida.
+ *
+ * En las solicitudes asíncronas el lugar se libera al completar la respuesta
+ * (AsyncListener), no al volver del hilo del contenedor. El orden respecto a
+ * ConexionFilter no importa: el proveedor solo toma una conexión cuando el
+ * recurso la pide.
+ */
+import Util.Configuracion;
+import Util.Metricas;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@WebFilter(urlPatterns = "/api/pacientes/*", asyncSupported = true)
+public class ControlAdmisionFilter implements Filter {
+
+    private static final String RAIZ = "/api/pacientes";
+
+    private static final boolean HABILITADO = Configuracion.logico("admision.habilitado", true);
+
+    private static final LimiteAdaptativo LECTURA = new LimiteAdaptativo("lectura", 100, 10, 1_000, 250);
+    private static final LimiteAdaptativo ESCRITURA = new LimiteAdaptativo("escritura", 40, 4, 200, 500);
+    private static final LimiteAdaptativo MASIVA = new LimiteAdaptativo("masiva", 4, 4, 4, 60_000);
+
+    private static final LimitadorClientes CLIENTES = crearLimitadorClientes();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        LimiteAdaptativo limite = HABILITADO ? clasificar(httpRequest) : null;
+        if (limite == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // Primero la tasa por cliente: un cliente que abusa no debe ocupar lugares
+        if (CLIENTES != null) {
+            long espera = CLIENTES.intentar(clienteLimitado(httpRequest));
+            if (espera > 0) {
+                rechazar(httpResponse, limite, "cliente", 429,
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(espera + TimeUnit.SECONDS.toNanos(1) - 1)),
+                        "Demasiadas solicitudes, intente más tarde");
+                return;
+            }
+        }
+        if (!limite.adquirir()) {
+            rechazar(httpResponse, limite, "limite", HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1,
+                    "Servicio no disponible, intente nuevamente");
+            return;
+        }
+
+        Liberacion liberacion = new Liberacion(limite, httpResponse);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!liberarAlCompletar(request, liberacion)) {
+                liberacion.liberar(false);
+            }
+        }
+    }
+
+    /**
+     * Clase de endpoints de la solicitud, o null si no se limita.
+     */
+    private static LimiteAdaptativo clasificar(HttpServletRequest request) {
+        String metodo = request.getMethod();
+        if ("OPTIONS".equals(metodo)) {
+            return null;
+        }
+        // Ruta debajo de /api/pacientes (getPathInfo depende del mapeo del servlet, no del filtro)
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        ruta = ruta.startsWith(RAIZ) ? ruta.substring(RAIZ.length()) : ruta;
+        if (ruta.startsWith("/changes")) {
+            return null;
+        }
+        boolean lectura = "GET".equals(metodo) || "HEAD".equals(metodo);
+        if ((lectura && ruta.startsWith("/export"))
+                || ("POST".equals(metodo) && ruta.startsWith("/bulk"))
+                || ("PUT".equals(metodo) && ruta.equals("/estado"))) {
+            return MASIVA;
+        }
+        if (lectura || ("POST".equals(metodo) && ruta.startsWith("/lookup"))) {
+            return LECTURA;
+        }
+        return ESCRITURA;
+    }
+
+    /**
+     * Identidad con la que se aplica el límite de tasa: el usuario autenticado
+     * o la dirección IP de origen.
+     */
+    private static String clienteLimitado(HttpServletRequest request) {
+        Principal usuario = request.getUserPrincipal();
+        return usuario != null ? "usuario:" + usuario.getName() : request.getRemoteAddr();
+    }
+
+    /**
+     * Si la solicitud siguió en modo asíncrono, deja la liberación a cargo de
+     * un AsyncListener. Devuelve false si hay que liberar ahora.
+     */
+    private static boolean liberarAlCompletar(ServletRequest request, Liberacion liberacion) {
+        if (!request.isAsyncStarted()) {
+            return false;
+        }
+        try {
+            request.getAsyncContext().addListener(liberacion);
+            return true;
+        } catch (IllegalStateException e) {
+            // La respuesta asíncrona ya se completó
+            return false;
+        }
+    }
+
+    private static void rechazar(HttpServletResponse response, LimiteAdaptativo limite, String motivo,
+                                 int estado, long reintentoSegundos, String mensaje) throws IOException {
+        Metricas.contador("hospital_admision_rechazos_total",
+                "clase", limite.getClase(), "motivo", motivo).increment();
+        response.setStatus(estado);
+        response.setHeader("Retry-After", String.valueOf(reintentoSegundos));
+        // La respuesta no pasa por CorsFilter: sin esta cabecera el navegador oculta el rechazo
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\": \"" + mensaje + "\"}");
+    }
+
+    private static LimitadorClientes crearLimitadorClientes() {
+        int tasa = Configuracion.entero("admision.cliente.tasa", 0);
+        if (tasa <= 0) {
+            return null;
+        }
+        return new LimitadorClientes(tasa,
+                Configuracion.entero("admision.cliente.rafaga", tasa * 2),
+                Configuracion.entero("admision.cliente.maximoClientes", 10_000));
+    }
+
+    /**
+     * Devuelve el lugar de la solicitud una sola vez, ya sea al volver del
+     * filtro o al completar la respuesta asíncrona.
+     */
+    private static final class Liberacion implements AsyncListener {
+
+        private final LimiteAdaptativo limite;
+        private final HttpServletResponse response;
+        private final long inicio = System.nanoTime();
+        private final AtomicBoolean liberada = new AtomicBoolean();
+
+        Liberacion(LimiteAdaptativo limite, HttpServletResponse response) {
+            this.limite = limite;
+            this.response = response;
+        }
+
+        void liberar(boolean fallo) {
+            if (liberada.compareAndSet(false, true)) {
+                int estado = response.getStatus();
+                limite.liberar(inicio, fallo
+                        || estado == HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                        || estado == HttpServletResponse.SC_GATEWAY_TIMEOUT);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            liberar(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            liberar(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            liberar(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Un nuevo ciclo asíncrono vuelve a registrar el listener
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
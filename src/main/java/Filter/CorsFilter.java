@@ -35,12 +35,16 @@ public class CorsFilter implements ContainerResponseFilter {
         responseContext.getHeaders().add("Access-Control-Allow-Origin", "*");
 
         // Especifica qué cabeceras puede enviar el cliente en la solicitud
-        responseContext.getHeaders().add("Access-Control-Allow-Headers", "origin, content-type, accept, authorization");
+        responseContext.getHeaders().add("Access-Control-Allow-Headers", "origin, content-type, accept, authorization, if-none-match, if-match, last-event-id, idempotency-key, x-request-timeout");
 
         // Indica si se permiten credenciales (cookies, tokens).
         responseContext.getHeaders().add("Access-Control-Allow-Credentials", "true");
 
         // Define qué métodos HTTP están permitidos en solicitudes CORS
         responseContext.getHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, HEAD");
+
+        // Cabeceras de respuesta que el navegador puede leer (cursor de paginación, versión
+        // y marca de respuesta idempotente repetida)
+        responseContext.getHeaders().add("Access-Control-Expose-Headers", "X-Siguiente-Cursor, Link, ETag, Idempotency-Replayed");
     }
 }
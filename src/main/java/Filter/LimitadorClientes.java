@@ -0,0 +1,102 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Límite de tasa por cliente con una cubeta de fichas (token bucket): cada
+ * cliente recibe "tasa" fichas por segundo hasta un máximo de "rafaga", y
+ * cada solicitud gasta una. Las cubetas se crean al primer uso; cuando hay más
+ * clientes que el máximo configurado se descartan las que ya se rellenaron
+ * por completo (un cliente inactivo no pierde nada al volver a empezar).
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+final class LimitadorClientes {
+
+    private static final long LIMPIEZA_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double fichasPorNano;
+    private final double rafaga;
+    private final int maximoClientes;
+    private final ConcurrentHashMap<String, Cubeta> cubetas = new ConcurrentHashMap<>();
+    private final AtomicLong ultimaLimpieza = new AtomicLong(System.nanoTime());
+
+    LimitadorClientes(double tasaPorSegundo, double rafaga, int maximoClientes) {
+        this.fichasPorNano = tasaPorSegundo / TimeUnit.SECONDS.toNanos(1);
+        this.rafaga = Math.max(1, rafaga);
+        this.maximoClientes = Math.max(1, maximoClientes);
+    }
+
+    /**
+     * Gasta una ficha del cliente.
+     *
+     * @return 0 si se admitió; si no, los nanosegundos hasta la próxima ficha
+     */
+    long intentar(String cliente) {
+        long ahora = System.nanoTime();
+        Cubeta cubeta = cubetas.computeIfAbsent(cliente, c -> new Cubeta(rafaga, ahora));
+        long espera = cubeta.gastar(ahora);
+        if (cubetas.size() > maximoClientes) {
+            limpiar(ahora);
+        }
+        return espera;
+    }
+
+    /**
+     * Descarta las cubetas llenas, como mucho una vez por segundo.
+     */
+    private void limpiar(long ahora) {
+        long anterior = ultimaLimpieza.get();
+        if (ahora - anterior < LIMPIEZA_NANOS || !ultimaLimpieza.compareAndSet(anterior, ahora)) {
+            return;
+        }
+        cubetas.values().removeIf(c -> c.llena(ahora));
+    }
+
+    private final class Cubeta {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private double fichas;
+        private long ultimo;
+
+        Cubeta(double fichas, long ahora) {
+            this.fichas = fichas;
+            this.ultimo = ahora;
+        }
+
+        long gastar(long ahora) {
+            lock.lock();
+            try {
+                rellenar(ahora);
+                if (fichas >= 1) {
+                    fichas -= 1;
+                    return 0;
+                }
+                return Math.max(1, (long) Math.ceil((1 - fichas) / fichasPorNano));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean llena(long ahora) {
+            lock.lock();
+            try {
+                rellenar(ahora);
+                return fichas >= rafaga;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void rellenar(long ahora) {
+            if (ahora > ultimo) {
+                fichas = Math.min(rafaga, fichas + (ahora - ultimo) * fichasPorNano);
+                ultimo = ahora;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Límite de concurrencia adaptativo (AIMD) para una clase de endpoints. Cuenta
+ * las solicitudes en curso y rechaza las que superan el límite actual; el
+ * límite se ajusta con la latencia observada al terminar cada solicitud:
+ *
+ * - Respuesta rápida y sin sobrecarga: suma 1/limite (aprox. +1 por cada
+ *   "ventana" de solicitudes), solo si la clase está usando al menos la mitad
+ *   del límite; así no crece sin fin mientras el tráfico es bajo.
+ * - Respuesta más lenta que la latencia objetivo, o 503/504: multiplica el
+ *   límite por el factor de reducción. Se reduce como máximo una vez por cada
+ *   latencia objetivo, para que una ráfaga de respuestas lentas que ya estaban
+ *   en curso no lo lleve al mínimo de golpe.
+ *
+ * Con limiteMinimo igual a limiteMaximo el límite queda fijo.
+ */
+import Util.Configuracion;
+import Util.Metricas;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+final class LimiteAdaptativo {
+
+    private final String clase;
+    private final int minimo;
+    private final int maximo;
+    private final long objetivoNanos;
+    private final double factor;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limite;
+    private long ultimaReduccion; // protegido por lock
+
+    /**
+     * Lee la configuración hospital.admision.&lt;clase&gt;.* con los valores
+     * por defecto indicados.
+     */
+    LimiteAdaptativo(String clase, int inicial, int minimo, int maximo, long objetivoMs) {
+        String prefijo = "admision." + clase + ".";
+        this.clase = clase;
+        this.minimo = Math.max(1, Configuracion.entero(prefijo + "limiteMinimo", minimo));
+        this.maximo = Math.max(this.minimo, Configuracion.entero(prefijo + "limiteMaximo", maximo));
+        this.objetivoNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(1, Configuracion.largo(prefijo + "latenciaObjetivoMs", objetivoMs)));
+        this.factor = Math.min(0.99, Math.max(0.1,
+                Configuracion.entero("admision.factorReduccion", 90) / 100.0));
+        int valorInicial = Configuracion.entero(prefijo + "limiteInicial", inicial);
+        this.limite = Math.min(this.maximo, Math.max(this.minimo, valorInicial));
+        this.ultimaReduccion = System.nanoTime() - objetivoNanos;
+
+        Metricas.indicador("hospital_admision_limite", () -> (long) limite, "clase", clase);
+        Metricas.indicador("hospital_admision_en_curso", enCurso::get, "clase", clase);
+    }
+
+    String getClase() {
+        return clase;
+    }
+
+    /**
+     * Reserva un lugar si hay espacio bajo el límite actual. Quien recibe true
+     * debe llamar a liberar exactamente una vez.
+     */
+    boolean adquirir() {
+        while (true) {
+            int actual = enCurso.get();
+            if (actual >= (int) limite) {
+                return false;
+            }
+            if (enCurso.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libera el lugar y ajusta el límite con la latencia de la solicitud.
+     *
+     * @param inicio     System.nanoTime() al admitir la solicitud
+     * @param sobrecarga true si la respuesta indica sobrecarga (503/504)
+     */
+    void liberar(long inicio, boolean sobrecarga) {
+        long ahora = System.nanoTime();
+        int enVuelo = enCurso.getAndDecrement();
+        boolean lenta = ahora - inicio > objetivoNanos;
+        lock.lock();
+        try {
+            double actual = limite;
+            if (sobrecarga || lenta) {
+                if (ahora - ultimaReduccion >= objetivoNanos) {
+                    limite = Math.max(minimo, actual * factor);
+                    ultimaReduccion = ahora;
+                }
+            } else if (enVuelo * 2 >= actual) {
+                limite = Math.min(maximo, actual + 1.0 / actual);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimite() {
+        return (int) limite;
+    }
+
+    int getEnCurso() {
+        return enCurso.get();
+    }
+}
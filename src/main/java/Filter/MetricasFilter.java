@@ -0,0 +1,73 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Filtro JAX-RS que mide cada solicitud a la API: cuenta las solicitudes por
+ * endpoint, los errores por código de estado y registra la latencia en un
+ * histograma. El endpoint se identifica por la clase y el metodo del recurso
+ * (por ejemplo PacienteResource.buscarPorId), no por la URL, para que los ids
+ * no generen una serie nueva por cada paciente.
+ *
+ * En los endpoints asíncronos la respuesta se filtra cuando se reanuda, por lo
+ * que la latencia incluye el tiempo en el hilo virtual. En las respuestas en
+ * flujo (export) se mide hasta que empieza la escritura del cuerpo.
+ */
+import Util.Metricas;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+@Provider
+public class MetricasFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    // Propiedad de la solicitud donde se guarda el instante de inicio
+    private static final String INICIO = "metricas.inicio";
+
+    @Context
+    ResourceInfo recurso; // Permite saber qué metodo atendió la solicitud
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        requestContext.setProperty(INICIO, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext,
+                       ContainerResponseContext responseContext) throws IOException {
+        String metodo = requestContext.getMethod();
+        String endpoint = endpoint();
+        Metricas.contador("hospital_http_solicitudes_total", "metodo", metodo, "endpoint", endpoint).increment();
+
+        Object inicio = requestContext.getProperty(INICIO);
+        if (inicio instanceof Long nanos) {
+            Metricas.histograma("hospital_http_latencia_segundos", "metodo", metodo, "endpoint", endpoint)
+                    .registrarDesde(nanos);
+        }
+        int estado = responseContext.getStatus();
+        if (estado >= 400) {
+            Metricas.contador("hospital_http_errores_total",
+                    "metodo", metodo, "endpoint", endpoint, "estado", String.valueOf(estado)).increment();
+        }
+    }
+
+    /**
+     * Nombre del endpoint: Clase.metodo del recurso, o "sin_recurso" si la
+     * solicitud no llegó a ningún recurso (404, OPTIONS de CORS...).
+     */
+    private String endpoint() {
+        Method metodo = recurso == null ? null : recurso.getResourceMethod();
+        if (metodo == null) {
+            return "sin_recurso";
+        }
+        return metodo.getDeclaringClass().getSimpleName() + "." + metodo.getName();
+    }
+}
@@ -0,0 +1,49 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Resultado de un bloque de un cambio de estado masivo: rango de ids que
+ * cubrió el bloque (cada bloque es una transacción) y filas que cambiaron.
+ */
+public class BloqueCambioEstado {
+
+    private int desde;
+    private int hasta;
+    private int afectados;
+
+    public BloqueCambioEstado() {
+
+    }
+
+    public BloqueCambioEstado(int desde, int hasta, int afectados) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.afectados = afectados;
+    }
+
+    public int getDesde() {
+        return desde;
+    }
+
+    public void setDesde(int desde) {
+        this.desde = desde;
+    }
+
+    public int getHasta() {
+        return hasta;
+    }
+
+    public void setHasta(int hasta) {
+        this.hasta = hasta;
+    }
+
+    public int getAfectados() {
+        return afectados;
+    }
+
+    public void setAfectados(int afectados) {
+        this.afectados = afectados;
+    }
+}
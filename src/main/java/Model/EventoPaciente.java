@@ -0,0 +1,72 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Cambio confirmado sobre un paciente, tal como se publica en el flujo de
+ * cambios (GET /pacientes/changes). Cada evento lleva una secuencia creciente
+ * asignada por el bus de eventos, el tipo de cambio y el estado del paciente
+ * después del cambio, si se conoce.
+ *
+ * Es inmutable (solo getters) porque la misma instancia se entrega a todos
+ * los suscriptores.
+ */
+import java.io.Serializable;
+
+public class EventoPaciente implements Serializable {
+
+    /**
+     * Tipos de cambio publicados.
+     */
+    public enum Tipo {
+        CREADO,       // alta de un paciente (individual o carga masiva)
+        ACTUALIZADO,  // modificación de sus datos
+        ESTADO        // activación o desactivación
+    }
+
+    private final long secuencia;
+    private final Tipo tipo;
+    private final int idPaciente;
+    // estado después del cambio; null en las modificaciones publicadas sin
+    // datos (el PUT no trae el estado), y entonces no aparece en el JSON
+    private final Boolean activo;
+    // datos completos después del cambio; null en los cambios de estado y en las
+    // modificaciones publicadas sin consumidores (volver a leer el paciente)
+    private final Paciente paciente;
+    // instante de publicación (epoch en milisegundos)
+    private final long fecha;
+
+    public EventoPaciente(long secuencia, Tipo tipo, int idPaciente, Boolean activo, Paciente paciente, long fecha) {
+        this.secuencia = secuencia;
+        this.tipo = tipo;
+        this.idPaciente = idPaciente;
+        this.activo = activo;
+        this.paciente = paciente;
+        this.fecha = fecha;
+    }
+
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public int getIdPaciente() {
+        return idPaciente;
+    }
+
+    public Boolean getActivo() {
+        return activo;
+    }
+
+    public Paciente getPaciente() {
+        return paciente;
+    }
+
+    public long getFecha() {
+        return fecha;
+    }
+}
@@ -0,0 +1,95 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Criterios para listar pacientes de forma paginada. La paginación es por
+ * cursor (keyset): en lugar de un número de página se indica el último id
+ * recibido (despuesDe) y la consulta continúa desde ahí usando el índice
+ * de la llave primaria. Incluye filtros opcionales y la lista de columnas
+ * que se desean obtener (proyección).
+ */
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FiltroPaciente {
+
+    // Columnas que se pueden solicitar en la proyección
+    public static final List<String> COLUMNAS =
+            List.of("id", "nombre", "cedula", "correo", "edad", "direccion", "activo");
+
+    private int despuesDe;
+    private int limite;
+    private Boolean activo;
+    private Integer edadMin;
+    private Integer edadMax;
+    private String prefijoNombre;
+    private Set<String> campos = new LinkedHashSet<>();
+
+    public FiltroPaciente() {
+
+    }
+
+    // Getters y Setters
+
+    public int getDespuesDe() {
+        return despuesDe;
+    }
+
+    public void setDespuesDe(int despuesDe) {
+        this.despuesDe = despuesDe;
+    }
+
+    public int getLimite() {
+        return limite;
+    }
+
+    public void setLimite(int limite) {
+        this.limite = limite;
+    }
+
+    public Boolean getActivo() {
+        return activo;
+    }
+
+    public void setActivo(Boolean activo) {
+        this.activo = activo;
+    }
+
+    public Integer getEdadMin() {
+        return edadMin;
+    }
+
+    public void setEdadMin(Integer edadMin) {
+        this.edadMin = edadMin;
+    }
+
+    public Integer getEdadMax() {
+        return edadMax;
+    }
+
+    public void setEdadMax(Integer edadMax) {
+        this.edadMax = edadMax;
+    }
+
+    public String getPrefijoNombre() {
+        return prefijoNombre;
+    }
+
+    public void setPrefijoNombre(String prefijoNombre) {
+        this.prefijoNombre = prefijoNombre;
+    }
+
+    /**
+     * Columnas solicitadas; un conjunto vacío significa "todas".
+     */
+    public Set<String> getCampos() {
+        return campos;
+    }
+
+    public void setCampos(Set<String> campos) {
+        this.campos = campos;
+    }
+}
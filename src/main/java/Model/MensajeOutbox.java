@@ -0,0 +1,59 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Fila de la bandeja de salida (paciente_outbox) reservada por el despachador
+ * para entregarla al destino de eventos. La carga es el evento en JSON, tal
+ * como se guardó en la misma transacción que el cambio del paciente.
+ *
+ * El id es estable entre reintentos: el destino puede usarlo para descartar
+ * duplicados, porque la entrega es "al menos una vez".
+ */
+import java.io.Serializable;
+
+public class MensajeOutbox implements Serializable {
+
+    private final long id;
+    private final int idPaciente;
+    private final String tipo;
+    private final String carga;
+    // intentos fallidos anteriores a este envío
+    private final int intentos;
+    // tiempo desde que se registró el cambio hasta que se reservó la fila
+    private final long retrasoMicros;
+
+    public MensajeOutbox(long id, int idPaciente, String tipo, String carga, int intentos, long retrasoMicros) {
+        this.id = id;
+        this.idPaciente = idPaciente;
+        this.tipo = tipo;
+        this.carga = carga;
+        this.intentos = intentos;
+        this.retrasoMicros = retrasoMicros;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getIdPaciente() {
+        return idPaciente;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public String getCarga() {
+        return carga;
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    public long getRetrasoMicros() {
+        return retrasoMicros;
+    }
+}
@@ -0,0 +1,44 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Resultado de una consulta paginada de pacientes: los registros de la
+ * página y el cursor para pedir la siguiente (null si no hay más datos).
+ */
+import java.util.List;
+
+public class PaginaPacientes {
+
+    private List<Paciente> pacientes;
+    private Integer siguiente;
+
+    public PaginaPacientes() {
+
+    }
+
+    public PaginaPacientes(List<Paciente> pacientes, Integer siguiente) {
+        this.pacientes = pacientes;
+        this.siguiente = siguiente;
+    }
+
+    public List<Paciente> getPacientes() {
+        return pacientes;
+    }
+
+    public void setPacientes(List<Paciente> pacientes) {
+        this.pacientes = pacientes;
+    }
+
+    /**
+     * Id a enviar como "after" para obtener la siguiente página.
+     */
+    public Integer getSiguiente() {
+        return siguiente;
+    }
+
+    public void setSiguiente(Integer siguiente) {
+        this.siguiente = siguiente;
+    }
+}
@@ -0,0 +1,39 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Fila rechazada durante una carga masiva de pacientes: posición de la fila
+ * en el cuerpo recibido (desde 0) y el motivo del rechazo.
+ */
+public class RechazoFila {
+
+    private int indice;
+    private String motivo;
+
+    public RechazoFila() {
+
+    }
+
+    public RechazoFila(int indice, String motivo) {
+        this.indice = indice;
+        this.motivo = motivo;
+    }
+
+    public int getIndice() {
+        return indice;
+    }
+
+    public void setIndice(int indice) {
+        this.indice = indice;
+    }
+
+    public String getMotivo() {
+        return motivo;
+    }
+
+    public void setMotivo(String motivo) {
+        this.motivo = motivo;
+    }
+}
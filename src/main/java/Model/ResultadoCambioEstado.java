@@ -0,0 +1,56 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Resumen de un cambio de estado masivo: total de pacientes que cambiaron y
+ * el detalle de cada bloque confirmado. Si un bloque falla se detiene el
+ * proceso: los bloques anteriores ya quedaron confirmados y aparecen aquí, y
+ * "error" describe el que falló (null si todo terminó bien).
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultadoCambioEstado {
+
+    private int afectados;
+    private List<BloqueCambioEstado> bloques = new ArrayList<>();
+    private String error;
+
+    public ResultadoCambioEstado() {
+
+    }
+
+    /**
+     * Registra un bloque ya confirmado.
+     */
+    public void agregarBloque(int desde, int hasta, int afectados) {
+        bloques.add(new BloqueCambioEstado(desde, hasta, afectados));
+        this.afectados += afectados;
+    }
+
+    public int getAfectados() {
+        return afectados;
+    }
+
+    public void setAfectados(int afectados) {
+        this.afectados = afectados;
+    }
+
+    public List<BloqueCambioEstado> getBloques() {
+        return bloques;
+    }
+
+    public void setBloques(List<BloqueCambioEstado> bloques) {
+        this.bloques = bloques;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,53 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Resumen de una carga masiva de pacientes: cuántas filas se procesaron,
+ * cuántas se guardaron y el detalle de las filas rechazadas con su motivo.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultadoCargaMasiva {
+
+    private int procesados;
+    private int aceptados;
+    private List<RechazoFila> rechazados = new ArrayList<>();
+
+    public ResultadoCargaMasiva() {
+
+    }
+
+    /**
+     * Registra una fila rechazada.
+     */
+    public void rechazar(int indice, String motivo) {
+        rechazados.add(new RechazoFila(indice, motivo));
+    }
+
+    public int getProcesados() {
+        return procesados;
+    }
+
+    public void setProcesados(int procesados) {
+        this.procesados = procesados;
+    }
+
+    public int getAceptados() {
+        return aceptados;
+    }
+
+    public void setAceptados(int aceptados) {
+        this.aceptados = aceptados;
+    }
+
+    public List<RechazoFila> getRechazados() {
+        return rechazados;
+    }
+
+    public void setRechazados(List<RechazoFila> rechazados) {
+        this.rechazados = rechazados;
+    }
+}
@@ -0,0 +1,41 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Resultado de la consulta de varios pacientes por id (/pacientes/lookup):
+ * los pacientes encontrados indexados por id, en el orden pedido, y la lista
+ * explícita de los ids que no existen.
+ */
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ResultadoConsultaIds {
+
+    // Las llaves son texto porque en JSON las llaves de un objeto siempre lo son
+    private Map<String, Paciente> pacientes = new LinkedHashMap<>();
+    private List<Integer> faltantes = new ArrayList<>();
+
+    public ResultadoConsultaIds() {
+
+    }
+
+    public Map<String, Paciente> getPacientes() {
+        return pacientes;
+    }
+
+    public void setPacientes(Map<String, Paciente> pacientes) {
+        this.pacientes = pacientes;
+    }
+
+    public List<Integer> getFaltantes() {
+        return faltantes;
+    }
+
+    public void setFaltantes(List<Integer> faltantes) {
+        this.faltantes = faltantes;
+    }
+}
@@ -0,0 +1,47 @@
+package Model;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Cuerpo de PUT /pacientes/estado: el estado destino y los pacientes a
+ * cambiar, indicados con una lista de ids o con un filtro (no ambos).
+ * Del filtro se usan activo, edadMin, edadMax, prefijoNombre y despuesDe
+ * (id desde el cual empezar); limite y campos no aplican.
+ */
+import java.util.List;
+
+public class SolicitudCambioEstado {
+
+    private Boolean activo;
+    private List<Integer> ids;
+    private FiltroPaciente filtro;
+
+    public SolicitudCambioEstado() {
+
+    }
+
+    public Boolean getActivo() {
+        return activo;
+    }
+
+    public void setActivo(Boolean activo) {
+        this.activo = activo;
+    }
+
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    public FiltroPaciente getFiltro() {
+        return filtro;
+    }
+
+    public void setFiltro(FiltroPaciente filtro) {
+        this.filtro = filtro;
+    }
+}
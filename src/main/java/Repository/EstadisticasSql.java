@@ -0,0 +1,208 @@
+package Repository;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Estadísticas por plantilla SQL (el texto de la sentencia con sus '?'),
+ * alimentadas por SentenciaInstrumentada: ejecuciones, errores, tiempo,
+ * filas leídas o afectadas y bytes mapeados.
+ *
+ * Además:
+ * - Las sentencias que superan hospital.sql.umbralLentoMs se escriben en el log
+ *   de consultas lentas como una línea JSON con la forma de los parámetros
+ *   (solo sus tipos, nunca sus valores, porque son datos de pacientes).
+ * - El ranking de las sentencias más costosas se calcula sobre una ventana
+ *   móvil (hospital.sql.ventanaTopMs): se llevan dos ventanas y al rotar se
+ *   descarta la más antigua, así el ranking refleja la carga reciente.
+ *
+ * Registrar no usa bloqueos (LongAdder y ConcurrentHashMap); solo la rotación
+ * de la ventana toma un candado, con tryLock para no hacer esperar a nadie.
+ */
+import Util.Configuracion;
+import Util.Histograma;
+import jakarta.json.Json;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class EstadisticasSql {
+
+    // Log propio para poder enviarlo a otro archivo o nivel desde la configuración de logging
+    private static final Logger LOG_LENTAS = Logger.getLogger("Repository.ConsultasLentas");
+
+    private static final boolean HABILITADA = Configuracion.logico("sql.instrumentacion.habilitada", true);
+    private static final long UMBRAL_LENTO_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Configuracion.largo("sql.umbralLentoMs", 200));
+    private static final long VENTANA_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Math.max(1_000, Configuracion.largo("sql.ventanaTopMs", 300_000)));
+
+    // Límite de plantillas distintas (cada una tiene su histograma); las que excedan se acumulan en OTRAS
+    private static final int MAXIMO_PLANTILLAS = 200;
+    private static final String OTRAS = "(otras sentencias)";
+
+    private static final ConcurrentHashMap<String, Plantilla> PLANTILLAS = new ConcurrentHashMap<>();
+
+    private static final ReentrantLock ROTACION = new ReentrantLock();
+    private static volatile int ventanaActual;
+    private static volatile long inicioVentana = System.nanoTime();
+
+    private EstadisticasSql() {
+    }
+
+    /**
+     * Indica si las sentencias del repositorio deben instrumentarse
+     * (hospital.sql.instrumentacion.habilitada, activo por defecto).
+     */
+    public static boolean isHabilitada() {
+        return HABILITADA;
+    }
+
+    /**
+     * Umbral a partir del cual una ejecución se considera lenta.
+     */
+    static long getUmbralLentoNanos() {
+        return UMBRAL_LENTO_NANOS;
+    }
+
+    /**
+     * Registra una ejecución terminada de la plantilla indicada.
+     * @param nanos duración desde que se ejecutó hasta que se terminaron de leer las filas.
+     * @param filas filas leídas (consultas) o afectadas (actualizaciones).
+     * @param bytes tamaño aproximado de los datos mapeados desde el ResultSet.
+     */
+    static void registrar(String sql, long nanos, long filas, long bytes, boolean error) {
+        long ahora = System.nanoTime();
+        if (ahora - inicioVentana >= VENTANA_NANOS) {
+            rotar(ahora);
+        }
+        Plantilla plantilla = plantilla(sql);
+        plantilla.tiempo.registrar(nanos);
+        plantilla.filas.add(filas);
+        plantilla.bytes.add(bytes);
+        if (error) {
+            plantilla.errores.increment();
+        }
+        int ventana = ventanaActual;
+        plantilla.ejecucionesVentana[ventana].increment();
+        plantilla.tiempoVentana[ventana].add(nanos);
+    }
+
+    /**
+     * Escribe la ejecución lenta en el log como una línea JSON estructurada.
+     * @param parametros forma de los parámetros, por ejemplo "(int, string)".
+     */
+    static void registrarLenta(String sql, String parametros, long nanos, long filas, long bytes, boolean error) {
+        plantilla(sql).lentas.increment();
+        if (!LOG_LENTAS.isLoggable(Level.WARNING)) {
+            return;
+        }
+        String linea = Json.createObjectBuilder()
+                .add("evento", "consulta_lenta")
+                .add("sql", sql)
+                .add("parametros", parametros)
+                .add("ms", nanos / 1_000_000.0)
+                .add("filas", filas)
+                .add("bytes", bytes)
+                .add("error", error)
+                .add("hilo", Thread.currentThread().getName())
+                .build()
+                .toString();
+        LOG_LENTAS.warning(linea);
+    }
+
+    /**
+     * Las n sentencias que más tiempo consumieron en la ventana reciente
+     * (entre una y dos veces hospital.sql.ventanaTopMs), de mayor a menor.
+     * Los percentiles y totales acumulados cubren desde el inicio de la aplicación.
+     */
+    public static List<Map<String, Object>> top(int n) {
+        List<Map<String, Object>> filas = new ArrayList<>();
+        for (Map.Entry<String, Plantilla> entrada : PLANTILLAS.entrySet()) {
+            Plantilla p = entrada.getValue();
+            long ejecuciones = p.ejecucionesVentana[0].sum() + p.ejecucionesVentana[1].sum();
+            if (ejecuciones == 0) {
+                continue;
+            }
+            long tiempo = p.tiempoVentana[0].sum() + p.tiempoVentana[1].sum();
+            long total = Math.max(1, p.tiempo.getCantidad());
+
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("sql", entrada.getKey());
+            fila.put("ejecucionesVentana", ejecuciones);
+            fila.put("tiempoVentanaMs", tiempo / 1_000_000.0);
+            fila.put("promedioVentanaMs", tiempo / 1_000_000.0 / ejecuciones);
+            fila.put("ejecuciones", p.tiempo.getCantidad());
+            fila.put("errores", p.errores.sum());
+            fila.put("lentas", p.lentas.sum());
+            fila.put("p50Ms", p.tiempo.percentil(0.50) / 1_000_000.0);
+            fila.put("p99Ms", p.tiempo.percentil(0.99) / 1_000_000.0);
+            fila.put("maxMs", p.tiempo.getMaximoNanos() / 1_000_000.0);
+            fila.put("filasPromedio", (double) p.filas.sum() / total);
+            fila.put("bytesPromedio", (double) p.bytes.sum() / total);
+            filas.add(fila);
+        }
+        filas.sort(Comparator.comparingDouble((Map<String, Object> f) -> (Double) f.get("tiempoVentanaMs")).reversed());
+        return filas.size() > n ? new ArrayList<>(filas.subList(0, n)) : filas;
+    }
+
+    private static Plantilla plantilla(String sql) {
+        Plantilla plantilla = PLANTILLAS.get(sql);
+        if (plantilla == null) {
+            String clave = PLANTILLAS.size() >= MAXIMO_PLANTILLAS ? OTRAS : sql;
+            plantilla = PLANTILLAS.computeIfAbsent(clave, c -> new Plantilla());
+        }
+        return plantilla;
+    }
+
+    /**
+     * Pasa a la otra ventana y la vacía. Si pasó más de una ventana completa sin
+     * actividad también se vacía la anterior, porque sus datos ya son viejos.
+     */
+    private static void rotar(long ahora) {
+        if (!ROTACION.tryLock()) {
+            return;
+        }
+        try {
+            long transcurrido = ahora - inicioVentana;
+            if (transcurrido < VENTANA_NANOS) {
+                return;
+            }
+            int nueva = 1 - ventanaActual;
+            for (Plantilla p : PLANTILLAS.values()) {
+                p.ejecucionesVentana[nueva].reset();
+                p.tiempoVentana[nueva].reset();
+                if (transcurrido >= 2 * VENTANA_NANOS) {
+                    p.ejecucionesVentana[1 - nueva].reset();
+                    p.tiempoVentana[1 - nueva].reset();
+                }
+            }
+            ventanaActual = nueva;
+            inicioVentana = ahora;
+        } finally {
+            ROTACION.unlock();
+        }
+    }
+
+    /**
+     * Contadores de una plantilla SQL.
+     */
+    private static final class Plantilla {
+        final Histograma tiempo = new Histograma();
+        final LongAdder filas = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder errores = new LongAdder();
+        final LongAdder lentas = new LongAdder();
+        final LongAdder[] ejecucionesVentana = {new LongAdder(), new LongAdder()};
+        final LongAdder[] tiempoVentana = {new LongAdder(), new LongAdder()};
+    }
+}
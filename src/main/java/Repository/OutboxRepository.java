@@ -0,0 +1,212 @@
+package Repository;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Acceso a la bandeja de salida de eventos de pacientes (paciente_outbox).
+ * El servicio registra aquí cada cambio usando la misma conexión, y por lo
+ * tanto la misma transacción, con la que modifica la tabla paciente. El
+ * despachador reserva las filas pendientes, y después de entregarlas las borra
+ * o las reprograma para un nuevo intento.
+ *
+ * La carga se guarda como JSON (JSON-P), con el tipo de cambio y los datos del
+ * paciente después del cambio.
+ */
+import Model.EventoPaciente;
+import Model.MensajeOutbox;
+import Model.Paciente;
+import Util.ProveedorConexion;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutboxRepository {
+
+    // Largo máximo del último error guardado (columna ultimo_error)
+    private static final int LARGO_ERROR = 500;
+
+    private final Connection conn;
+    // Plazo de la solicitud (System.nanoTime); 0 en las tareas de fondo
+    private final long plazo;
+
+    public OutboxRepository(Connection conn) {
+        this(conn, 0);
+    }
+
+    /**
+     * Repositorio cuyas sentencias se cancelan al vencer el plazo de la solicitud.
+     */
+    public OutboxRepository(Connection conn, long plazo) {
+        this.conn = conn;
+        this.plazo = plazo;
+    }
+
+    /**
+     * Registra un cambio en la transacción actual.
+     * @param activo estado después del cambio, o null si no se conoce.
+     * @param paciente datos después del cambio, o null en los cambios de estado.
+     */
+    public void registrar(EventoPaciente.Tipo tipo, int idPaciente, Boolean activo, Paciente paciente)
+            throws SQLException {
+        String sql = "INSERT INTO paciente_outbox (id_paciente, tipo, carga) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setInt(1, idPaciente);
+            stmt.setString(2, tipo.name());
+            stmt.setString(3, carga(tipo, idPaciente, activo, paciente));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Registra el mismo tipo de cambio para varios pacientes en un solo lote
+     * (carga masiva).
+     */
+    public void registrarLote(EventoPaciente.Tipo tipo, List<Paciente> pacientes) throws SQLException {
+        if (pacientes.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO paciente_outbox (id_paciente, tipo, carga) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = preparar(sql)) {
+            for (Paciente p : pacientes) {
+                stmt.setInt(1, p.getId());
+                stmt.setString(2, tipo.name());
+                stmt.setString(3, carga(tipo, p.getId(), p.isActivo(), p));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Registra un cambio de estado para varios pacientes en un solo lote
+     * (cambios de estado diferidos).
+     */
+    public void registrarEstados(List<Integer> ids, boolean activo) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO paciente_outbox (id_paciente, tipo, carga) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = preparar(sql)) {
+            for (Integer id : ids) {
+                stmt.setInt(1, id);
+                stmt.setString(2, EventoPaciente.Tipo.ESTADO.name());
+                stmt.setString(3, carga(EventoPaciente.Tipo.ESTADO, id, activo, null));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Reserva (FOR UPDATE SKIP LOCKED) hasta "limite" filas listas para enviar,
+     * en orden de registro. Solo se toma la fila más antigua de cada paciente:
+     * mientras una fila no se entregue, las posteriores del mismo paciente
+     * esperan, incluso si otra instancia la tiene reservada. Así los eventos de
+     * un paciente llegan en orden aunque haya reintentos o varios despachadores.
+     */
+    public List<MensajeOutbox> reservar(int limite) throws SQLException {
+        String sql = "SELECT o.id, o.id_paciente, o.tipo, o.carga, o.intentos, "
+                + "TIMESTAMPDIFF(MICROSECOND, o.creado, NOW(3)) AS retraso "
+                + "FROM paciente_outbox o "
+                + "WHERE o.proximo_intento <= NOW(3) "
+                + "AND NOT EXISTS (SELECT 1 FROM paciente_outbox a WHERE a.id_paciente = o.id_paciente AND a.id < o.id) "
+                + "ORDER BY o.id LIMIT ? FOR UPDATE SKIP LOCKED";
+        List<MensajeOutbox> mensajes = new ArrayList<>();
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setInt(1, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    mensajes.add(new MensajeOutbox(rs.getLong("id"), rs.getInt("id_paciente"),
+                            rs.getString("tipo"), rs.getString("carga"), rs.getInt("intentos"),
+                            rs.getLong("retraso")));
+                }
+            }
+        }
+        return mensajes;
+    }
+
+    /**
+     * Borra las filas ya entregadas. Se usa un lote de DELETE por id (una sola
+     * plantilla SQL, que el driver envía en un solo viaje) en lugar de un IN
+     * con una cantidad variable de parámetros.
+     */
+    public void eliminar(List<MensajeOutbox> mensajes) throws SQLException {
+        if (mensajes.isEmpty()) {
+            return;
+        }
+        String sql = "DELETE FROM paciente_outbox WHERE id = ?";
+        try (PreparedStatement stmt = preparar(sql)) {
+            for (MensajeOutbox mensaje : mensajes) {
+                stmt.setLong(1, mensaje.getId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Cuenta un intento fallido y programa el siguiente.
+     * @param esperaMs tiempo hasta el próximo intento.
+     */
+    public void reprogramar(MensajeOutbox mensaje, long esperaMs, String error) throws SQLException {
+        String sql = "UPDATE paciente_outbox SET intentos = intentos + 1, "
+                + "proximo_intento = NOW(3) + INTERVAL ? MICROSECOND, ultimo_error = ? WHERE id = ?";
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setLong(1, esperaMs * 1000);
+            stmt.setString(2, error == null || error.length() <= LARGO_ERROR ? error : error.substring(0, LARGO_ERROR));
+            stmt.setLong(3, mensaje.getId());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Evento en JSON: {"tipo":..., "idPaciente":..., "activo":..., "paciente":{...}}.
+     * Sin estado conocido se omite "activo", igual que en el flujo de cambios.
+     */
+    static String carga(EventoPaciente.Tipo tipo, int idPaciente, Boolean activo, Paciente p) {
+        JsonObjectBuilder evento = Json.createObjectBuilder()
+                .add("tipo", tipo.name())
+                .add("idPaciente", idPaciente);
+        if (activo != null) {
+            evento.add("activo", activo);
+        }
+        if (p != null) {
+            JsonObjectBuilder paciente = Json.createObjectBuilder()
+                    .add("id", p.getId())
+                    .add("edad", p.getEdad())
+                    .add("activo", p.isActivo());
+            agregar(paciente, "nombre", p.getNombre());
+            agregar(paciente, "cedula", p.getCedula());
+            agregar(paciente, "correo", p.getCorreo());
+            agregar(paciente, "direccion", p.getDireccion());
+            evento.add("paciente", paciente);
+        }
+        return evento.build().toString();
+    }
+
+    private static void agregar(JsonObjectBuilder objeto, String nombre, String valor) {
+        if (valor == null) {
+            objeto.addNull(nombre);
+        } else {
+            objeto.add(nombre, valor);
+        }
+    }
+
+    private PreparedStatement preparar(String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
+            ProveedorConexion.aplicarPlazo(stmt, plazo);
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return SentenciaInstrumentada.envolver(stmt, sql);
+    }
+}
@@ -8,27 +8,64 @@ package Repository;
  * Implementa operaciones CRUD utilizando JDBC y recibe la conexión desde
  * el filtro de conexión. Centraliza toda la interacción con la base de datos,
  * manteniendo aislada la lógica SQL del resto del sistema.
+ *
+ * Cada ejecución de sentencia se mide por operación en Metricas
+ * (hospital_db_consulta_segundos) y los fallos se cuentan aparte. Además, las
+ * sentencias se preparan envueltas en SentenciaInstrumentada, que lleva las
+ * estadísticas por plantilla SQL y el log de consultas lentas (EstadisticasSql).
  */
+import Model.FiltroPaciente;
 import Model.Paciente;
+import Util.Metricas;
+import Util.ProveedorConexion;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class PacienteRepository {
 
+    private static final String METRICA_CONSULTA = "hospital_db_consulta_segundos";
+    private static final String METRICA_ERRORES = "hospital_db_errores_total";
+
+    // Filas (fragmentos) de tabla_version para paciente; ver migración 006
+    private static final int FRAGMENTOS_VERSION = 16;
+
     // Conexión proporcionada por el filtro; permite ejecutar las consultas SQL
     private Connection conn;
+    // Plazo de la solicitud (System.nanoTime) que limita cada sentencia; 0 = sin límite
+    private final long plazo;
 
     /**
      * Constructor que obliga a quien use este repositorio a proporcionar la conexión.
      * Esto facilita el manejo transaccional controlado desde el filtro.
      */
     public PacienteRepository(Connection conn) {
+        this(conn, 0);
+    }
+
+    /**
+     * Repositorio cuyas sentencias se cancelan al vencer el plazo de la solicitud.
+     * @param plazo valor de ProveedorConexion.getPlazo().
+     */
+    public PacienteRepository(Connection conn, long plazo) {
         this.conn = conn;
+        this.plazo = plazo;
+    }
+
+    /**
+     * Conexión con la que trabaja este repositorio.
+     */
+    public Connection getConexion() {
+        return conn;
     }
 
     /**
@@ -42,8 +79,8 @@ public class PacienteRepository {
         String sql = "SELECT * FROM paciente";
 
         // try-with-resources garantiza cierre automático de PreparedStatement y ResultSet
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        try (PreparedStatement stmt = preparar(sql);
+             ResultSet rs = ejecutarConsulta(stmt, "listar")) {
             while (rs.next()) {
                 Paciente p = mapearPaciente(rs);
                 lista.add(p);
@@ -52,15 +89,136 @@ public class PacienteRepository {
         return lista;
     }
 
+    /**
+     * Obtiene una página de pacientes usando paginación por cursor (keyset):
+     * WHERE id > ? ORDER BY id LIMIT ?. A diferencia de OFFSET, el costo no crece
+     * con el número de página porque MySQL recorre el índice de la llave primaria
+     * desde el último id entregado. Solo se leen las columnas solicitadas.
+     *
+     * @param filtro criterios de búsqueda, cursor y proyección.
+     * @param limite cantidad máxima de filas a devolver.
+     * @return pacientes ordenados por id; las columnas no solicitadas quedan con su valor por defecto.
+     */
+    public List<Paciente> listarPagina(FiltroPaciente filtro, int limite) throws SQLException {
+        Set<String> campos = filtro.getCampos();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (campos.isEmpty()) {
+            sql.append("*");
+        } else {
+            // el id siempre se lee porque es el cursor de la siguiente página
+            sql.append("id");
+            for (String campo : campos) {
+                if (!campo.equals("id")) {
+                    sql.append(", ").append(campo);
+                }
+            }
+        }
+        sql.append(" FROM paciente");
+        List<Object> parametros = new ArrayList<>();
+        agregarCondiciones(sql, parametros, filtro);
+        sql.append(" ORDER BY id LIMIT ?");
+        parametros.add(limite);
+
+        List<Paciente> lista = new ArrayList<>(Math.min(limite, 1000));
+        try (PreparedStatement stmt = preparar(sql.toString())) {
+            for (int i = 0; i < parametros.size(); i++) {
+                stmt.setObject(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = ejecutarConsulta(stmt, "listarPagina")) {
+                while (rs.next()) {
+                    lista.add(mapearPaciente(rs, campos));
+                }
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Busca pacientes cuya columna empiece con el prefijo dado, en el orden del
+     * índice de esa columna (LIKE 'prefijo%' ORDER BY columna). Como la
+     * coincidencia exacta es la menor de las cadenas con ese prefijo, queda primera.
+     *
+     * @param columna cedula, correo o nombre (cada una tiene su índice).
+     * @param prefijo texto inicial a buscar.
+     * @param limite cantidad máxima de filas.
+     */
+    public List<Paciente> buscarPorPrefijo(String columna, String prefijo, int limite) throws SQLException {
+        if (!columna.equals("cedula") && !columna.equals("correo") && !columna.equals("nombre")) {
+            throw new IllegalArgumentException("Columna de búsqueda no permitida: " + columna);
+        }
+        String sql = "SELECT * FROM paciente WHERE " + columna + " LIKE ? ORDER BY " + columna + ", id LIMIT ?";
+        List<Paciente> lista = new ArrayList<>(Math.min(limite, 100));
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setString(1, escaparLike(prefijo) + "%");
+            stmt.setInt(2, limite);
+            try (ResultSet rs = ejecutarConsulta(stmt, "buscarPorPrefijo")) {
+                while (rs.next()) {
+                    lista.add(mapearPaciente(rs));
+                }
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Búsqueda de texto completo en nombre y correo (índice FULLTEXT), ordenada
+     * por relevancia. La expresión usa la sintaxis del modo booleano de MySQL,
+     * por ejemplo "+maria* +lop*".
+     *
+     * @param expresion consulta en modo booleano, ya saneada.
+     * @param limite cantidad máxima de filas.
+     */
+    public List<Paciente> buscarTexto(String expresion, int limite) throws SQLException {
+        String sql = "SELECT *, MATCH(nombre, correo) AGAINST (? IN BOOLEAN MODE) AS relevancia "
+                + "FROM paciente WHERE MATCH(nombre, correo) AGAINST (? IN BOOLEAN MODE) "
+                + "ORDER BY relevancia DESC, id LIMIT ?";
+        List<Paciente> lista = new ArrayList<>(Math.min(limite, 100));
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setString(1, expresion);
+            stmt.setString(2, expresion);
+            stmt.setInt(3, limite);
+            try (ResultSet rs = ejecutarConsulta(stmt, "buscarTexto")) {
+                while (rs.next()) {
+                    lista.add(mapearPaciente(rs));
+                }
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Recorre toda la tabla con un cursor de solo avance y entrega cada fila al
+     * procesador en cuanto se mapea. Con useCursorFetch activo en la conexión,
+     * MySQL envía las filas en bloques de tamanoBloque, por lo que la memoria
+     * usada no depende del tamaño de la tabla.
+     *
+     * @param procesador recibe cada paciente leído.
+     * @param tamanoBloque filas que se piden al servidor por cada viaje de red.
+     */
+    public void recorrer(ProcesadorPaciente procesador, int tamanoBloque) throws SQLException, IOException {
+        String sql = "SELECT * FROM paciente ORDER BY id";
+        try (PreparedStatement stmt = SentenciaInstrumentada.envolver(limitar(conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)), sql)) {
+            stmt.setFetchSize(tamanoBloque);
+            try (ResultSet rs = ejecutarConsulta(stmt, "recorrer")) {
+                while (rs.next()) {
+                    procesador.procesar(mapearPaciente(rs));
+                }
+            }
+        }
+    }
+
     /**
      * Inserta un nuevo paciente en la base de datos.
      * Parámetros con '?' protegen contra SQL Injection.
+     * Al terminar, el objeto recibe el id generado por la base de datos.
      */
     public void guardar(Paciente p) throws SQLException {
         //consulta sql con signos de interrogacion para evitar sql injection
         String sql = "INSERT INTO paciente (nombre, cedula, correo, edad, direccion, activo) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = SentenciaInstrumentada.envolver(
+                limitar(conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)), sql)) {
             stmt.setString(1, p.getNombre());
             stmt.setString(2, p.getCedula());
             stmt.setString(3, p.getCorreo());
@@ -68,7 +226,51 @@ public class PacienteRepository {
             stmt.setString(5, p.getDireccion());
             stmt.setBoolean(6, true); //por defecto al crear está activo
 
-            stmt.executeUpdate();//ejecuta el insert
+            ejecutarActualizacion(stmt, "guardar");//ejecuta el insert
+
+            try (ResultSet claves = stmt.getGeneratedKeys()) {
+                if (claves.next()) {
+                    p.setId(claves.getInt(1));
+                }
+            }
+            p.setActivo(true);
+        }
+    }
+
+    /**
+     * Inserta varios pacientes en un solo viaje usando addBatch/executeBatch.
+     * Con rewriteBatchedStatements activo, el driver de MySQL reescribe el lote
+     * como un único INSERT ... VALUES (...), (...), ...
+     * Al terminar, cada paciente recibe el id generado y queda activo.
+     * @return cantidad de filas afectadas por cada paciente del lote.
+     */
+    public int[] guardarLote(List<Paciente> pacientes) throws SQLException {
+        String sql = "INSERT INTO paciente (nombre, cedula, correo, edad, direccion, activo) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement stmt = SentenciaInstrumentada.envolver(
+                limitar(conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)), sql)) {
+            for (Paciente p : pacientes) {
+                stmt.setString(1, p.getNombre());
+                stmt.setString(2, p.getCedula());
+                stmt.setString(3, p.getCorreo());
+                stmt.setInt(4, p.getEdad());
+                stmt.setString(5, p.getDireccion());
+                stmt.setBoolean(6, true); //por defecto al crear está activo
+                stmt.addBatch();
+            }
+            int[] filas = ejecutarLote(stmt, "guardarLote");
+
+            // las claves llegan en el mismo orden en que se agregaron las filas
+            try (ResultSet claves = stmt.getGeneratedKeys()) {
+                for (Paciente p : pacientes) {
+                    if (!claves.next()) {
+                        break;
+                    }
+                    p.setId(claves.getInt(1));
+                    p.setActivo(true);
+                }
+            }
+            return filas;
         }
     }
 
@@ -78,9 +280,9 @@ public class PacienteRepository {
      */
     public Paciente buscarPorId(int id) throws SQLException {
         String sql = "SELECT * FROM paciente WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = preparar(sql)) {
             stmt.setInt(1, id);
-            try (ResultSet rs = stmt.executeQuery()) {
+            try (ResultSet rs = ejecutarConsulta(stmt, "buscarPorId")) {
                 if (rs.next()) {
                     return mapearPaciente(rs);
                 }
@@ -88,20 +290,89 @@ public class PacienteRepository {
         }
         return null; //si no existe
     }
+    /**
+     * Busca varios pacientes por id con WHERE id IN (...). La cantidad de '?' se
+     * redondea a la siguiente potencia de dos (repitiendo el último id), así
+     * solo existen unas pocas plantillas SQL y todas se aprovechan de la caché
+     * de sentencias preparadas. Quien llama debe partir listas muy grandes.
+     * @param ids ids sin repetir.
+     * @return los pacientes encontrados, en cualquier orden.
+     */
+    public List<Paciente> buscarPorIds(List<Integer> ids) throws SQLException {
+        List<Paciente> pacientes = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return pacientes;
+        }
+        String sql = "SELECT * FROM paciente WHERE id IN " + listaIn(ids.size());
+        try (PreparedStatement stmt = preparar(sql)) {
+            asignarIds(stmt, 1, ids);
+            try (ResultSet rs = ejecutarConsulta(stmt, "buscarPorIds")) {
+                while (rs.next()) {
+                    pacientes.add(mapearPaciente(rs));
+                }
+            }
+        }
+        return pacientes;
+    }
+
+    /**
+     * Lee un paciente bloqueando su fila hasta el fin de la transacción
+     * (SELECT ... FOR UPDATE), para comparar su versión antes de modificarlo
+     * sin que otra transacción lo cambie en medio.
+     */
+    public Paciente buscarPorIdParaActualizar(int id) throws SQLException {
+        String sql = "SELECT * FROM paciente WHERE id = ? FOR UPDATE";
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = ejecutarConsulta(stmt, "buscarPorIdParaActualizar")) {
+                if (rs.next()) {
+                    return mapearPaciente(rs);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Versión actual de la tabla paciente: la suma de sus fragmentos en
+     * tabla_version (migración 006). Lee 16 filas por llave primaria.
+     */
+    public long versionTabla() throws SQLException {
+        String sql = "SELECT COALESCE(SUM(version), 0) FROM tabla_version WHERE tabla = 'paciente'";
+        try (PreparedStatement stmt = preparar(sql);
+             ResultSet rs = ejecutarConsulta(stmt, "versionTabla")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Incrementa la versión de la tabla paciente en un fragmento al azar. Se
+     * llama una vez por transacción que cambia pacientes; el fragmento queda
+     * bloqueado hasta el commit, pero las transacciones concurrentes se
+     * reparten entre FRAGMENTOS_VERSION filas en lugar de esperar por una sola.
+     */
+    public void incrementarVersion() throws SQLException {
+        String sql = "UPDATE tabla_version SET version = version + 1 WHERE tabla = 'paciente' AND fragmento = ?";
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setInt(1, ThreadLocalRandom.current().nextInt(FRAGMENTOS_VERSION));
+            ejecutarActualizacion(stmt, "incrementarVersion");
+        }
+    }
+
     /**
      * Actualiza los datos de un paciente existente.
      * Si se modifica correctamente, retorna el objeto; caso contrario, null.
      */
     public Paciente actualizar(Paciente p) throws SQLException {
         String sql = "UPDATE paciente SET nombre=?, cedula=?, correo=?, edad=?, direccion=? WHERE id=?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = preparar(sql)) {
             stmt.setString(1, p.getNombre());
             stmt.setString(2, p.getCedula());
             stmt.setString(3, p.getCorreo());
             stmt.setInt(4, p.getEdad());
             stmt.setString(5, p.getDireccion());
             stmt.setInt(6, p.getId());
-            int filasAfectadas = stmt.executeUpdate();
+            int filasAfectadas = ejecutarActualizacion(stmt, "actualizar");
 
             // Si se actualizó algo, devolvemos el objeto. Si no, devolvemos null.
             if (filasAfectadas > 0) {
@@ -114,21 +385,250 @@ public class PacienteRepository {
     /**
      * Cambia el estado del paciente (activo/desactivado).
      * Utilizado por la API en operaciones PUT específicas.
+     * @return filas encontradas (0 si el paciente no existe).
      */
-    public void actualizarEstado(int id, boolean activo) throws SQLException {
+    public int actualizarEstado(int id, boolean activo) throws SQLException {
         String sql = "Update paciente SET activo=? WHERE id=?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = preparar(sql)) {
             stmt.setBoolean(1, activo);
             stmt.setInt(2, id);
-            stmt.executeUpdate();
+            return ejecutarActualizacion(stmt, "actualizarEstado");
+        }
+    }
+
+    /**
+     * Cambia el estado de varios pacientes con un solo UPDATE ... WHERE id IN,
+     * con la lista completada igual que en buscarPorIds.
+     * @param ids ids sin repetir; quien llama debe partir listas muy grandes.
+     * @return filas encontradas (menos que ids.size() si alguno no existe).
+     */
+    public int actualizarEstadoLote(List<Integer> ids, boolean activo) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE paciente SET activo = ? WHERE id IN " + listaIn(ids.size());
+        try (PreparedStatement stmt = preparar(sql)) {
+            stmt.setBoolean(1, activo);
+            asignarIds(stmt, 2, ids);
+            return ejecutarActualizacion(stmt, "actualizarEstadoLote");
+        }
+    }
+
+    /**
+     * Bloquea (FOR UPDATE) los pacientes del siguiente bloque de un cambio de
+     * estado masivo por filtro: los que cumplen el filtro, tienen id entre
+     * filtro.getDespuesDe() (excluido) y hastaId, y todavía no están en el
+     * estado destino. El recorrido de la llave primaria se corta en hastaId
+     * aunque el filtro sea poco selectivo. Quien llama usa READ COMMITTED:
+     * en REPEATABLE READ se bloquearían también los registros recorridos que
+     * no cumplen el filtro y los huecos entre ellos.
+     * @return ids bloqueados, en orden.
+     */
+    public List<Integer> bloquearParaEstado(FiltroPaciente filtro, boolean activo, int hastaId, int limite)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id FROM paciente");
+        List<Object> parametros = new ArrayList<>();
+        agregarCondiciones(sql, parametros, filtro);
+        sql.append(" AND id <= ? AND activo <> ? ORDER BY id LIMIT ? FOR UPDATE");
+        parametros.add(hastaId);
+        parametros.add(activo);
+        parametros.add(limite);
+        List<Integer> ids = new ArrayList<>(Math.min(limite, 1000));
+        try (PreparedStatement stmt = preparar(sql.toString())) {
+            for (int i = 0; i < parametros.size(); i++) {
+                stmt.setObject(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = ejecutarConsulta(stmt, "bloquearParaEstado")) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Mayor id de la tabla (0 si está vacía), sin bloquear: límite del
+     * recorrido de un cambio de estado masivo por filtro.
+     */
+    public int maximoId() throws SQLException {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM paciente";
+        try (PreparedStatement stmt = preparar(sql);
+             ResultSet rs = ejecutarConsulta(stmt, "maximoId")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Bloquea (FOR UPDATE) los pacientes de la lista que existen y todavía no
+     * están en el estado destino.
+     * @param ids ids sin repetir; quien llama debe partir listas muy grandes.
+     * @return ids bloqueados, en orden.
+     */
+    public List<Integer> bloquearParaEstado(List<Integer> ids, boolean activo) throws SQLException {
+        List<Integer> bloqueados = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return bloqueados;
+        }
+        String sql = "SELECT id FROM paciente WHERE id IN " + listaIn(ids.size()) + " AND activo <> ? ORDER BY id FOR UPDATE";
+        try (PreparedStatement stmt = preparar(sql)) {
+            asignarIds(stmt, 1, ids);
+            stmt.setBoolean(parametrosIn(ids.size()) + 1, activo);
+            try (ResultSet rs = ejecutarConsulta(stmt, "bloquearParaEstado")) {
+                while (rs.next()) {
+                    bloqueados.add(rs.getInt(1));
+                }
+            }
+        }
+        return bloqueados;
+    }
+
+    /**
+     * Agrega el cursor y los filtros: " WHERE id > ? AND activo = ? ...".
+     */
+    private static void agregarCondiciones(StringBuilder sql, List<Object> parametros, FiltroPaciente filtro) {
+        sql.append(" WHERE id > ?");
+        parametros.add(filtro.getDespuesDe());
+        if (filtro.getActivo() != null) {
+            sql.append(" AND activo = ?");
+            parametros.add(filtro.getActivo());
+        }
+        if (filtro.getEdadMin() != null) {
+            sql.append(" AND edad >= ?");
+            parametros.add(filtro.getEdadMin());
+        }
+        if (filtro.getEdadMax() != null) {
+            sql.append(" AND edad <= ?");
+            parametros.add(filtro.getEdadMax());
+        }
+        if (filtro.getPrefijoNombre() != null) {
+            // LIKE 'prefijo%' puede usar el índice de nombre; se escapan los comodines
+            sql.append(" AND nombre LIKE ?");
+            parametros.add(escaparLike(filtro.getPrefijoNombre()) + "%");
+        }
+    }
+
+    /**
+     * De los ids indicados, devuelve los que existen.
+     */
+    public Set<Integer> idsExistentes(List<Integer> ids) throws SQLException {
+        Set<Integer> existentes = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existentes;
+        }
+        String sql = "SELECT id FROM paciente WHERE id IN " + listaIn(ids.size());
+        try (PreparedStatement stmt = preparar(sql)) {
+            asignarIds(stmt, 1, ids);
+            try (ResultSet rs = ejecutarConsulta(stmt, "idsExistentes")) {
+                while (rs.next()) {
+                    existentes.add(rs.getInt(1));
+                }
+            }
+        }
+        return existentes;
+    }
+
+    /**
+     * "(?, ?, ...)" con la cantidad de parámetros redondeada a la siguiente
+     * potencia de dos: así solo existen unas pocas plantillas SQL.
+     */
+    private static String listaIn(int cantidad) {
+        int parametros = parametrosIn(cantidad);
+        StringBuilder lista = new StringBuilder(parametros * 3 + 2).append('(');
+        for (int i = 0; i < parametros; i++) {
+            lista.append(i == 0 ? "?" : ", ?");
+        }
+        return lista.append(')').toString();
+    }
+
+    private static int parametrosIn(int cantidad) {
+        return cantidad <= 1 ? 1 : Integer.highestOneBit(cantidad - 1) << 1;
+    }
+
+    /**
+     * Asigna los ids desde la posición indicada, repitiendo el último para
+     * completar los parámetros de listaIn (un id repetido no cambia el resultado).
+     */
+    private static void asignarIds(PreparedStatement stmt, int desde, List<Integer> ids) throws SQLException {
+        int parametros = parametrosIn(ids.size());
+        for (int i = 0; i < parametros; i++) {
+            stmt.setInt(desde + i, ids.get(Math.min(i, ids.size() - 1)));
+        }
+    }
+
+    /**
+     * Prepara la sentencia envuelta en el instrumentador de SQL.
+     */
+    private PreparedStatement preparar(String sql) throws SQLException {
+        return SentenciaInstrumentada.envolver(limitar(conn.prepareStatement(sql)), sql);
+    }
+
+    /**
+     * Aplica el plazo de la solicitud a la sentencia; si ya venció la cierra
+     * y lanza PlazoVencidoException.
+     */
+    private PreparedStatement limitar(PreparedStatement stmt) throws SQLException {
+        try {
+            ProveedorConexion.aplicarPlazo(stmt, plazo);
+            return stmt;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ejecuta una consulta midiendo el tiempo hasta que MySQL entrega el ResultSet
+     * (en los recorridos con cursor no incluye la lectura de los bloques siguientes).
+     */
+    private static ResultSet ejecutarConsulta(PreparedStatement stmt, String operacion) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            return stmt.executeQuery();
+        } catch (SQLException e) {
+            Metricas.contador(METRICA_ERRORES, "operacion", operacion).increment();
+            throw e;
+        } finally {
+            Metricas.histograma(METRICA_CONSULTA, "operacion", operacion).registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Ejecuta un INSERT/UPDATE midiendo su duración.
+     */
+    private static int ejecutarActualizacion(PreparedStatement stmt, String operacion) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            Metricas.contador(METRICA_ERRORES, "operacion", operacion).increment();
+            throw e;
+        } finally {
+            Metricas.histograma(METRICA_CONSULTA, "operacion", operacion).registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Ejecuta un lote midiendo su duración.
+     */
+    private static int[] ejecutarLote(PreparedStatement stmt, String operacion) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            return stmt.executeBatch();
+        } catch (SQLException e) {
+            Metricas.contador(METRICA_ERRORES, "operacion", operacion).increment();
+            throw e;
+        } finally {
+            Metricas.histograma(METRICA_CONSULTA, "operacion", operacion).registrarDesde(inicio);
         }
     }
 
     /**
      * Metodo auxiliar que convierte una fila del ResultSet en un objeto Paciente.
      * Permite evitar duplicación de código y mantener limpieza en los métodos CRUD.
+     * Es visible en el paquete para poder medirlo en los benchmarks.
      */
-    private Paciente mapearPaciente(ResultSet rs) throws SQLException {
+    Paciente mapearPaciente(ResultSet rs) throws SQLException {
         Paciente p = new Paciente();
         p.setId(rs.getInt("id"));
         p.setNombre(rs.getString("nombre"));
@@ -139,4 +639,30 @@ public class PacienteRepository {
         p.setActivo(rs.getBoolean("activo"));
         return p;
     }
+
+    /**
+     * Variante de mapearPaciente que solo lee las columnas proyectadas.
+     * Si no se indicaron columnas se leen todas.
+     */
+    private Paciente mapearPaciente(ResultSet rs, Set<String> campos) throws SQLException {
+        if (campos.isEmpty()) {
+            return mapearPaciente(rs);
+        }
+        Paciente p = new Paciente();
+        p.setId(rs.getInt("id"));
+        if (campos.contains("nombre")) p.setNombre(rs.getString("nombre"));
+        if (campos.contains("cedula")) p.setCedula(rs.getString("cedula"));
+        if (campos.contains("correo")) p.setCorreo(rs.getString("correo"));
+        if (campos.contains("edad")) p.setEdad(rs.getInt("edad"));
+        if (campos.contains("direccion")) p.setDireccion(rs.getString("direccion"));
+        if (campos.contains("activo")) p.setActivo(rs.getBoolean("activo"));
+        return p;
+    }
+
+    /**
+     * Escapa los comodines de LIKE (% y _) para que el prefijo se busque literal.
+     */
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
@@ -0,0 +1,23 @@
+package Repository;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Interfaz funcional que recibe los pacientes uno por uno mientras se recorre
+ * un ResultSet. Permite procesar tablas completas (por ejemplo, escribirlas en
+ * la respuesta HTTP) sin acumular todas las filas en memoria.
+ */
+import Model.Paciente;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface ProcesadorPaciente {
+    /**
+     * Procesa un paciente recién leído de la base de datos.
+     * @param p paciente mapeado desde la fila actual.
+     * @throws IOException si falla la escritura hacia el destino.
+     */
+    void procesar(Paciente p) throws IOException;
+}
@@ -0,0 +1,261 @@
+package Repository;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Envoltorio (proxy) de PreparedStatement que mide cada ejecución y la reporta
+ * a EstadisticasSql: tiempo desde la ejecución hasta que se cierra el ResultSet
+ * (incluye la lectura de las filas), filas leídas o afectadas y bytes mapeados.
+ *
+ * De los parámetros solo se recuerda su tipo (int, string, null...) para
+ * describir la forma de la consulta en el log de consultas lentas; los valores
+ * nunca se guardan porque contienen datos de pacientes.
+ *
+ * Cada sentencia la usa un solo hilo, como el resto de objetos JDBC de la
+ * solicitud, por lo que su estado no necesita sincronización.
+ */
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Locale;
+
+final class SentenciaInstrumentada implements InvocationHandler {
+
+    private final PreparedStatement destino;
+    private final String sql;
+
+    // Tipo de cada parámetro (posición 1 en el índice 0)
+    private String[] tipos = new String[8];
+    private int cantidadTipos;
+
+    // Medición en curso
+    private boolean midiendo;
+    private long inicio;
+    private long filas;
+    private long bytes;
+    private boolean error;
+
+    private SentenciaInstrumentada(PreparedStatement destino, String sql) {
+        this.destino = destino;
+        this.sql = sql;
+    }
+
+    /**
+     * Envuelve la sentencia si la instrumentación está habilitada.
+     * @param sql plantilla SQL con la que se preparó la sentencia.
+     */
+    static PreparedStatement envolver(PreparedStatement sentencia, String sql) {
+        if (!EstadisticasSql.isHabilitada()) {
+            return sentencia;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new SentenciaInstrumentada(sentencia, sql));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+        String nombre = metodo.getName();
+        boolean sinArgumentos = args == null || args.length == 0;
+        switch (nombre) {
+            case "executeQuery":
+                if (sinArgumentos) {
+                    iniciar();
+                    try {
+                        ResultSet rs = (ResultSet) invocar(metodo, args);
+                        return new Filas(rs).proxy();
+                    } catch (Throwable e) {
+                        error = true;
+                        terminar();
+                        throw e;
+                    }
+                }
+                break;
+            case "executeUpdate":
+            case "executeLargeUpdate":
+                if (sinArgumentos) {
+                    iniciar();
+                    try {
+                        Object afectadas = invocar(metodo, args);
+                        filas = ((Number) afectadas).longValue();
+                        return afectadas;
+                    } catch (Throwable e) {
+                        error = true;
+                        throw e;
+                    } finally {
+                        terminar();
+                    }
+                }
+                break;
+            case "executeBatch":
+                iniciar();
+                try {
+                    int[] afectadas = (int[]) invocar(metodo, args);
+                    for (int fila : afectadas) {
+                        // SUCCESS_NO_INFO (-2) cuando el driver reescribe el lote
+                        filas += fila >= 0 ? fila : 1;
+                    }
+                    return afectadas;
+                } catch (Throwable e) {
+                    error = true;
+                    throw e;
+                } finally {
+                    terminar();
+                }
+            case "close":
+                // si el ResultSet no se cerró explícitamente, la medición termina aquí
+                terminar();
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                if (nombre.startsWith("set") && args != null && args.length >= 2
+                        && metodo.getParameterTypes()[0] == int.class) {
+                    recordarTipo((Integer) args[0], nombre, args[1]);
+                }
+        }
+        return invocar(metodo, args);
+    }
+
+    private Object invocar(Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Guarda el tipo del parámetro: el del metodo set (setInt → int) o, en
+     * setObject, la clase del valor. El valor en sí se descarta.
+     */
+    private void recordarTipo(int indice, String metodoSet, Object valor) {
+        String tipo;
+        if (metodoSet.equals("setNull") || valor == null) {
+            tipo = "null";
+        } else if (metodoSet.equals("setObject")) {
+            tipo = valor.getClass().getSimpleName().toLowerCase(Locale.ROOT);
+        } else {
+            tipo = metodoSet.substring(3).toLowerCase(Locale.ROOT);
+        }
+        if (indice < 1 || indice > 1_000) {
+            return;
+        }
+        if (indice > tipos.length) {
+            tipos = Arrays.copyOf(tipos, Math.max(indice, tipos.length * 2));
+        }
+        tipos[indice - 1] = tipo;
+        cantidadTipos = Math.max(cantidadTipos, indice);
+    }
+
+    /**
+     * Forma de los parámetros, por ejemplo "(int, string, null)".
+     */
+    private String forma() {
+        StringBuilder texto = new StringBuilder("(");
+        for (int i = 0; i < cantidadTipos; i++) {
+            if (i > 0) texto.append(", ");
+            texto.append(tipos[i] == null ? "?" : tipos[i]);
+        }
+        return texto.append(')').toString();
+    }
+
+    private void iniciar() {
+        // una ejecución anterior cuyo ResultSet quedó abierto se da por terminada
+        terminar();
+        midiendo = true;
+        inicio = System.nanoTime();
+        filas = 0;
+        bytes = 0;
+        error = false;
+    }
+
+    private void terminar() {
+        if (!midiendo) {
+            return;
+        }
+        midiendo = false;
+        long nanos = System.nanoTime() - inicio;
+        EstadisticasSql.registrar(sql, nanos, filas, bytes, error);
+        if (nanos >= EstadisticasSql.getUmbralLentoNanos()) {
+            EstadisticasSql.registrarLenta(sql, forma(), nanos, filas, bytes, error);
+        }
+    }
+
+    /**
+     * Envoltorio del ResultSet: cuenta las filas y el tamaño aproximado de los
+     * valores leídos, y cierra la medición al cerrarse.
+     */
+    private final class Filas implements InvocationHandler {
+
+        private final ResultSet destino;
+
+        Filas(ResultSet destino) {
+            this.destino = destino;
+        }
+
+        ResultSet proxy() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            String nombre = metodo.getName();
+            switch (nombre) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Object resultado;
+            try {
+                resultado = metodo.invoke(destino, args);
+            } catch (InvocationTargetException e) {
+                error = true;
+                if (nombre.equals("close")) {
+                    terminar();
+                }
+                throw e.getCause();
+            }
+            if (nombre.equals("next")) {
+                if ((Boolean) resultado) {
+                    filas++;
+                }
+            } else if (nombre.startsWith("get") && args != null && args.length == 1) {
+                bytes += tamano(resultado);
+            } else if (nombre.equals("close")) {
+                terminar();
+            }
+            return resultado;
+        }
+
+        /**
+         * Tamaño aproximado en bytes de un valor leído de la fila.
+         */
+        private long tamano(Object valor) {
+            if (valor instanceof String texto) {
+                return texto.length();
+            } else if (valor instanceof Integer) {
+                return Integer.BYTES;
+            } else if (valor instanceof Boolean) {
+                return 1;
+            } else if (valor instanceof Number) {
+                return Long.BYTES;
+            } else if (valor instanceof byte[] datos) {
+                return datos.length;
+            }
+            return 0;
+        }
+    }
+}
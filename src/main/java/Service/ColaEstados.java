@@ -0,0 +1,431 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Cola de escritura diferida para los cambios de estado (PUT
+ * /pacientes/{id}/estado). En los cambios de turno llegan ráfagas de cambios,
+ * muchas veces del mismo paciente; en lugar de una transacción por llamada,
+ * los cambios se encolan y un hilo propio los aplica en lote.
+ *
+ * - La cola se agrupa por id: si un paciente ya tiene un cambio pendiente,
+ *   solo se reemplaza el estado (gana el último, igual que si se aplicaran en
+ *   orden) y quien esperaba el anterior recibe la confirmación del nuevo.
+ * - Cada lote es una transacción con un UPDATE ... WHERE id IN (...) por
+ *   estado destino (en bloques de 128 ids ordenados, para bloquear las filas
+ *   siempre en el mismo orden). Se vacía cada hospital.estados.diferido.intervaloMs
+ *   o en cuanto hay hospital.estados.diferido.tamanoLote pendientes.
+ * - Después del commit se invalida la caché y se publica cada cambio en el
+ *   bus de eventos, como en el camino normal; el outbox se escribe en la
+ *   misma transacción del lote.
+ * - La cola es acotada (hospital.estados.diferido.capacidad ids distintos):
+ *   si está llena, encolar devuelve null y el cambio se aplica en el momento.
+ * - Si el lote falla se deshace y los cambios vuelven a la cola (salvo que
+ *   ya haya uno más nuevo del mismo paciente) para reintentarse.
+ * - Las escrituras síncronas del estado (If-Match, PUT /pacientes/{id}, cambio
+ *   masivo) llaman antes a esperar: si el paciente tiene un cambio encolado o
+ *   en un lote en curso, se adelanta el vaciado y se espera su commit. Así un
+ *   cambio aceptado antes nunca se aplica después de una escritura posterior.
+ *
+ * Los cambios encolados viven solo en memoria hasta el commit: una caída de
+ * la instancia pierde los que aún no se aplicaron. Por eso es opcional
+ * (hospital.estados.diferido.habilitado) y quien necesita certeza pide la
+ * confirmación durable. Al detener la aplicación se vacía la cola.
+ *
+ * Métrica de retraso: hospital_estados_diferidos_retraso_segundos, desde que
+ * se encola el cambio hasta el commit que lo aplica.
+ */
+import Model.EventoPaciente;
+import Repository.OutboxRepository;
+import Repository.PacienteRepository;
+import Util.BusEventosPaciente;
+import Util.CachePacientes;
+import Util.Conexion;
+import Util.Configuracion;
+import Util.Histograma;
+import Util.Metricas;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class ColaEstados implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(ColaEstados.class.getName());
+
+    private static final boolean HABILITADO = Configuracion.logico("estados.diferido.habilitado", false);
+    private static final int CAPACIDAD = Configuracion.entero("estados.diferido.capacidad", 10_000);
+    private static final int TAMANO_LOTE = Math.max(1, Configuracion.entero("estados.diferido.tamanoLote", 500));
+    private static final long INTERVALO_MS = Configuracion.largo("estados.diferido.intervaloMs", 50);
+    private static final long REINTENTO_MS = Configuracion.largo("estados.diferido.reintentoMs", 1_000);
+    private static final long ESPERA_SINCRONA_MS = Configuracion.largo("estados.diferido.esperaSincronaMs", 5_000);
+    // Ids por UPDATE ... IN
+    private static final int BLOQUE_IN = 128;
+
+    private static final LongAdder ACEPTADOS = Metricas.contador("hospital_estados_diferidos_aceptados_total");
+    private static final LongAdder AGRUPADOS = Metricas.contador("hospital_estados_diferidos_agrupados_total");
+    private static final LongAdder RECHAZADOS = Metricas.contador("hospital_estados_diferidos_rechazados_total");
+    private static final LongAdder APLICADOS = Metricas.contador("hospital_estados_diferidos_aplicados_total");
+    private static final Histograma RETRASO = Metricas.histograma("hospital_estados_diferidos_retraso_segundos");
+    private static final Histograma LOTE = Metricas.histograma("hospital_estados_diferidos_lote_segundos");
+
+    private static volatile ColaEstados activa;
+
+    private final Thread hilo;
+    // ReentrantLock y no synchronized para no fijar hilos virtuales
+    private final ReentrantLock candado = new ReentrantLock();
+    private final LinkedHashMap<Integer, Pendiente> pendientes = new LinkedHashMap<>();
+    // lote que se está aplicando (fuera de pendientes hasta el commit)
+    private List<Pendiente> enCurso = List.of();
+    private volatile boolean detenido;
+
+    private ColaEstados() {
+        this.hilo = new Thread(this, "cola-estados");
+        this.hilo.setDaemon(true);
+        Metricas.indicador("hospital_estados_diferidos_pendientes", this::tamano);
+    }
+
+    /**
+     * Indica si la cola está en marcha (hospital.estados.diferido.habilitado).
+     */
+    public static boolean isHabilitado() {
+        return activa != null;
+    }
+
+    public static synchronized void iniciar() {
+        if (!HABILITADO || activa != null) {
+            return;
+        }
+        activa = new ColaEstados();
+        activa.hilo.start();
+        LOG.info("Cola de cambios de estado diferidos iniciada");
+    }
+
+    /**
+     * Detiene la cola después de aplicar los cambios pendientes.
+     */
+    public static synchronized void detener() {
+        if (activa == null) {
+            return;
+        }
+        ColaEstados anterior = activa;
+        activa = null;
+        anterior.detenido = true;
+        LockSupport.unpark(anterior.hilo);
+        try {
+            anterior.hilo.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Encola el cambio de estado de un paciente.
+     * @return futuro que se completa después del commit que lo aplica, con
+     *         true si el paciente existe; o null si la cola no está en marcha o
+     *         está llena (el cambio se debe aplicar en el momento).
+     */
+    public static CompletableFuture<Boolean> encolar(int id, boolean activo) {
+        ColaEstados cola = activa;
+        return cola == null ? null : cola.agregar(id, activo);
+    }
+
+    private CompletableFuture<Boolean> agregar(int id, boolean activo) {
+        Pendiente pendiente;
+        int tamano;
+        candado.lock();
+        try {
+            if (detenido) {
+                return null;
+            }
+            pendiente = pendientes.get(id);
+            if (pendiente != null) {
+                pendiente.activo = activo;
+                AGRUPADOS.increment();
+                return pendiente.confirmado;
+            }
+            if (pendientes.size() >= CAPACIDAD) {
+                RECHAZADOS.increment();
+                return null;
+            }
+            pendiente = new Pendiente(id, activo, System.nanoTime());
+            pendientes.put(id, pendiente);
+            tamano = pendientes.size();
+        } finally {
+            candado.unlock();
+        }
+        ACEPTADOS.increment();
+        if (tamano >= TAMANO_LOTE) {
+            LockSupport.unpark(hilo);
+        }
+        return pendiente.confirmado;
+    }
+
+    /**
+     * Antes de una escritura síncrona del estado de un paciente: si tiene un
+     * cambio encolado o en un lote en curso, adelanta el vaciado y espera su
+     * commit. Se llama antes de bloquear filas de paciente en la transacción,
+     * porque el lote necesita esas filas.
+     * @throws SQLTimeoutException si el cambio no se confirma en
+     *         hospital.estados.diferido.esperaSincronaMs.
+     */
+    public static void esperar(int id) throws SQLException {
+        esperar(List.of(id));
+    }
+
+    /**
+     * Igual que esperar(int) para varios pacientes; con null espera todos los
+     * cambios encolados hasta ahora (cambio masivo por filtro).
+     */
+    public static void esperar(Collection<Integer> ids) throws SQLException {
+        ColaEstados cola = activa;
+        if (cola != null) {
+            cola.esperarPendientes(ids);
+        }
+    }
+
+    private void esperarPendientes(Collection<Integer> ids) throws SQLException {
+        Set<Integer> buscados = ids == null ? null : new HashSet<>(ids);
+        List<CompletableFuture<Boolean>> esperados = new ArrayList<>();
+        candado.lock();
+        try {
+            for (Pendiente pendiente : enCurso) {
+                if (buscados == null || buscados.contains(pendiente.id)) {
+                    esperados.add(pendiente.confirmado);
+                }
+            }
+            if (buscados == null) {
+                for (Pendiente pendiente : pendientes.values()) {
+                    esperados.add(pendiente.confirmado);
+                }
+            } else {
+                for (Integer id : buscados) {
+                    Pendiente pendiente = pendientes.get(id);
+                    if (pendiente != null) {
+                        esperados.add(pendiente.confirmado);
+                    }
+                }
+            }
+        } finally {
+            candado.unlock();
+        }
+        if (esperados.isEmpty()) {
+            return;
+        }
+        LockSupport.unpark(hilo);
+        try {
+            CompletableFuture.allOf(esperados.toArray(new CompletableFuture<?>[0]))
+                    .get(ESPERA_SINCRONA_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SQLTimeoutException("Los cambios de estado encolados no se confirmaron a tiempo", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Error al aplicar los cambios de estado encolados", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Espera de los cambios de estado encolados interrumpida", e);
+        }
+    }
+
+    private int tamano() {
+        candado.lock();
+        try {
+            return pendientes.size();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            boolean ultimaVuelta = detenido;
+            int aplicados;
+            try {
+                aplicados = vaciar();
+            } catch (SQLException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Error al aplicar los cambios de estado diferidos", e);
+                if (ultimaVuelta) {
+                    LOG.severe("Se perdieron " + tamano() + " cambios de estado diferidos al detener la aplicación");
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(REINTENTO_MS));
+                continue;
+            }
+            if (ultimaVuelta && tamano() == 0) {
+                return;
+            }
+            // con un lote completo seguimos de inmediato; si no, esperamos el intervalo o un aviso
+            if (aplicados < TAMANO_LOTE && !ultimaVuelta) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(INTERVALO_MS));
+            }
+        }
+    }
+
+    /**
+     * Toma hasta un lote de la cola y lo aplica en una transacción.
+     * @return cantidad de cambios tomados.
+     */
+    private int vaciar() throws SQLException {
+        List<Pendiente> lote = new ArrayList<>();
+        List<Integer> activar = new ArrayList<>();
+        List<Integer> desactivar = new ArrayList<>();
+        candado.lock();
+        try {
+            Iterator<Pendiente> it = pendientes.values().iterator();
+            while (it.hasNext() && lote.size() < TAMANO_LOTE) {
+                Pendiente pendiente = it.next();
+                it.remove();
+                lote.add(pendiente);
+                (pendiente.activo ? activar : desactivar).add(pendiente.id);
+            }
+            enCurso = lote;
+        } finally {
+            candado.unlock();
+        }
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        activar.sort(null);
+        desactivar.sort(null);
+
+        long inicio = System.nanoTime();
+        Set<Integer> existentes = new HashSet<>();
+        Connection conexion;
+        try {
+            conexion = Conexion.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            devolver(lote);
+            throw e;
+        }
+        try (Connection conn = conexion) {
+            conn.setAutoCommit(false);
+            try {
+                aplicar(conn, activar, true, existentes);
+                aplicar(conn, desactivar, false, existentes);
+                if (!existentes.isEmpty()) {
+                    // una vez por lote, igual que una transacción del servicio
+                    new PacienteRepository(conn).incrementarVersion();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } finally {
+                    devolver(lote);
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        LOTE.registrarDesde(inicio);
+        terminarLote();
+
+        // después del commit, igual que PacienteServiceImpl.cambiarEstado
+        CachePacientes cache = CachePacientes.getInstancia();
+        BusEventosPaciente bus = BusEventosPaciente.getInstancia();
+        for (Pendiente pendiente : lote) {
+            boolean existe = existentes.contains(pendiente.id);
+            cache.invalidar(pendiente.id);
+            if (existe) {
+                bus.publicar(EventoPaciente.Tipo.ESTADO, pendiente.id, pendiente.activo, null);
+            }
+            RETRASO.registrarDesde(pendiente.desde);
+            pendiente.confirmado.complete(existe);
+        }
+        DespachadorOutbox.avisar();
+        APLICADOS.add(lote.size());
+        return lote.size();
+    }
+
+    /**
+     * Aplica un estado a una lista de ids en bloques y anota los que existen.
+     */
+    private static void aplicar(Connection conn, List<Integer> ids, boolean activo,
+                                Set<Integer> existentes) throws SQLException {
+        PacienteRepository repositorio = new PacienteRepository(conn);
+        OutboxRepository outbox = DespachadorOutbox.isHabilitado() ? new OutboxRepository(conn) : null;
+        for (int inicio = 0; inicio < ids.size(); inicio += BLOQUE_IN) {
+            List<Integer> bloque = ids.subList(inicio, Math.min(inicio + BLOQUE_IN, ids.size()));
+            List<Integer> encontrados;
+            if (repositorio.actualizarEstadoLote(bloque, activo) == bloque.size()) {
+                encontrados = bloque;
+            } else {
+                // falta alguno: se pregunta cuáles existen (las filas ya están bloqueadas por el UPDATE)
+                Set<Integer> existen = repositorio.idsExistentes(bloque);
+                encontrados = new ArrayList<>(bloque);
+                encontrados.retainAll(existen);
+            }
+            existentes.addAll(encontrados);
+            if (outbox != null) {
+                outbox.registrarEstados(encontrados, activo);
+            }
+        }
+    }
+
+    /**
+     * Devuelve a la cola los cambios de un lote que falló. Si mientras tanto
+     * llegó un cambio más nuevo del mismo paciente, ese gana y quien esperaba
+     * el anterior recibe su confirmación.
+     */
+    private void devolver(List<Pendiente> lote) {
+        candado.lock();
+        try {
+            enCurso = List.of();
+            for (Pendiente pendiente : lote) {
+                Pendiente nuevo = pendientes.putIfAbsent(pendiente.id, pendiente);
+                if (nuevo != null && nuevo != pendiente) {
+                    nuevo.confirmado.whenComplete((existe, error) -> {
+                        if (error != null) {
+                            pendiente.confirmado.completeExceptionally(error);
+                        } else {
+                            pendiente.confirmado.complete(existe);
+                        }
+                    });
+                }
+            }
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private void terminarLote() {
+        candado.lock();
+        try {
+            enCurso = List.of();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private static final class Pendiente {
+        final int id;
+        final long desde;
+        final CompletableFuture<Boolean> confirmado = new CompletableFuture<>();
+        // se cambia con el candado tomado
+        boolean activo;
+
+        Pendiente(int id, boolean activo, long desde) {
+            this.id = id;
+            this.activo = activo;
+            this.desde = desde;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Tarea de fondo que vacía la bandeja de salida (paciente_outbox) hacia el
+ * destino configurado (DestinoEventos). Las escrituras de la API solo agregan
+ * una fila al outbox dentro de su transacción; la entrega ocurre aquí, en un
+ * hilo propio, por lo que un destino lento no alarga las escrituras.
+ *
+ * Cada vuelta toma una conexión del pool, reserva un lote con FOR UPDATE SKIP
+ * LOCKED (varias instancias pueden despachar a la vez sin repetir filas), lo
+ * entrega, borra las filas entregadas y reprograma las fallidas con espera
+ * exponencial. La transacción del despachador usa READ COMMITTED para bloquear
+ * solo las filas reservadas, nunca huecos del índice donde la API inserta.
+ * El orden por paciente lo garantiza la reserva (ver OutboxRepository).
+ *
+ * Después de cada commit con cambios, el servicio avisa al despachador para
+ * que no espere el intervalo completo.
+ *
+ * Configuración: hospital.outbox.destino (vacío = deshabilitado),
+ * hospital.outbox.tamanoLote, hospital.outbox.intervaloMs,
+ * hospital.outbox.reintento.baseMs, hospital.outbox.reintento.maximoMs.
+ */
+import Model.MensajeOutbox;
+import Repository.OutboxRepository;
+import Util.Conexion;
+import Util.Configuracion;
+import Util.Histograma;
+import Util.Metricas;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class DespachadorOutbox implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(DespachadorOutbox.class.getName());
+
+    private static final String DESTINO = Configuracion.texto("outbox.destino", "");
+    private static final int TAMANO_LOTE = Configuracion.entero("outbox.tamanoLote", 100);
+    private static final long INTERVALO_MS = Configuracion.largo("outbox.intervaloMs", 500);
+    private static final long REINTENTO_BASE_MS = Configuracion.largo("outbox.reintento.baseMs", 1_000);
+    private static final long REINTENTO_MAXIMO_MS = Configuracion.largo("outbox.reintento.maximoMs", 60_000);
+
+    private static final LongAdder ENVIADOS = Metricas.contador("hospital_outbox_enviados_total");
+    private static final LongAdder FALLIDOS = Metricas.contador("hospital_outbox_fallidos_total");
+    private static final Histograma ENVIO = Metricas.histograma("hospital_outbox_envio_segundos");
+    private static final Histograma RETRASO = Metricas.histograma("hospital_outbox_retraso_segundos");
+
+    private static DespachadorOutbox activo;
+
+    private final DestinoEventos destino;
+    private final Thread hilo;
+    private volatile boolean detenido;
+    // retraso del mensaje más antiguo del último lote (cambio registrado → reservado)
+    private volatile long retrasoMicros;
+
+    private DespachadorOutbox(DestinoEventos destino) {
+        this.destino = destino;
+        this.hilo = new Thread(this, "despachador-outbox");
+        this.hilo.setDaemon(true);
+        Metricas.indicador("hospital_outbox_retraso_ms", () -> retrasoMicros / 1_000);
+    }
+
+    /**
+     * Indica si hay un destino configurado. Si no lo hay, el servicio no
+     * escribe en el outbox (nadie lo vaciaría).
+     */
+    public static boolean isHabilitado() {
+        return !DESTINO.isBlank();
+    }
+
+    /**
+     * Inicia el despachador con el destino de la configuración, si hay uno.
+     */
+    public static void iniciar() {
+        DestinoEventos destino = DestinoEventos.crear(DESTINO);
+        if (destino != null) {
+            iniciar(destino);
+        }
+    }
+
+    /**
+     * Inicia el despachador con un destino propio (por ejemplo DestinoMemoria
+     * en pruebas). Si ya había uno en marcha, se detiene primero.
+     */
+    public static synchronized void iniciar(DestinoEventos destino) {
+        detener();
+        activo = new DespachadorOutbox(destino);
+        activo.hilo.start();
+        LOG.info("Despachador de outbox iniciado hacia " + destino.getClass().getSimpleName());
+    }
+
+    /**
+     * Detiene el despachador y cierra su destino.
+     */
+    public static synchronized void detener() {
+        if (activo == null) {
+            return;
+        }
+        DespachadorOutbox anterior = activo;
+        activo = null;
+        anterior.detenido = true;
+        LockSupport.unpark(anterior.hilo);
+        try {
+            anterior.hilo.join(TimeUnit.SECONDS.toMillis(10));
+            anterior.destino.cerrar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "No se pudo cerrar el destino de eventos", e);
+        }
+    }
+
+    /**
+     * Despierta al despachador; se llama después del commit de un cambio.
+     * Es barato (no toma candados) y no hace nada si el despachador no corre.
+     */
+    public static void avisar() {
+        DespachadorOutbox actual = activo;
+        if (actual != null) {
+            LockSupport.unpark(actual.hilo);
+        }
+    }
+
+    @Override
+    public void run() {
+        long esperaError = REINTENTO_BASE_MS;
+        while (!detenido) {
+            int reservados;
+            try {
+                reservados = despacharLote();
+                esperaError = REINTENTO_BASE_MS;
+            } catch (SQLException | RuntimeException e) {
+                // base de datos no disponible: esperamos antes de volver a intentar
+                LOG.log(Level.WARNING, "Error al despachar el outbox", e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(esperaError));
+                esperaError = Math.min(esperaError * 2, REINTENTO_MAXIMO_MS);
+                continue;
+            }
+            // con un lote completo seguimos de inmediato; si no, esperamos el intervalo o un aviso
+            if (reservados < TAMANO_LOTE) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(INTERVALO_MS));
+            }
+        }
+    }
+
+    /**
+     * Reserva, entrega y confirma un lote.
+     * @return cantidad de mensajes reservados.
+     */
+    private int despacharLote() throws SQLException {
+        try (Connection conn = Conexion.getConnection()) {
+            int aislamiento = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            try {
+                OutboxRepository outbox = new OutboxRepository(conn);
+                List<MensajeOutbox> lote = outbox.reservar(TAMANO_LOTE);
+                if (lote.isEmpty()) {
+                    conn.commit();
+                    retrasoMicros = 0;
+                    return 0;
+                }
+                retrasoMicros = lote.get(0).getRetrasoMicros();
+
+                List<MensajeOutbox> fallidos;
+                String error = null;
+                long inicio = System.nanoTime();
+                try {
+                    fallidos = destino.enviar(lote);
+                } catch (IOException | RuntimeException e) {
+                    LOG.log(Level.WARNING, "El destino de eventos no aceptó el lote", e);
+                    fallidos = lote;
+                    error = e.toString();
+                }
+                ENVIO.registrarDesde(inicio);
+
+                List<MensajeOutbox> entregados = new ArrayList<>(lote);
+                entregados.removeAll(fallidos);
+                outbox.eliminar(entregados);
+                for (MensajeOutbox mensaje : fallidos) {
+                    outbox.reprogramar(mensaje, espera(mensaje.getIntentos()),
+                            error == null ? "No aceptado por el destino" : error);
+                }
+                conn.commit();
+
+                long enviado = System.nanoTime() - inicio;
+                for (MensajeOutbox mensaje : entregados) {
+                    RETRASO.registrar(TimeUnit.MICROSECONDS.toNanos(mensaje.getRetrasoMicros()) + enviado);
+                }
+                ENVIADOS.add(entregados.size());
+                FALLIDOS.add(fallidos.size());
+                return lote.size();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(aislamiento);
+            }
+        }
+    }
+
+    /**
+     * Espera exponencial antes del siguiente intento: base, 2·base, 4·base...
+     * hasta hospital.outbox.reintento.maximoMs.
+     */
+    private static long espera(int intentosPrevios) {
+        return Math.min(REINTENTO_MAXIMO_MS, REINTENTO_BASE_MS << Math.min(intentosPrevios, 20));
+    }
+}
@@ -0,0 +1,66 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Destino de eventos que agrega cada mensaje como una línea JSON al final de
+ * un archivo (NDJSON). Cada lote se vacía al disco antes de confirmar la
+ * entrega, así un mensaje borrado del outbox ya está escrito.
+ */
+import Model.MensajeOutbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class DestinoArchivo implements DestinoEventos {
+
+    private final Path ruta;
+    private FileChannel canal;
+
+    public DestinoArchivo(Path ruta) {
+        this.ruta = ruta;
+    }
+
+    @Override
+    public List<MensajeOutbox> enviar(List<MensajeOutbox> mensajes) throws IOException {
+        StringBuilder lineas = new StringBuilder(mensajes.size() * 256);
+        for (MensajeOutbox mensaje : mensajes) {
+            linea(lineas, mensaje);
+        }
+        if (canal == null) {
+            canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        ByteBuffer datos = ByteBuffer.wrap(lineas.toString().getBytes(StandardCharsets.UTF_8));
+        while (datos.hasRemaining()) {
+            canal.write(datos);
+        }
+        canal.force(false);
+        return List.of();
+    }
+
+    @Override
+    public void cerrar() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    /**
+     * {"id":..., "idPaciente":..., "tipo":"...", "evento":{...}}; la carga ya es JSON.
+     */
+    static void linea(StringBuilder salida, MensajeOutbox mensaje) {
+        salida.append("{\"id\":").append(mensaje.getId())
+                .append(",\"idPaciente\":").append(mensaje.getIdPaciente())
+                .append(",\"tipo\":\"").append(mensaje.getTipo())
+                .append("\",\"evento\":").append(mensaje.getCarga())
+                .append("}\n");
+    }
+}
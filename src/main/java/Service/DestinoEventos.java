@@ -0,0 +1,59 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Destino al que DespachadorOutbox entrega los eventos de pacientes. Se elige
+ * con hospital.outbox.destino:
+ * - archivo:/ruta/eventos.ndjson → DestinoArchivo (una línea JSON por evento).
+ * - http://host/ruta → DestinoHttp (POST de cada lote en NDJSON).
+ * - memoria → DestinoMemoria (cola acotada, para pruebas y desarrollo).
+ * Sin valor, el outbox queda deshabilitado.
+ *
+ * La entrega es "al menos una vez": si algo falla después de entregar, el
+ * mismo mensaje (con el mismo id) puede volver a enviarse.
+ */
+import Model.MensajeOutbox;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+
+public interface DestinoEventos {
+
+    /**
+     * Entrega un lote de mensajes, en el orden recibido.
+     * @return los mensajes que no se pudieron entregar (vacío si se entregaron todos).
+     * @throws IOException si no se entregó ninguno.
+     */
+    List<MensajeOutbox> enviar(List<MensajeOutbox> mensajes) throws IOException;
+
+    /**
+     * Libera los recursos del destino al detener el despachador.
+     */
+    default void cerrar() throws IOException {
+    }
+
+    /**
+     * Crea el destino indicado en la configuración.
+     * @return el destino, o null si el valor está vacío.
+     */
+    static DestinoEventos crear(String configuracion) {
+        if (configuracion == null || configuracion.isBlank()) {
+            return null;
+        }
+        String valor = configuracion.trim();
+        if (valor.equals("memoria")) {
+            return new DestinoMemoria(10_000);
+        }
+        if (valor.startsWith("archivo:")) {
+            return new DestinoArchivo(Path.of(valor.substring("archivo:".length())));
+        }
+        if (valor.startsWith("http://") || valor.startsWith("https://")) {
+            return new DestinoHttp(URI.create(valor));
+        }
+        throw new IllegalArgumentException("Destino de eventos no reconocido: " + valor);
+    }
+}
@@ -0,0 +1,58 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Destino de eventos que envía cada lote con un POST (application/x-ndjson,
+ * una línea por mensaje, igual que DestinoArchivo) al servicio indicado. Una
+ * respuesta 2xx confirma el lote completo; cualquier otra respuesta o un
+ * tiempo de espera agotado hace que el lote se reintente.
+ *
+ * Configuración: hospital.outbox.http.timeoutMs (5000 por defecto).
+ */
+import Model.MensajeOutbox;
+import Util.Configuracion;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+public class DestinoHttp implements DestinoEventos {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(Configuracion.largo("outbox.http.timeoutMs", 5_000));
+
+    private final URI destino;
+    private final HttpClient cliente = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+
+    public DestinoHttp(URI destino) {
+        this.destino = destino;
+    }
+
+    @Override
+    public List<MensajeOutbox> enviar(List<MensajeOutbox> mensajes) throws IOException {
+        StringBuilder cuerpo = new StringBuilder(mensajes.size() * 256);
+        for (MensajeOutbox mensaje : mensajes) {
+            DestinoArchivo.linea(cuerpo, mensaje);
+        }
+        HttpRequest solicitud = HttpRequest.newBuilder(destino)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo.toString()))
+                .build();
+        try {
+            HttpResponse<Void> respuesta = cliente.send(solicitud, HttpResponse.BodyHandlers.discarding());
+            if (respuesta.statusCode() / 100 != 2) {
+                throw new IOException("El destino respondió HTTP " + respuesta.statusCode());
+            }
+            return List.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Envío interrumpido", e);
+        }
+    }
+}
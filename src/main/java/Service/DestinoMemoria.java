@@ -0,0 +1,43 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Destino de eventos en memoria: una cola acotada de la que se puede leer
+ * (pruebas, desarrollo). Si la cola está llena, los mensajes que no entran se
+ * devuelven como no entregados y el despachador los reintenta más tarde.
+ */
+import Model.MensajeOutbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class DestinoMemoria implements DestinoEventos {
+
+    private final BlockingQueue<MensajeOutbox> cola;
+
+    public DestinoMemoria(int capacidad) {
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+    }
+
+    @Override
+    public List<MensajeOutbox> enviar(List<MensajeOutbox> mensajes) {
+        List<MensajeOutbox> rechazados = new ArrayList<>();
+        for (MensajeOutbox mensaje : mensajes) {
+            if (!cola.offer(mensaje)) {
+                rechazados.add(mensaje);
+            }
+        }
+        return rechazados;
+    }
+
+    /**
+     * Cola con los mensajes entregados, en orden de entrega.
+     */
+    public BlockingQueue<MensajeOutbox> getCola() {
+        return cola;
+    }
+}
@@ -0,0 +1,346 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Modelo de lectura en memoria de la tabla paciente (TablaPacientes), usado
+ * por PacienteServiceMemoria cuando hospital.servicio.modo=memoria.
+ *
+ * - Carga: al iniciar la aplicación, un hilo de fondo recorre la tabla con un
+ *   cursor del lado del servidor (PacienteRepository.recorrer), sin tener
+ *   todas las filas en una lista. Mientras tanto el servicio lee de MySQL.
+ * - Al día: se registra como oyente del bus de eventos, que recibe cada alta,
+ *   modificación y cambio de estado después del commit y antes de responder;
+ *   así quien escribe ve su cambio en la siguiente lectura.
+ * - Reconciliación: cada hospital.modelo.reconciliacionMs se vuelve a
+ *   recorrer la tabla y se compara fila por fila. Las diferencias (cambios de
+ *   otras instancias o hechos fuera de la API, eventos aplicados en desorden)
+ *   se corrigen y se cuentan en hospital_modelo_derivas_total.
+ *
+ * Los ids que cambian mientras dura un recorrido se anotan y no se comparan
+ * (el evento ya dejó el valor confirmado); los de la carga inicial se vuelven
+ * a leer al terminar. Los recorridos usan el primario y no las réplicas: una
+ * réplica atrasada haría "corregir" el modelo con datos viejos.
+ *
+ * Configuración: hospital.servicio.modo, hospital.modelo.reconciliacionMs,
+ * hospital.modelo.reintentoMs, hospital.modelo.tamanoBloque.
+ */
+import Model.EventoPaciente;
+import Model.Paciente;
+import Repository.PacienteRepository;
+import Repository.ProcesadorPaciente;
+import Util.BusEventosPaciente;
+import Util.Conexion;
+import Util.Configuracion;
+import Util.Histograma;
+import Util.Metricas;
+import Util.TablaPacientes;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class ModeloPacientes implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(ModeloPacientes.class.getName());
+
+    private static final String MODO = Configuracion.texto("servicio.modo", "bd");
+    private static final long RECONCILIACION_MS = Configuracion.largo("modelo.reconciliacionMs", 300_000);
+    private static final long REINTENTO_MS = Configuracion.largo("modelo.reintentoMs", 10_000);
+    private static final int TAMANO_BLOQUE = Configuracion.entero("modelo.tamanoBloque", 1000);
+    // Ids por consulta al volver a leer filas puntuales (igual que el lookup)
+    private static final int BLOQUE_IDS = 128;
+
+    private static final LongAdder DERIVAS = Metricas.contador("hospital_modelo_derivas_total");
+    private static final LongAdder RECONCILIACIONES = Metricas.contador("hospital_modelo_reconciliaciones_total");
+    private static final Histograma CARGA = Metricas.histograma("hospital_modelo_carga_segundos");
+    private static final Histograma RECONCILIACION = Metricas.histograma("hospital_modelo_reconciliacion_segundos");
+
+    private static volatile ModeloPacientes activo;
+
+    private final Thread hilo;
+    private final Consumer<EventoPaciente> oyente = this::aplicar;
+    private volatile boolean detenido;
+    // null mientras no termine la primera carga
+    private volatile TablaPacientes tabla;
+    // ids modificados durante el recorrido en curso (null si no hay recorrido)
+    private volatile Set<Integer> tocados;
+    private volatile long ultimaCarga;
+    private volatile long ultimaReconciliacion;
+    private volatile int derivasUltima;
+
+    private ModeloPacientes() {
+        this.hilo = new Thread(this, "modelo-pacientes");
+        this.hilo.setDaemon(true);
+        Metricas.indicador("hospital_modelo_filas", () -> {
+            TablaPacientes actual = tabla;
+            return actual == null ? 0 : actual.tamano();
+        });
+        Metricas.indicador("hospital_modelo_bytes", () -> {
+            TablaPacientes actual = tabla;
+            return actual == null ? 0 : actual.bytesAproximados();
+        });
+    }
+
+    /**
+     * Indica si el servicio debe leer desde el modelo en memoria
+     * (hospital.servicio.modo=memoria).
+     */
+    public static boolean isHabilitado() {
+        return "memoria".equalsIgnoreCase(MODO.trim());
+    }
+
+    /**
+     * Inicia la carga en segundo plano, si el modo memoria está habilitado.
+     */
+    public static synchronized void iniciar() {
+        if (!isHabilitado()) {
+            return;
+        }
+        detener();
+        activo = new ModeloPacientes();
+        BusEventosPaciente.getInstancia().agregarOyente(activo.oyente);
+        activo.hilo.start();
+        LOG.info("Modelo de pacientes en memoria: cargando");
+    }
+
+    /**
+     * Detiene las reconciliaciones y libera el modelo.
+     */
+    public static synchronized void detener() {
+        if (activo == null) {
+            return;
+        }
+        ModeloPacientes anterior = activo;
+        activo = null;
+        anterior.detenido = true;
+        BusEventosPaciente.getInstancia().quitarOyente(anterior.oyente);
+        LockSupport.unpark(anterior.hilo);
+        try {
+            anterior.hilo.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        anterior.tabla = null;
+    }
+
+    /**
+     * Tabla lista para leer, o null si el modelo está deshabilitado o todavía
+     * no terminó la primera carga (en ese caso se lee de MySQL).
+     */
+    public static TablaPacientes tabla() {
+        ModeloPacientes actual = activo;
+        return actual == null ? null : actual.tabla;
+    }
+
+    /**
+     * Estado del modelo para /admin/modelo.
+     */
+    public static Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", isHabilitado());
+        ModeloPacientes actual = activo;
+        TablaPacientes t = actual == null ? null : actual.tabla;
+        datos.put("listo", t != null);
+        if (t != null) {
+            int filas = t.tamano();
+            long bytes = t.bytesAproximados();
+            datos.put("filas", filas);
+            datos.put("bytes", bytes);
+            datos.put("bytesPorFila", filas == 0 ? 0 : bytes / filas);
+            datos.put("version", t.getVersion());
+            datos.put("ultimaCarga", actual.ultimaCarga);
+            datos.put("ultimaReconciliacion", actual.ultimaReconciliacion);
+            datos.put("derivasUltimaReconciliacion", actual.derivasUltima);
+        }
+        return datos;
+    }
+
+    @Override
+    public void run() {
+        while (!detenido) {
+            long espera = RECONCILIACION_MS;
+            try {
+                if (tabla == null) {
+                    cargar();
+                } else {
+                    reconciliar();
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Error al sincronizar el modelo de pacientes", e);
+                espera = Math.min(RECONCILIACION_MS, REINTENTO_MS);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(espera));
+        }
+    }
+
+    /**
+     * Aplica un cambio confirmado (oyente del bus).
+     */
+    private void aplicar(EventoPaciente evento) {
+        Set<Integer> enCurso = tocados;
+        if (enCurso != null) {
+            enCurso.add(evento.getIdPaciente());
+        }
+        TablaPacientes actual = tabla;
+        if (actual == null) {
+            return;
+        }
+        if (evento.getPaciente() != null) {
+            actual.poner(evento.getPaciente());
+        } else if (evento.getTipo() == EventoPaciente.Tipo.ESTADO) {
+            // si el paciente no estuviera, la reconciliación lo agrega
+            actual.cambiarEstado(evento.getIdPaciente(), evento.getActivo());
+        }
+        // una modificación sin datos no se aplica: la reconciliación la trae
+    }
+
+    /**
+     * Primera carga: recorre la tabla completa y luego vuelve a leer los ids
+     * que cambiaron mientras tanto.
+     */
+    private void cargar() throws SQLException, IOException {
+        long inicio = System.nanoTime();
+        Set<Integer> enCurso = ConcurrentHashMap.newKeySet();
+        tocados = enCurso;
+        try (Connection conn = Conexion.getConnection()) {
+            PacienteRepository repositorio = new PacienteRepository(conn);
+            // la versión parte del reloj para no repetir ETags de antes de un reinicio
+            TablaPacientes nueva = new TablaPacientes(1024, System.currentTimeMillis() * 1000);
+            repositorio.recorrer(nueva::poner, TAMANO_BLOQUE);
+            tabla = nueva;
+            releer(repositorio, nueva, new ArrayList<>(enCurso), null);
+            ultimaCarga = System.currentTimeMillis();
+            LOG.info("Modelo de pacientes en memoria: " + nueva.tamano() + " filas, "
+                    + nueva.bytesAproximados() / 1024 + " KiB");
+        } finally {
+            tocados = null;
+            CARGA.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Compara el modelo con la tabla y corrige las diferencias.
+     */
+    private void reconciliar() throws SQLException, IOException {
+        long inicio = System.nanoTime();
+        TablaPacientes actual = tabla;
+        Set<Integer> enCurso = ConcurrentHashMap.newKeySet();
+        tocados = enCurso;
+        try (Connection conn = Conexion.getConnection()) {
+            PacienteRepository repositorio = new PacienteRepository(conn);
+            Comparador comparador = new Comparador(actual, actual.ids(), enCurso);
+            repositorio.recorrer(comparador, TAMANO_BLOQUE);
+            comparador.terminar();
+            // los que solo están en el modelo pueden ser altas posteriores al inicio del recorrido
+            int quitados = releer(repositorio, actual, comparador.sobrantes, enCurso);
+            int derivas = comparador.derivas + quitados;
+            derivasUltima = derivas;
+            ultimaReconciliacion = System.currentTimeMillis();
+            RECONCILIACIONES.increment();
+            if (derivas > 0) {
+                DERIVAS.add(derivas);
+                LOG.warning("Modelo de pacientes en memoria: " + derivas + " filas corregidas");
+            }
+        } finally {
+            tocados = null;
+            RECONCILIACION.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Vuelve a leer ids puntuales: los que existen se guardan con su valor
+     * actual y los que ya no existen se quitan del modelo.
+     * @param omitir ids que no se deben tocar (cambiaron durante el recorrido), o null.
+     * @return cantidad de ids quitados.
+     */
+    private static int releer(PacienteRepository repositorio, TablaPacientes destino, List<Integer> ids,
+                              Set<Integer> omitir) throws SQLException {
+        int quitados = 0;
+        for (int inicio = 0; inicio < ids.size(); inicio += BLOQUE_IDS) {
+            List<Integer> bloque = ids.subList(inicio, Math.min(inicio + BLOQUE_IDS, ids.size()));
+            Set<Integer> existentes = new HashSet<>();
+            for (Paciente p : repositorio.buscarPorIds(bloque)) {
+                existentes.add(p.getId());
+                if (omitir == null) {
+                    destino.poner(p);
+                }
+            }
+            for (Integer id : bloque) {
+                if (!existentes.contains(id) && (omitir == null || !omitir.contains(id)) && destino.quitar(id)) {
+                    quitados++;
+                }
+            }
+        }
+        return quitados;
+    }
+
+    private static boolean iguales(Paciente a, Paciente b) {
+        return a != null && b != null
+                && a.getId() == b.getId()
+                && a.getEdad() == b.getEdad()
+                && a.isActivo() == b.isActivo()
+                && Objects.equals(a.getNombre(), b.getNombre())
+                && Objects.equals(a.getCedula(), b.getCedula())
+                && Objects.equals(a.getCorreo(), b.getCorreo())
+                && Objects.equals(a.getDireccion(), b.getDireccion());
+    }
+
+    /**
+     * Recibe las filas de la tabla en orden de id y las compara con el modelo.
+     * Como los ids del modelo también están ordenados, los que la tabla salta
+     * son los que sobran en el modelo.
+     */
+    private static final class Comparador implements ProcesadorPaciente {
+        private final TablaPacientes modelo;
+        private final int[] conocidos;
+        private final Set<Integer> enCurso;
+        private final List<Integer> sobrantes = new ArrayList<>();
+        private int cursor;
+        private int derivas;
+
+        Comparador(TablaPacientes modelo, int[] conocidos, Set<Integer> enCurso) {
+            this.modelo = modelo;
+            this.conocidos = conocidos;
+            this.enCurso = enCurso;
+        }
+
+        @Override
+        public void procesar(Paciente p) {
+            while (cursor < conocidos.length && conocidos[cursor] < p.getId()) {
+                sobrantes.add(conocidos[cursor++]);
+            }
+            if (cursor < conocidos.length && conocidos[cursor] == p.getId()) {
+                cursor++;
+            }
+            if (enCurso.contains(p.getId())) {
+                return;
+            }
+            if (!iguales(modelo.obtener(p.getId()), p)) {
+                modelo.poner(p);
+                derivas++;
+            }
+        }
+
+        void terminar() {
+            while (cursor < conocidos.length) {
+                sobrantes.add(conocidos[cursor++]);
+            }
+        }
+    }
+}
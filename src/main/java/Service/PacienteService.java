@@ -10,9 +10,20 @@ package Service;
  * Aquí solo declaramos QUÉ debe hacer el servicio, no CÓMO lo hace.
  * La implementación real estará en una clase PacienteServiceImpl.
  */
+import Model.FiltroPaciente;
 import Model.Paciente;
+import Model.PaginaPacientes;
+import Model.ResultadoCambioEstado;
+import Model.ResultadoCargaMasiva;
+import Model.ResultadoConsultaIds;
+import Model.SolicitudCambioEstado;
+import Repository.ProcesadorPaciente;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface PacienteService {
     /**
@@ -21,12 +32,49 @@ public interface PacienteService {
      * @return lista de pacientes existentes en la BD.
      */
     List<Paciente> listar();
+    /**
+     * Obtiene una página de pacientes con paginación por cursor y filtros.
+     * Se usa en peticiones GET con los parámetros after, limit, activo, etc.
+     * @param filtro criterios, cursor y columnas solicitadas.
+     * @return página con los pacientes y el cursor de la siguiente página.
+     */
+    PaginaPacientes listarPagina(FiltroPaciente filtro);
+    /**
+     * Versión actual de la tabla de pacientes; cambia con cada escritura.
+     * Permite responder 304 al listado sin volver a leer los pacientes.
+     */
+    long versionPacientes();
+    /**
+     * Busca pacientes por cédula parcial, correo parcial o palabras del nombre.
+     * Se usa en la búsqueda de recepción (GET /pacientes/search?q=).
+     * @param q texto ingresado por el usuario.
+     * @param limite cantidad máxima de resultados (0 para el valor por defecto).
+     * @return pacientes ordenados del más al menos relevante.
+     */
+    List<Paciente> buscar(String q, int limite);
+    /**
+     * Recorre todos los pacientes entregándolos uno por uno al procesador.
+     * Se usa para la exportación completa sin cargar la tabla en memoria.
+     * @param procesador destino de cada paciente leído.
+     * @throws IOException si falla la escritura hacia el destino.
+     */
+    void exportar(ProcesadorPaciente procesador) throws IOException;
     /**
      * Guarda un nuevo paciente en la base de datos.
      * Se usa para operaciones tipo POST.
      * @param p objeto Paciente con los datos a registrar.
      */
     void guardar(Paciente p);
+    /**
+     * Registra muchos pacientes en lotes, confirmando cada lote por separado.
+     * Una fila inválida se rechaza sin deshacer las demás.
+     * Se usa para operaciones POST /bulk.
+     * @param filas pacientes a registrar; si next() lanza HospitalException la fila
+     *              se reporta como rechazada con ese mensaje.
+     * @param tamanoLote cantidad de filas por INSERT en lote y por commit.
+     * @return resumen con las filas aceptadas y rechazadas por índice.
+     */
+    ResultadoCargaMasiva cargarMasivo(Iterator<Paciente> filas, int tamanoLote);
     /**
      * Busca un paciente por su identificador.
      * Se usa en peticiones GET /{id}.
@@ -34,6 +82,13 @@ public interface PacienteService {
      * @return un Paciente si existe, o null si no se encontró.
      */
     Paciente buscarPorId(int id);
+    /**
+     * Busca varios pacientes por id en una sola operación (POST /pacientes/lookup).
+     * Primero se consulta la caché y los demás se leen con WHERE id IN (...).
+     * @param ids ids a buscar; los repetidos se ignoran.
+     * @return los pacientes encontrados por id y la lista de ids que no existen.
+     */
+    ResultadoConsultaIds buscarPorIds(List<Integer> ids);
     /**
      * Actualiza los datos generales de un paciente.
      * Se usa para peticiones PUT /{id}.
@@ -41,6 +96,12 @@ public interface PacienteService {
      * @return el paciente actualizado, o null si no se realizó la operación.
      */
     Paciente actualizar(Paciente p);
+    /**
+     * Actualiza un paciente solo si su versión actual es una de las aceptadas
+     * (If-Match). Lanza PrecondicionFallidaException si no coincide.
+     * @param versionesAceptadas etiquetas aceptadas, "*" para cualquiera o null sin condición.
+     */
+    Paciente actualizar(Paciente p, Set<String> versionesAceptadas);
     /**
      * Activa o desactiva un paciente.
      * Es una actualización parcial y útil para inhabilitar registros sin borrarlos.
@@ -48,4 +109,24 @@ public interface PacienteService {
      * @param activo nuevo estado (true = activo, false = inactivo).
      */
     void cambiarEstado(int id, boolean activo);
+    /**
+     * Cambia el estado solo si la versión actual del paciente es una de las
+     * aceptadas (If-Match).
+     * @return false si el paciente no existe.
+     */
+    boolean cambiarEstado(int id, boolean activo, Set<String> versionesAceptadas);
+
+    /**
+     * Cambia el estado de muchos pacientes (por lista de ids o por filtro) en
+     * bloques, con un commit por bloque.
+     * @return afectados por bloque; si un bloque falla, hasta dónde se llegó.
+     */
+    ResultadoCambioEstado cambiarEstadoMasivo(SolicitudCambioEstado solicitud);
+
+    /**
+     * Encola el cambio de estado para aplicarlo en lote con otros (ver ColaEstados).
+     * @return futuro que se completa tras el commit (true si el paciente existe),
+     *         o null si no se encoló y hay que usar cambiarEstado.
+     */
+    CompletableFuture<Boolean> encolarEstado(int id, boolean activo);
 }
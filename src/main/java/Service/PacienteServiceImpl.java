@@ -9,30 +9,101 @@ package Service;
  * encarga de coordinar las operaciones entre el controlador y el
  * repositorio, garantizando reglas de negocio antes de acceder a la
  * base de datos.
- * Se inyecta una conexión JDBC mediante el constructor, y cada método
- * instancia su propio PacienteRepository para interactuar con la
- * capa de datos.
+ * Se inyecta el proveedor de conexión (o una conexión JDBC) mediante el
+ * constructor. El PacienteRepository se reutiliza entre llamadas mientras la
+ * conexión sea la misma; las sentencias preparadas se reutilizan en la caché
+ * del driver de cada conexión física (ver Conexion).
+ *
+ * Las altas, modificaciones y cambios de estado se publican en el bus de
+ * eventos (BusEventosPaciente) solo después del commit, para el flujo de
+ * cambios GET /pacientes/changes. Si hay un destino de eventos configurado,
+ * además se registran en el outbox dentro de la misma transacción
+ * (DespachadorOutbox los entrega en segundo plano).
  */
+import Model.EventoPaciente;
+import Model.FiltroPaciente;
 import Model.Paciente;
+import Model.PaginaPacientes;
+import Model.ResultadoCambioEstado;
+import Model.ResultadoCargaMasiva;
+import Model.ResultadoConsultaIds;
+import Model.SolicitudCambioEstado;
+import Repository.OutboxRepository;
 import Repository.PacienteRepository;
+import Repository.ProcesadorPaciente;
+import Util.BusEventosPaciente;
+import Util.CachePacientes;
+import Util.CedulaDuplicadaException;
+import Util.Configuracion;
 import Util.HospitalException;
+import Util.PrecondicionFallidaException;
+import Util.ProveedorConexion;
+import Util.Transacciones;
 import Util.ValidadorCedula;
+import Util.VersionPaciente;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 public class PacienteServiceImpl implements PacienteService {
 
-    /** Conexión activa hacia la base de datos. */
-    private final Connection conn;
+    /** Tamaño de página por defecto y máximo permitido. */
+    private static final int LIMITE_POR_DEFECTO = Configuracion.entero("paginacion.limitePorDefecto", 50);
+    private static final int LIMITE_MAXIMO = Configuracion.entero("paginacion.limiteMaximo", 500);
+
+    /** Resultados por defecto y máximos de la búsqueda, y largo máximo del texto. */
+    private static final int BUSQUEDA_POR_DEFECTO = Configuracion.entero("busqueda.limitePorDefecto", 20);
+    private static final int BUSQUEDA_MAXIMA = Configuracion.entero("busqueda.limiteMaximo", 100);
+    private static final int LARGO_MAXIMO_BUSQUEDA = 100;
+
+    /** Palabras más cortas que esto no están en el índice FULLTEXT (innodb_ft_min_token_size). */
+    private static final int LARGO_MINIMO_PALABRA = Configuracion.entero("busqueda.largoMinimoPalabra", 3);
+
+    /** Ids por consulta de lookup (máximo permitido y tamaño de cada IN). */
+    private static final int LOOKUP_MAXIMO = Configuracion.entero("lookup.maximoIds", 500);
+    private static final int LOOKUP_BLOQUE = Math.max(1, Configuracion.entero("lookup.tamanoBloque", 128));
+
+    /** Ids como máximo en un cambio de estado masivo por lista, y filas por bloque (una transacción). */
+    private static final int ESTADO_MASIVO_MAXIMO_IDS = Configuracion.entero("estadoMasivo.maximoIds", 10_000);
+    private static final int ESTADO_MASIVO_BLOQUE = Math.max(1, Configuracion.entero("estadoMasivo.tamanoBloque", 500));
+    // ids de la llave primaria que recorre como máximo un bloque del cambio masivo por filtro
+    private static final int ESTADO_MASIVO_RANGO = Math.max(ESTADO_MASIVO_BLOQUE,
+            Configuracion.entero("estadoMasivo.rangoIds", 20 * ESTADO_MASIVO_BLOQUE));
+
+    /** Filas por bloque al exportar con cursor del lado del servidor. */
+    private static final int BLOQUE_EXPORTACION = Configuracion.entero("exportacion.tamanoBloque", 1000);
+
+    /** Proveedor de la conexión; la conexión solo se toma cuando hace falta. */
+    private final ProveedorConexion proveedor;
+
+    // Repositorio de la última conexión usada (se recrea si la conexión cambia)
+    private PacienteRepository repositorio;
 
     /**
      * Constructor que recibe la conexión a la base de datos.
      *
      */
     public PacienteServiceImpl(Connection conn) {
-        this.conn = conn;
+        this(ProveedorConexion.de(conn));
+    }
+
+    /**
+     * Constructor que recibe el proveedor de conexión de la solicitud. Las
+     * operaciones que se resuelven sin base de datos (aciertos de caché) no
+     * llegan a tomar una conexión del pool.
+     */
+    public PacienteServiceImpl(ProveedorConexion proveedor) {
+        this.proveedor = proveedor;
     }
 
     /**
@@ -42,13 +113,152 @@ public class PacienteServiceImpl implements PacienteService {
     @Override
     public List<Paciente> listar() {
         try {
-            PacienteRepository pacienteRepository = new PacienteRepository(conn);
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtenerLectura());
             return pacienteRepository.listar();
         } catch (Exception e) {
             throw new HospitalException("Error al listar pacientes", e);
         }
     }
 
+    /**
+     * Obtiene una página de pacientes. Se pide una fila más que el límite para
+     * saber si existe una página siguiente sin ejecutar un COUNT(*).
+     * @param filtro criterios, cursor y proyección.
+     * @return página con el cursor de la siguiente (null si es la última).
+     */
+    @Override
+    public PaginaPacientes listarPagina(FiltroPaciente filtro) {
+        int limite = limitePagina(filtro);
+        try {
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtenerLectura());
+            return pagina(pacienteRepository.listarPagina(filtro, limite + 1), limite);
+        } catch (SQLException e) {
+            throw new HospitalException("Error al listar pacientes", e);
+        }
+    }
+
+    /**
+     * Valida los campos pedidos y devuelve el tamaño de página a usar.
+     */
+    static int limitePagina(FiltroPaciente filtro) {
+        // Regla de negocio: el tamaño de página está acotado
+        int limite = filtro.getLimite() <= 0 ? LIMITE_POR_DEFECTO : Math.min(filtro.getLimite(), LIMITE_MAXIMO);
+        for (String campo : filtro.getCampos()) {
+            if (!FiltroPaciente.COLUMNAS.contains(campo)) {
+                throw new HospitalException("Campo no permitido: " + campo);
+            }
+        }
+        return limite;
+    }
+
+    /**
+     * Arma la página a partir de hasta limite + 1 filas leídas.
+     */
+    static PaginaPacientes pagina(List<Paciente> filas, int limite) {
+        Integer siguiente = null;
+        if (filas.size() > limite) {
+            filas = filas.subList(0, limite);
+            siguiente = filas.get(limite - 1).getId();
+        }
+        return new PaginaPacientes(filas, siguiente);
+    }
+
+    /**
+     * Lee la versión de la tabla de pacientes. Se debe leer antes que los datos:
+     * así los datos entregados nunca son más antiguos que la versión informada.
+     */
+    @Override
+    public long versionPacientes() {
+        try {
+            return repositorio(proveedor.obtenerLectura()).versionTabla();
+        } catch (SQLException e) {
+            throw new HospitalException("Error al leer la versión de pacientes", e);
+        }
+    }
+
+    /**
+     * Busca pacientes eligiendo el índice según el texto:
+     * - solo dígitos: prefijo de cédula (la coincidencia exacta queda primera).
+     * - contiene '@': prefijo de correo.
+     * - otro texto: palabras del nombre o correo con FULLTEXT, por relevancia;
+     *   si todas las palabras son muy cortas para el índice, prefijo de nombre.
+     * @param q texto ingresado por el usuario.
+     * @param limite cantidad máxima de resultados.
+     * @return pacientes ordenados por relevancia.
+     */
+    @Override
+    public List<Paciente> buscar(String q, int limite) {
+        String texto = q == null ? "" : q.trim();
+        // Regla de negocio: el texto es obligatorio y de largo acotado
+        if (texto.isEmpty()) {
+            throw new HospitalException("Debe indicar el texto a buscar");
+        }
+        if (texto.length() > LARGO_MAXIMO_BUSQUEDA) {
+            throw new HospitalException("El texto a buscar es demasiado largo");
+        }
+        int tope = limite <= 0 ? BUSQUEDA_POR_DEFECTO : Math.min(limite, BUSQUEDA_MAXIMA);
+        try {
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtenerLectura());
+            if (soloDigitos(texto)) {
+                // una cédula tiene 10 dígitos: un texto más largo no puede coincidir
+                return texto.length() > 10 ? new ArrayList<>() : pacienteRepository.buscarPorPrefijo("cedula", texto, tope);
+            }
+            if (texto.indexOf('@') >= 0) {
+                return pacienteRepository.buscarPorPrefijo("correo", texto, tope);
+            }
+            String expresion = expresionTexto(texto);
+            if (expresion == null) {
+                return pacienteRepository.buscarPorPrefijo("nombre", texto, tope);
+            }
+            return pacienteRepository.buscarTexto(expresion, tope);
+        } catch (SQLException e) {
+            throw new HospitalException("Error al buscar pacientes", e);
+        }
+    }
+
+    private static boolean soloDigitos(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Convierte el texto en una expresión FULLTEXT en modo booleano donde cada
+     * palabra es obligatoria y se busca como prefijo: "maria lop" → "+maria* +lop*".
+     * Los signos (incluidos los operadores del modo booleano) se tratan como
+     * separadores. Devuelve null si no queda ninguna palabra indexable.
+     */
+    private static String expresionTexto(String texto) {
+        StringBuilder expresion = new StringBuilder();
+        for (String palabra : texto.split("[^\\p{L}\\p{N}]+")) {
+            if (palabra.length() < LARGO_MINIMO_PALABRA) {
+                continue;
+            }
+            if (expresion.length() > 0) expresion.append(' ');
+            expresion.append('+').append(palabra).append('*');
+        }
+        return expresion.length() == 0 ? null : expresion.toString();
+    }
+
+    /**
+     * Recorre la tabla completa con un cursor de solo avance.
+     * @param procesador recibe cada paciente en cuanto se lee.
+     */
+    @Override
+    public void exportar(ProcesadorPaciente procesador) throws IOException {
+        quitarPlazo();
+        try {
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtenerLectura());
+            pacienteRepository.recorrer(procesador, BLOQUE_EXPORTACION);
+        } catch (SQLException e) {
+            throw new HospitalException("Error al exportar pacientes", e);
+        }
+    }
+
     /**
      * Guarda un nuevo paciente en el sistema.
      * Incluye la validación obligatoria de cédula antes de persistir.
@@ -61,28 +271,239 @@ public class PacienteServiceImpl implements PacienteService {
             throw new HospitalException("Cedula ingresada invalida");
         }
         try {
-            PacienteRepository pacienteRepository = new PacienteRepository(conn);
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtener());
             pacienteRepository.guardar(p);
+            // con el id generado ya conocido, la fila entra a la caché tras el commit
+            Paciente guardado = new Paciente(p.getId(), p.getNombre(), p.getCedula(), p.getCorreo(),
+                    p.getEdad(), p.getDireccion(), p.isActivo());
+            Transacciones.alConfirmar(proveedor.obtener(), () -> CachePacientes.getInstancia().guardarConfirmado(guardado));
+            registrarCambios(EventoPaciente.Tipo.CREADO, List.of(guardado));
         } catch (SQLException e) {
+            if (esCedulaDuplicada(e)) {
+                throw new CedulaDuplicadaException("Ya existe un paciente con la cedula " + p.getCedula());
+            }
             throw new HospitalException("Error al guardar en base de datos", e);
         }
     }
 
+    /**
+     * Carga masiva: valida la cédula de cada fila, agrupa las válidas en lotes y
+     * los inserta con executeBatch, haciendo commit al final de cada lote.
+     * Si un lote falla se deshace y sus filas se reintentan una por una para
+     * identificar exactamente cuáles son las que provocan el error.
+     * @param filas pacientes a registrar.
+     * @param tamanoLote filas por lote.
+     * @return resumen de la carga.
+     */
+    @Override
+    public ResultadoCargaMasiva cargarMasivo(Iterator<Paciente> filas, int tamanoLote) {
+        quitarPlazo();
+        ResultadoCargaMasiva resultado = new ResultadoCargaMasiva();
+        List<Paciente> lote = new ArrayList<>(tamanoLote);
+        List<Integer> indices = new ArrayList<>(tamanoLote);
+        int indice = 0;
+        try {
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtener());
+            while (filas.hasNext()) {
+                int actual = indice++;
+                Paciente p;
+                try {
+                    p = filas.next();
+                } catch (HospitalException e) {
+                    resultado.rechazar(actual, e.getMessage());
+                    continue;
+                }
+                // Regla de negocio: la cédula debe ser válida
+                if (p == null || !ValidadorCedula.esCedulaValida(p.getCedula())) {
+                    resultado.rechazar(actual, "Cedula ingresada invalida");
+                    continue;
+                }
+                lote.add(p);
+                indices.add(actual);
+                if (lote.size() >= tamanoLote) {
+                    guardarLote(pacienteRepository, lote, indices, resultado);
+                }
+            }
+            guardarLote(pacienteRepository, lote, indices, resultado);
+        } catch (SQLException e) {
+            throw new HospitalException("Error en la carga masiva", e);
+        }
+        resultado.setProcesados(indice);
+        return resultado;
+    }
+
+    /**
+     * Inserta y confirma un lote. Ante un error se deshace el lote y se insertan
+     * las filas individualmente para aislar las que fallan.
+     */
+    private void guardarLote(PacienteRepository pacienteRepository, List<Paciente> lote,
+                             List<Integer> indices, ResultadoCargaMasiva resultado) throws SQLException {
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            pacienteRepository.guardarLote(lote);
+            registrarCambios(EventoPaciente.Tipo.CREADO, List.copyOf(lote));
+            confirmar();
+            resultado.setAceptados(resultado.getAceptados() + lote.size());
+        } catch (SQLException e) {
+            deshacer();
+            for (int i = 0; i < lote.size(); i++) {
+                try {
+                    pacienteRepository.guardar(lote.get(i));
+                    registrarCambios(EventoPaciente.Tipo.CREADO, List.of(lote.get(i)));
+                    confirmar();
+                    resultado.setAceptados(resultado.getAceptados() + 1);
+                } catch (SQLException ex) {
+                    deshacer();
+                    resultado.rechazar(indices.get(i), esCedulaDuplicada(ex)
+                            ? "Ya existe un paciente con la cedula " + lote.get(i).getCedula()
+                            : "Error al guardar en base de datos: " + ex.getMessage());
+                }
+            }
+        }
+        lote.clear();
+        indices.clear();
+    }
+
+    /**
+     * Devuelve el repositorio para la conexión indicada, reutilizando el
+     * anterior si la conexión no cambió.
+     */
+    private PacienteRepository repositorio(Connection conn) {
+        if (repositorio == null || repositorio.getConexion() != conn) {
+            repositorio = new PacienteRepository(conn, proveedor.getPlazo());
+        }
+        return repositorio;
+    }
+
+    /**
+     * Indica si el error es una violación del índice único de la cédula
+     * (1062 en MySQL; 23505 es el SQLState estándar de otros motores).
+     */
+    private static boolean esCedulaDuplicada(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
+    /**
+     * Las operaciones masivas (exportación, carga y cambio de estado masivo)
+     * duran lo que dure su volumen y confirman por bloques: no usan el plazo
+     * de la solicitud. Su concurrencia ya la limita ControlAdmisionFilter.
+     */
+    private void quitarPlazo() {
+        proveedor.establecerPlazo(0);
+    }
+
+    /** Confirma la transacción actual si la conexión es manual. */
+    private void confirmar() throws SQLException {
+        proveedor.confirmar();
+    }
+
+    /** Deshace la transacción actual si la conexión es manual. */
+    private void deshacer() throws SQLException {
+        proveedor.deshacer();
+    }
+
     /**
      * Busca un paciente por su ID.
+     * Primero consulta la caché; solo si no está se va a la base de datos.
      * @param id identificador del paciente.
      * @return paciente encontrado o null si no existe.
      */
     @Override
     public Paciente buscarPorId(int id) {
+        CachePacientes cache = CachePacientes.getInstancia();
+        Paciente enCache = cache.obtener(id);
+        if (enCache != null) {
+            return enCache;
+        }
         try {
-            PacienteRepository pacienteRepository = new PacienteRepository(conn);
-            return pacienteRepository.buscarPorId(id);
+            long marca = cache.marca(id);
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtenerLectura());
+            Paciente p = pacienteRepository.buscarPorId(id);
+            cache.guardar(p, marca);
+            return p;
         }catch (SQLException e) {
             throw new HospitalException("Error al buscar paciente", e);
         }
     }
 
+    /**
+     * Busca varios pacientes por id. Los que están en la caché no llegan a la
+     * base de datos; el resto se lee en bloques de hospital.lookup.tamanoBloque
+     * ids (un WHERE id IN por bloque) y se guarda en la caché.
+     * @param ids ids a buscar, como máximo hospital.lookup.maximoIds distintos.
+     * @return pacientes en el orden pedido y los ids que no existen.
+     */
+    @Override
+    public ResultadoConsultaIds buscarPorIds(List<Integer> ids) {
+        Set<Integer> unicos = idsUnicos(ids);
+        CachePacientes cache = CachePacientes.getInstancia();
+        Map<Integer, Paciente> encontrados = new HashMap<>();
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer id : unicos) {
+            Paciente enCache = cache.obtener(id);
+            if (enCache != null) {
+                encontrados.put(id, enCache);
+            } else {
+                pendientes.add(id);
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            try {
+                PacienteRepository pacienteRepository = repositorio(proveedor.obtenerLectura());
+                for (int inicio = 0; inicio < pendientes.size(); inicio += LOOKUP_BLOQUE) {
+                    List<Integer> bloque = pendientes.subList(inicio, Math.min(inicio + LOOKUP_BLOQUE, pendientes.size()));
+                    Map<Integer, Long> marcas = new HashMap<>();
+                    for (Integer id : bloque) {
+                        marcas.put(id, cache.marca(id));
+                    }
+                    for (Paciente p : pacienteRepository.buscarPorIds(bloque)) {
+                        cache.guardar(p, marcas.get(p.getId()));
+                        encontrados.put(p.getId(), p);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new HospitalException("Error al buscar pacientes", e);
+            }
+        }
+        return resultado(unicos, encontrados);
+    }
+
+    /**
+     * Valida los ids pedidos y quita los repetidos conservando el orden.
+     */
+    static Set<Integer> idsUnicos(List<Integer> ids) {
+        // Regla de negocio: la cantidad de ids está acotada
+        if (ids == null || ids.isEmpty()) {
+            throw new HospitalException("Debe indicar al menos un id");
+        }
+        if (ids.contains(null)) {
+            throw new HospitalException("Los ids deben ser números enteros");
+        }
+        Set<Integer> unicos = new LinkedHashSet<>(ids);
+        if (unicos.size() > LOOKUP_MAXIMO) {
+            throw new HospitalException("Se pueden consultar como máximo " + LOOKUP_MAXIMO + " ids");
+        }
+        return unicos;
+    }
+
+    /**
+     * Pacientes encontrados en el orden pedido, y los ids que no existen.
+     */
+    static ResultadoConsultaIds resultado(Set<Integer> unicos, Map<Integer, Paciente> encontrados) {
+        ResultadoConsultaIds resultado = new ResultadoConsultaIds();
+        for (Integer id : unicos) {
+            Paciente p = encontrados.get(id);
+            if (p != null) {
+                resultado.getPacientes().put(String.valueOf(id), p);
+            } else {
+                resultado.getFaltantes().add(id);
+            }
+        }
+        return resultado;
+    }
+
     /**
      * Actualiza la información de un paciente existente.
      * También valida la cédula antes de ejecutar la acción.
@@ -91,18 +512,72 @@ public class PacienteServiceImpl implements PacienteService {
      */
     @Override
     public Paciente actualizar(Paciente p) {
+        return actualizar(p, null);
+    }
+
+    /**
+     * Actualiza la información de un paciente si su versión actual es una de
+     * las aceptadas. La fila se lee con FOR UPDATE, por lo que nadie puede
+     * modificarla entre la comparación y el UPDATE.
+     * @param p paciente con datos actualizados.
+     * @param versionesAceptadas etiquetas aceptadas (If-Match) o null sin condición.
+     * @return paciente modificado, o null si no existe.
+     */
+    @Override
+    public Paciente actualizar(Paciente p, Set<String> versionesAceptadas) {
         // Validación previa obligatoria
         if (!ValidadorCedula.esCedulaValida(p.getCedula())) {
             throw new HospitalException("Cedula ingresada invalida");
         }
         try{
-            PacienteRepository pacienteRepository = new PacienteRepository(conn);
-            return pacienteRepository.actualizar(p);
+            // el PUT no cambia el estado, pero la versión (If-Match) y el evento sí lo incluyen
+            ColaEstados.esperar(p.getId());
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtener());
+            Paciente actual = null;
+            if (versionesAceptadas != null) {
+                actual = verificarVersion(pacienteRepository, p.getId(), versionesAceptadas);
+                if (actual == null) {
+                    return null;
+                }
+            }
+            Paciente actualizado = pacienteRepository.actualizar(p);
+            invalidarCache(p.getId());
+            if (actualizado != null) {
+                registrarActualizacion(pacienteRepository, p, actual);
+            }
+            return actualizado;
         } catch (SQLException e) {
+            if (esCedulaDuplicada(e)) {
+                throw new CedulaDuplicadaException("Ya existe otro paciente con la cedula " + p.getCedula());
+            }
             throw new HospitalException("Error al actualizar paciente", e);
         }
     }
 
+    /**
+     * Publica la modificación. El cuerpo del PUT no trae el estado: se toma de
+     * la fila ya leída para If-Match; sin ella, la fila se vuelve a leer solo
+     * si alguien necesita los datos completos (outbox habilitado, oyentes o
+     * suscriptores del bus). Si no, el evento sale sin datos ni estado y quien
+     * lo lea después debe volver a consultar el paciente.
+     * @param actual fila leída antes del cambio, o null.
+     */
+    private void registrarActualizacion(PacienteRepository pacienteRepository, Paciente p, Paciente actual)
+            throws SQLException {
+        Paciente fila = null;
+        if (actual != null) {
+            fila = new Paciente(p.getId(), p.getNombre(), p.getCedula(), p.getCorreo(), p.getEdad(),
+                    p.getDireccion(), actual.isActivo());
+        } else if (DespachadorOutbox.isHabilitado() || BusEventosPaciente.getInstancia().tieneConsumidores()) {
+            fila = pacienteRepository.buscarPorId(p.getId());
+        }
+        if (fila != null) {
+            registrarCambios(EventoPaciente.Tipo.ACTUALIZADO, List.of(fila));
+        } else {
+            registrarCambio(EventoPaciente.Tipo.ACTUALIZADO, p.getId(), null);
+        }
+    }
+
     /**
      * Cambia el estado activo/inactivo de un paciente.
      * ara "eliminación lógica" sin perder el registro.
@@ -111,11 +586,286 @@ public class PacienteServiceImpl implements PacienteService {
      */
     @Override
     public void cambiarEstado(int id, boolean activo) {
+        cambiarEstado(id, activo, null);
+    }
+
+    /**
+     * Cambia el estado si la versión actual del paciente es una de las aceptadas.
+     * @param versionesAceptadas etiquetas aceptadas (If-Match) o null sin condición.
+     * @return false si el paciente no existe (con o sin versión pedida), igual
+     *         que la confirmación de la cola de estados diferidos.
+     */
+    @Override
+    public boolean cambiarEstado(int id, boolean activo, Set<String> versionesAceptadas) {
         try{
-            PacienteRepository pacienteRepository = new PacienteRepository(conn);
-            pacienteRepository.actualizarEstado(id, activo);
+            // un cambio encolado antes no debe aplicarse después de este
+            ColaEstados.esperar(id);
+            PacienteRepository pacienteRepository = repositorio(proveedor.obtener());
+            if (versionesAceptadas != null && verificarVersion(pacienteRepository, id, versionesAceptadas) == null) {
+                return false;
+            }
+            // filas encontradas, no cambiadas: un paciente que ya tenía ese estado cuenta
+            boolean existe = pacienteRepository.actualizarEstado(id, activo) > 0;
+            if (existe) {
+                registrarCambio(EventoPaciente.Tipo.ESTADO, id, activo);
+            }
+            invalidarCache(id);
+            return existe;
         }catch (SQLException e) {
             throw new HospitalException("Error al cambiar estado", e);
         }
     }
+
+    /**
+     * Cambio de estado masivo. Cada bloque de hospital.estadoMasivo.tamanoBloque
+     * pacientes es una transacción corta: se bloquean con SELECT ... FOR UPDATE
+     * los que todavía no están en el estado destino, se cambian con un UPDATE
+     * ... WHERE id IN y se confirma. Así los bloqueos y el undo log no crecen
+     * con el tamaño de la tabla, y los demás pueden escribir entre bloques.
+     * Las transacciones van en READ COMMITTED: solo quedan bloqueadas las filas
+     * que se cambian, sin los registros recorridos que no cumplen el filtro ni
+     * los huecos (que en REPEATABLE READ impedirían insertar pacientes).
+     * - Con lista de ids: se ordenan y se recorren por tramos.
+     * - Con filtro: se avanza por la llave primaria desde filtro.despuesDe en
+     *   tramos de hasta hospital.estadoMasivo.rangoIds ids, hasta el mayor id
+     *   al empezar (los pacientes creados después no se incluyen); el filtro
+     *   debe tener al menos un criterio (no se cambia toda la tabla).
+     * Si un bloque falla se deshace solo ese bloque y se detiene el proceso.
+     * Antes se espera a que la cola de estados diferidos aplique los cambios
+     * encolados de esos pacientes, para que ninguno pise el cambio masivo.
+     */
+    @Override
+    public ResultadoCambioEstado cambiarEstadoMasivo(SolicitudCambioEstado solicitud) {
+        // Regla de negocio: estado obligatorio y exactamente una forma de elegir pacientes
+        if (solicitud == null || solicitud.getActivo() == null) {
+            throw new HospitalException("Debe indicar el estado (activo)");
+        }
+        boolean porIds = solicitud.getIds() != null;
+        if (porIds == (solicitud.getFiltro() != null)) {
+            throw new HospitalException("Debe indicar ids o filtro, no ambos");
+        }
+        List<Integer> ids = null;
+        if (porIds) {
+            if (solicitud.getIds().contains(null)) {
+                throw new HospitalException("Los ids deben ser números enteros");
+            }
+            ids = new ArrayList<>(new TreeSet<>(solicitud.getIds()));
+            if (ids.size() > ESTADO_MASIVO_MAXIMO_IDS) {
+                throw new HospitalException("Se pueden cambiar como máximo " + ESTADO_MASIVO_MAXIMO_IDS
+                        + " ids por solicitud; use un filtro");
+            }
+        } else {
+            FiltroPaciente filtro = solicitud.getFiltro();
+            if (filtro.getActivo() == null && filtro.getEdadMin() == null && filtro.getEdadMax() == null
+                    && (filtro.getPrefijoNombre() == null || filtro.getPrefijoNombre().isBlank())) {
+                throw new HospitalException("El filtro debe tener al menos un criterio");
+            }
+        }
+
+        quitarPlazo();
+        boolean activo = solicitud.getActivo();
+        ResultadoCambioEstado resultado = new ResultadoCambioEstado();
+        try {
+            // los cambios encolados antes se aplican primero (por filtro, todos)
+            ColaEstados.esperar(ids);
+            Connection conn = proveedor.obtener();
+            int aislamiento = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            try {
+                PacienteRepository pacienteRepository = repositorio(conn);
+                if (porIds) {
+                    cambiarPorIds(pacienteRepository, ids, activo, resultado);
+                } else {
+                    cambiarPorFiltro(pacienteRepository, solicitud.getFiltro(), activo, resultado);
+                }
+            } catch (SQLException e) {
+                // falló la lectura de un bloque: se deshace solo ese bloque
+                try {
+                    deshacer();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
+                resultado.setError("Error al cambiar estado: " + e.getMessage());
+            } finally {
+                // el pool no restablece el aislamiento al devolver la conexión
+                conn.setTransactionIsolation(aislamiento);
+            }
+        } catch (SQLException e) {
+            resultado.setError("Error al cambiar estado: " + e.getMessage());
+        }
+        return resultado;
+    }
+
+    private void cambiarPorIds(PacienteRepository pacienteRepository, List<Integer> ids, boolean activo,
+                               ResultadoCambioEstado resultado) throws SQLException {
+        for (int inicio = 0; inicio < ids.size(); inicio += ESTADO_MASIVO_BLOQUE) {
+            List<Integer> bloque = ids.subList(inicio, Math.min(inicio + ESTADO_MASIVO_BLOQUE, ids.size()));
+            List<Integer> bloqueados = pacienteRepository.bloquearParaEstado(bloque, activo);
+            if (!cambiarBloque(pacienteRepository, bloqueados, activo, bloque.get(0),
+                    bloque.get(bloque.size() - 1), resultado)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recorre la llave primaria en tramos: cada bloque bloquea como mucho
+     * ESTADO_MASIVO_BLOQUE pacientes dentro de los próximos ESTADO_MASIVO_RANGO
+     * ids. Un tramo sin pacientes que cambiar se confirma vacío y se sigue.
+     */
+    private void cambiarPorFiltro(PacienteRepository pacienteRepository, FiltroPaciente filtro, boolean activo,
+                                  ResultadoCambioEstado resultado) throws SQLException {
+        int maximoId = pacienteRepository.maximoId();
+        confirmar();
+        while (filtro.getDespuesDe() < maximoId) {
+            int desde = filtro.getDespuesDe() + 1;
+            int tope = (int) Math.min(maximoId, (long) filtro.getDespuesDe() + ESTADO_MASIVO_RANGO);
+            List<Integer> bloqueados = pacienteRepository.bloquearParaEstado(filtro, activo, tope,
+                    ESTADO_MASIVO_BLOQUE);
+            // con el bloque lleno puede quedar algo antes del tope: se sigue desde el último
+            int hasta = bloqueados.size() == ESTADO_MASIVO_BLOQUE ? bloqueados.get(bloqueados.size() - 1) : tope;
+            if (bloqueados.isEmpty()) {
+                confirmar();
+            } else if (!cambiarBloque(pacienteRepository, bloqueados, activo, desde, hasta, resultado)) {
+                return;
+            }
+            filtro.setDespuesDe(hasta);
+        }
+    }
+
+    /**
+     * Cambia y confirma un bloque ya bloqueado.
+     * @return false si falló (el bloque se deshace y el error queda en el resultado).
+     */
+    private boolean cambiarBloque(PacienteRepository pacienteRepository, List<Integer> bloqueados, boolean activo,
+                                  int desde, int hasta, ResultadoCambioEstado resultado) throws SQLException {
+        try {
+            int afectados = pacienteRepository.actualizarEstadoLote(bloqueados, activo);
+            registrarEstados(bloqueados, activo);
+            confirmar();
+            resultado.agregarBloque(desde, hasta, afectados);
+            return true;
+        } catch (SQLException e) {
+            deshacer();
+            resultado.setError("Error al cambiar estado de los ids " + desde + " a " + hasta + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Encola el cambio en la cola de estados diferidos, si está habilitada.
+     * No toma conexión: el cambio se aplica en el lote siguiente.
+     */
+    @Override
+    public CompletableFuture<Boolean> encolarEstado(int id, boolean activo) {
+        return ColaEstados.encolar(id, activo);
+    }
+
+    /**
+     * Bloquea la fila del paciente y compara su versión con las aceptadas.
+     * @return la fila actual, o null si el paciente no existe.
+     * @throws PrecondicionFallidaException si la versión actual no es aceptada.
+     */
+    private Paciente verificarVersion(PacienteRepository pacienteRepository, int id,
+                                      Set<String> versionesAceptadas) throws SQLException {
+        Paciente actual = pacienteRepository.buscarPorIdParaActualizar(id);
+        if (actual == null) {
+            return null;
+        }
+        if (!versionesAceptadas.contains("*")
+                && !versionesAceptadas.contains(VersionPaciente.etiqueta(actual))) {
+            throw new PrecondicionFallidaException("El paciente fue modificado por otra solicitud");
+        }
+        return actual;
+    }
+
+    /**
+     * Conexión al primario de una transacción que cambia pacientes. La primera
+     * vez en la transacción incrementa la versión de la tabla (ETag del
+     * listado), dentro de la misma transacción.
+     */
+    private Connection conexionEscritura() throws SQLException {
+        Connection conn = proveedor.obtener();
+        if (proveedor.marcarEscritura()) {
+            repositorio(conn).incrementarVersion();
+        }
+        return conn;
+    }
+
+    /**
+     * Registra el cambio de cada paciente: en el outbox dentro de la transacción
+     * actual (si está habilitado) y en el bus de eventos cuando se confirme.
+     * También marca la transacción como escritura (afinidad de lectura propia). Si
+     * la transacción se deshace, el outbox también se deshace y no se publica nada.
+     */
+    private void registrarCambios(EventoPaciente.Tipo tipo, List<Paciente> pacientes) throws SQLException {
+        Connection conn = conexionEscritura();
+        if (DespachadorOutbox.isHabilitado()) {
+            OutboxRepository outbox = new OutboxRepository(conn, proveedor.getPlazo());
+            if (pacientes.size() == 1) {
+                Paciente p = pacientes.get(0);
+                outbox.registrar(tipo, p.getId(), p.isActivo(), p);
+            } else {
+                outbox.registrarLote(tipo, pacientes);
+            }
+        }
+        Transacciones.alConfirmar(conn, () -> {
+            BusEventosPaciente bus = BusEventosPaciente.getInstancia();
+            for (Paciente p : pacientes) {
+                bus.publicar(tipo, p.getId(), p.isActivo(), p);
+            }
+            DespachadorOutbox.avisar();
+        });
+    }
+
+    /**
+     * Igual que registrarCambios, para un cambio sin datos del paciente (estado,
+     * o modificación sin consumidores con activo null).
+     */
+    private void registrarCambio(EventoPaciente.Tipo tipo, int id, Boolean activo) throws SQLException {
+        Connection conn = conexionEscritura();
+        if (DespachadorOutbox.isHabilitado()) {
+            new OutboxRepository(conn, proveedor.getPlazo()).registrar(tipo, id, activo, null);
+        }
+        Transacciones.alConfirmar(conn, () -> {
+            BusEventosPaciente.getInstancia().publicar(tipo, id, activo, null);
+            DespachadorOutbox.avisar();
+        });
+    }
+
+    /**
+     * Igual que registrarCambio, para el mismo cambio de estado de varios
+     * pacientes (cambio masivo). También invalida la caché de cada uno.
+     */
+    private void registrarEstados(List<Integer> ids, boolean activo) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Connection conn = conexionEscritura();
+        if (DespachadorOutbox.isHabilitado()) {
+            new OutboxRepository(conn, proveedor.getPlazo()).registrarEstados(ids, activo);
+        }
+        CachePacientes cache = CachePacientes.getInstancia();
+        for (Integer id : ids) {
+            cache.invalidar(id);
+        }
+        Transacciones.alConfirmar(conn, () -> {
+            BusEventosPaciente bus = BusEventosPaciente.getInstancia();
+            for (Integer id : ids) {
+                cache.invalidar(id);
+                bus.publicar(EventoPaciente.Tipo.ESTADO, id, activo, null);
+            }
+            DespachadorOutbox.avisar();
+        });
+    }
+
+    /**
+     * Invalida la entrada de la caché ahora y otra vez después del commit, para
+     * que ninguna lectura concurrente deje en caché el valor anterior.
+     */
+    private void invalidarCache(int id) throws SQLException {
+        CachePacientes cache = CachePacientes.getInstancia();
+        cache.invalidar(id);
+        Transacciones.alConfirmar(proveedor.obtener(), () -> cache.invalidar(id));
+    }
 }
@@ -0,0 +1,97 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Implementación del servicio de pacientes que responde las lecturas desde el
+ * modelo en memoria (ModeloPacientes) en lugar de MySQL. Se usa con
+ * hospital.servicio.modo=memoria.
+ *
+ * - Listado, paginación, versión (ETag) y búsqueda por id(s): desde memoria,
+ *   sin tomar una conexión del pool.
+ * - Altas, modificaciones y cambios de estado: igual que PacienteServiceImpl
+ *   (las reglas y la transacción no cambian); el modelo se actualiza por el
+ *   bus de eventos después del commit.
+ * - Búsqueda de texto y exportación: siguen en MySQL (índices FULLTEXT y
+ *   lectura consistente de la tabla completa).
+ *
+ * Un id que no está en el modelo se busca en MySQL (puede ser un alta de otra
+ * instancia que la reconciliación todavía no trajo). Mientras el modelo no
+ * termina su primera carga, todas las lecturas van a MySQL.
+ */
+import Model.FiltroPaciente;
+import Model.Paciente;
+import Model.PaginaPacientes;
+import Model.ResultadoConsultaIds;
+import Util.ProveedorConexion;
+import Util.TablaPacientes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PacienteServiceMemoria extends PacienteServiceImpl {
+
+    // Tabla leída una sola vez por solicitud, para que versión y datos salgan del mismo lugar
+    private final TablaPacientes tabla;
+
+    public PacienteServiceMemoria(ProveedorConexion proveedor) {
+        super(proveedor);
+        this.tabla = ModeloPacientes.tabla();
+    }
+
+    @Override
+    public List<Paciente> listar() {
+        return tabla == null ? super.listar() : tabla.todos();
+    }
+
+    @Override
+    public PaginaPacientes listarPagina(FiltroPaciente filtro) {
+        if (tabla == null) {
+            return super.listarPagina(filtro);
+        }
+        int limite = limitePagina(filtro);
+        return pagina(tabla.pagina(filtro, limite + 1), limite);
+    }
+
+    /**
+     * Versión del modelo: cambia con cada cambio aplicado en memoria.
+     */
+    @Override
+    public long versionPacientes() {
+        return tabla == null ? super.versionPacientes() : tabla.getVersion();
+    }
+
+    @Override
+    public Paciente buscarPorId(int id) {
+        Paciente p = tabla == null ? null : tabla.obtener(id);
+        return p != null ? p : super.buscarPorId(id);
+    }
+
+    @Override
+    public ResultadoConsultaIds buscarPorIds(List<Integer> ids) {
+        if (tabla == null) {
+            return super.buscarPorIds(ids);
+        }
+        Set<Integer> unicos = idsUnicos(ids);
+        Map<Integer, Paciente> encontrados = new HashMap<>();
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer id : unicos) {
+            Paciente p = tabla.obtener(id);
+            if (p != null) {
+                encontrados.put(id, p);
+            } else {
+                pendientes.add(id);
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            for (Paciente p : super.buscarPorIds(pendientes).getPacientes().values()) {
+                encontrados.put(p.getId(), p);
+            }
+        }
+        return resultado(unicos, encontrados);
+    }
+}
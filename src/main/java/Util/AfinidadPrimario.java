@@ -0,0 +1,62 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Garantiza "leer lo que uno mismo escribió" cuando las lecturas se envían a
+ * réplicas. Después de que un cliente confirma una escritura en el primario,
+ * sus lecturas se dirigen también al primario durante una ventana corta
+ * (hospital.db.ventanaLecturaPropiaMs), tiempo suficiente para que las réplicas
+ * alcancen el cambio.
+ *
+ * El cliente se identifica con la cabecera X-Cliente-Id o, si no la envía,
+ * con su dirección IP.
+ */
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class AfinidadPrimario {
+
+    private static final long VENTANA_MS = Configuracion.largo("db.ventanaLecturaPropiaMs", 2_000);
+    // Por encima de este tamaño se purgan las entradas vencidas
+    private static final int LIMITE_ENTRADAS = 10_000;
+
+    private static final Map<String, Long> ULTIMA_ESCRITURA = new ConcurrentHashMap<>();
+
+    private AfinidadPrimario() {
+    }
+
+    /**
+     * Registra que el cliente acaba de confirmar una escritura.
+     */
+    public static void registrarEscritura(String cliente) {
+        if (cliente == null || !Conexion.hayReplicas()) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        ULTIMA_ESCRITURA.put(cliente, ahora);
+        if (ULTIMA_ESCRITURA.size() > LIMITE_ENTRADAS) {
+            ULTIMA_ESCRITURA.values().removeIf(t -> ahora - t > VENTANA_MS);
+        }
+    }
+
+    /**
+     * Indica si las lecturas del cliente deben ir al primario porque escribió
+     * hace menos de la ventana configurada.
+     */
+    public static boolean debeLeerDelPrimario(String cliente) {
+        if (cliente == null) {
+            return false;
+        }
+        Long ultima = ULTIMA_ESCRITURA.get(cliente);
+        return ultima != null && System.currentTimeMillis() - ultima <= VENTANA_MS;
+    }
+
+    /**
+     * Duración de la ventana de lectura propia en milisegundos.
+     */
+    public static long getVentanaMs() {
+        return VENTANA_MS;
+    }
+}
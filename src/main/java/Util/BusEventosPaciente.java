@@ -0,0 +1,243 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Bus de eventos en memoria con los cambios confirmados de pacientes. El
+ * servicio publica después del commit (Transacciones.alConfirmar) y el flujo
+ * de cambios (GET /pacientes/changes) lee desde aquí.
+ *
+ * Los eventos se guardan en un anillo de tamaño fijo (hospital.eventos.capacidad,
+ * 4096 por defecto) con una secuencia creciente. Publicar nunca espera a los
+ * suscriptores: escribe en el anillo y avisa a quienes esperan. Cada
+ * suscriptor lleva su propio cursor y lee a su ritmo; si se atrasa más que la
+ * capacidad del anillo, sus eventos ya fueron sobrescritos y debe
+ * resincronizarse (volver a leer el listado y seguir desde el final).
+ *
+ * La secuencia se reinicia con la aplicación, por eso los ids que se entregan
+ * a los clientes llevan el identificador de la instancia: un Last-Event-ID de
+ * otra instancia (o de antes de un reinicio) también obliga a resincronizar.
+ * Los eventos solo cubren los cambios hechos por esta instancia.
+ *
+ * Además de los suscriptores con cursor, hay oyentes que reciben cada evento
+ * en el mismo hilo que lo publica (el modelo de lectura en memoria los usa
+ * para quedar al día antes de que se responda la solicitud).
+ */
+import Model.EventoPaciente;
+import Model.Paciente;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class BusEventosPaciente {
+
+    private static final Logger LOG = Logger.getLogger(BusEventosPaciente.class.getName());
+
+    private static final BusEventosPaciente INSTANCIA =
+            new BusEventosPaciente(Configuracion.entero("eventos.capacidad", 4096));
+
+    private static final LongAdder PUBLICADOS = Metricas.contador("hospital_eventos_publicados_total");
+
+    private final AtomicReferenceArray<EventoPaciente> anillo;
+    private final int mascara;
+    // Identificador de esta instancia, parte de los ids entregados a los clientes
+    private final String instancia = Long.toString(System.currentTimeMillis(), 36);
+
+    // Candado solo para asignar la secuencia y despertar a los que esperan
+    // (ReentrantLock y no synchronized para no fijar hilos virtuales)
+    private final ReentrantLock candado = new ReentrantLock();
+    private final Condition nuevos = candado.newCondition();
+    private volatile long ultima;   // secuencia del último evento publicado (0 = ninguno)
+    private volatile boolean cerrado;
+    private final List<Consumer<EventoPaciente>> oyentes = new CopyOnWriteArrayList<>();
+    // suscriptores con cursor conectados en este momento (flujo de cambios)
+    private final AtomicInteger lectores = new AtomicInteger();
+
+    /**
+     * @param capacidad eventos retenidos; se redondea a la siguiente potencia de dos.
+     */
+    public BusEventosPaciente(int capacidad) {
+        int tamano = Integer.highestOneBit(Math.max(2, capacidad) - 1) << 1;
+        this.anillo = new AtomicReferenceArray<>(tamano);
+        this.mascara = tamano - 1;
+        Metricas.indicador("hospital_eventos_secuencia", () -> ultima);
+    }
+
+    /**
+     * Bus compartido por toda la aplicación.
+     */
+    public static BusEventosPaciente getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Publica un cambio confirmado. Se debe llamar después del commit.
+     * @param activo estado después del cambio, o null si no se conoce.
+     * @param paciente datos después del cambio (se guarda una copia) o null.
+     */
+    public EventoPaciente publicar(EventoPaciente.Tipo tipo, int idPaciente, Boolean activo, Paciente paciente) {
+        Paciente copia = paciente == null ? null : new Paciente(paciente.getId(), paciente.getNombre(),
+                paciente.getCedula(), paciente.getCorreo(), paciente.getEdad(), paciente.getDireccion(),
+                paciente.isActivo());
+        EventoPaciente evento;
+        candado.lock();
+        try {
+            long secuencia = ultima + 1;
+            evento = new EventoPaciente(secuencia, tipo, idPaciente, activo, copia, System.currentTimeMillis());
+            anillo.set((int) (secuencia & mascara), evento);
+            ultima = secuencia;
+            nuevos.signalAll();
+        } finally {
+            candado.unlock();
+        }
+        PUBLICADOS.increment();
+        for (Consumer<EventoPaciente> oyente : oyentes) {
+            try {
+                oyente.accept(evento);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Un oyente del bus de eventos falló", e);
+            }
+        }
+        return evento;
+    }
+
+    /**
+     * Registra un oyente que recibe cada evento en el hilo que lo publica,
+     * fuera del candado. Debe ser rápido y no bloquear: corre dentro de la
+     * solicitud que hizo el cambio.
+     */
+    public void agregarOyente(Consumer<EventoPaciente> oyente) {
+        oyentes.add(oyente);
+    }
+
+    public void quitarOyente(Consumer<EventoPaciente> oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Registra un suscriptor con cursor conectado; debe cerrarse con cerrarLector().
+     */
+    public void abrirLector() {
+        lectores.incrementAndGet();
+    }
+
+    public void cerrarLector() {
+        lectores.decrementAndGet();
+    }
+
+    /**
+     * Indica si alguien recibe los eventos ahora (oyentes o suscriptores
+     * conectados). Sin consumidores se puede publicar un evento sin los datos
+     * del paciente para evitar leerlos solo para el evento.
+     */
+    public boolean tieneConsumidores() {
+        return !oyentes.isEmpty() || lectores.get() > 0;
+    }
+
+    /**
+     * Lee los eventos posteriores a la secuencia indicada.
+     * @param desde última secuencia que el suscriptor ya recibió.
+     * @param maximo cantidad máxima de eventos a devolver.
+     * @return eventos en orden, vacío si no hay nuevos, o null si alguno ya fue
+     *         sobrescrito en el anillo (el suscriptor debe resincronizarse).
+     */
+    public List<EventoPaciente> leer(long desde, int maximo) {
+        long actual = ultima;
+        if (desde < 0 || actual - desde > anillo.length()) {
+            return null;
+        }
+        long hasta = Math.min(actual, desde + maximo);
+        List<EventoPaciente> eventos = new ArrayList<>((int) Math.max(0, hasta - desde));
+        for (long secuencia = desde + 1; secuencia <= hasta; secuencia++) {
+            EventoPaciente evento = anillo.get((int) (secuencia & mascara));
+            // si la posición ya tiene un evento más nuevo, el que buscábamos se perdió
+            if (evento == null || evento.getSecuencia() != secuencia) {
+                return null;
+            }
+            eventos.add(evento);
+        }
+        return eventos;
+    }
+
+    /**
+     * Espera hasta que haya eventos posteriores a la secuencia indicada.
+     * @return true si hay eventos nuevos; false si venció el plazo o el bus se cerró.
+     */
+    public boolean esperar(long desde, long plazo, TimeUnit unidad) throws InterruptedException {
+        if (ultima > desde) {
+            return true;
+        }
+        long restante = unidad.toNanos(plazo);
+        candado.lock();
+        try {
+            while (ultima <= desde && !cerrado && restante > 0) {
+                restante = nuevos.awaitNanos(restante);
+            }
+        } finally {
+            candado.unlock();
+        }
+        return ultima > desde;
+    }
+
+    /**
+     * Secuencia del último evento publicado.
+     */
+    public long getUltima() {
+        return ultima;
+    }
+
+    /**
+     * Id que se entrega al cliente para la secuencia indicada (instancia-secuencia).
+     */
+    public String id(long secuencia) {
+        return instancia + "-" + secuencia;
+    }
+
+    /**
+     * Convierte el Last-Event-ID de un cliente en una secuencia desde la cual seguir.
+     * @return la secuencia, o -1 si el id no es de esta instancia o no es válido.
+     */
+    public long posicion(String id) {
+        int separador = id == null ? -1 : id.lastIndexOf('-');
+        if (separador < 0 || !id.substring(0, separador).equals(instancia)) {
+            return -1;
+        }
+        try {
+            long secuencia = Long.parseLong(id.substring(separador + 1));
+            return secuencia <= ultima ? secuencia : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Indica si el bus se cerró (la aplicación se está deteniendo).
+     */
+    public boolean isCerrado() {
+        return cerrado;
+    }
+
+    /**
+     * Cierra el bus y despierta a los suscriptores para que terminen.
+     */
+    public void cerrar() {
+        candado.lock();
+        try {
+            cerrado = true;
+            nuevos.signalAll();
+        } finally {
+            candado.unlock();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Caché en memoria de pacientes por id, usada delante de la búsqueda por id
+ * (GET /pacientes/{id}). Es acotada, desaloja por LRU y cada entrada vence
+ * después de un TTL. Está dividida en segmentos para reducir la contención
+ * entre hilos.
+ *
+ * Para no guardar datos viejos, cada segmento lleva un contador de
+ * invalidaciones: quien lee de la base de datos toma una marca antes de la
+ * consulta y solo guarda el resultado si nadie invalidó el segmento mientras
+ * tanto. Cuando hay réplicas de lectura, la invalidación deja además una
+ * "lápida" por unos instantes para que una réplica atrasada no vuelva a
+ * poblar la caché con el valor anterior.
+ *
+ * Configuración: hospital.cache.habilitado, hospital.cache.capacidad,
+ * hospital.cache.ttlMs.
+ */
+import Model.Paciente;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CachePacientes {
+
+    private static final int SEGMENTOS = 16;
+
+    private static final CachePacientes INSTANCIA = new CachePacientes(
+            Configuracion.logico("cache.habilitado", true),
+            Configuracion.entero("cache.capacidad", 10_000),
+            Configuracion.largo("cache.ttlMs", 30_000),
+            Conexion.hayReplicas() ? AfinidadPrimario.getVentanaMs() : 0);
+
+    private final boolean habilitado;
+    private final long ttlMs;
+    // Tiempo durante el cual no se acepta repoblar un id invalidado (retraso de réplicas)
+    private final long bloqueoMs;
+    private final Segmento[] segmentos = new Segmento[SEGMENTOS];
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder expiraciones = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    public CachePacientes(boolean habilitado, int capacidad, long ttlMs, long bloqueoMs) {
+        this.habilitado = habilitado && capacidad > 0;
+        this.ttlMs = ttlMs;
+        this.bloqueoMs = bloqueoMs;
+        int porSegmento = Math.max(1, capacidad / SEGMENTOS);
+        for (int i = 0; i < SEGMENTOS; i++) {
+            segmentos[i] = new Segmento(porSegmento);
+        }
+    }
+
+    /**
+     * Caché compartida por toda la aplicación.
+     */
+    public static CachePacientes getInstancia() {
+        return INSTANCIA;
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Busca un paciente en la caché.
+     * @return una copia del paciente, o null si no está o ya venció.
+     */
+    public Paciente obtener(int id) {
+        if (!habilitado) {
+            return null;
+        }
+        Segmento segmento = segmento(id);
+        Entrada entrada;
+        synchronized (segmento) {
+            entrada = segmento.mapa.get(id);
+            if (entrada != null && entrada.vence < System.currentTimeMillis()) {
+                segmento.mapa.remove(id);
+                if (entrada.paciente != null) {
+                    expiraciones.increment();
+                }
+                entrada = null;
+            }
+        }
+        if (entrada != null && entrada.paciente == null) {
+            entrada = null; // lápida: el id se invalidó hace muy poco
+        }
+        if (entrada == null) {
+            fallos.increment();
+            return null;
+        }
+        aciertos.increment();
+        return copiar(entrada.paciente);
+    }
+
+    /**
+     * Marca que se debe tomar antes de consultar la base de datos y luego pasar
+     * a guardar(paciente, marca).
+     */
+    public long marca(int id) {
+        Segmento segmento = segmento(id);
+        synchronized (segmento) {
+            return segmento.generacion;
+        }
+    }
+
+    /**
+     * Guarda un paciente leído de la base de datos, solo si el segmento no fue
+     * invalidado desde que se tomó la marca.
+     */
+    public void guardar(Paciente p, long marca) {
+        if (!habilitado || p == null) {
+            return;
+        }
+        Segmento segmento = segmento(p.getId());
+        synchronized (segmento) {
+            Entrada actual = segmento.mapa.get(p.getId());
+            boolean bloqueado = actual != null && actual.paciente == null
+                    && actual.vence >= System.currentTimeMillis();
+            if (segmento.generacion == marca && !bloqueado) {
+                segmento.mapa.put(p.getId(), new Entrada(copiar(p), System.currentTimeMillis() + ttlMs));
+            }
+        }
+    }
+
+    /**
+     * Guarda un paciente cuyo estado ya fue confirmado en la base de datos
+     * (por ejemplo, después del commit de un INSERT).
+     */
+    public void guardarConfirmado(Paciente p) {
+        if (!habilitado || p == null) {
+            return;
+        }
+        Segmento segmento = segmento(p.getId());
+        synchronized (segmento) {
+            segmento.mapa.put(p.getId(), new Entrada(copiar(p), System.currentTimeMillis() + ttlMs));
+        }
+    }
+
+    /**
+     * Elimina un paciente de la caché después de modificarlo.
+     */
+    public void invalidar(int id) {
+        if (!habilitado) {
+            return;
+        }
+        Segmento segmento = segmento(id);
+        synchronized (segmento) {
+            segmento.generacion++;
+            if (bloqueoMs > 0) {
+                // lápida: una réplica atrasada podría devolver todavía el valor anterior
+                segmento.mapa.put(id, new Entrada(null, System.currentTimeMillis() + bloqueoMs));
+            } else {
+                segmento.mapa.remove(id);
+            }
+        }
+        invalidaciones.increment();
+    }
+
+    /**
+     * Vacía la caché por completo.
+     */
+    public void limpiar() {
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                segmento.generacion++;
+                segmento.mapa.clear();
+            }
+        }
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    /**
+     * Fotografía de los contadores, lista para serializar a JSON.
+     */
+    public Map<String, Object> estadisticas() {
+        int tamano = 0;
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                tamano += segmento.mapa.size();
+            }
+        }
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("habilitado", habilitado);
+        datos.put("tamano", tamano);
+        datos.put("aciertos", aciertos.sum());
+        datos.put("fallos", fallos.sum());
+        datos.put("desalojos", desalojos.sum());
+        datos.put("expiraciones", expiraciones.sum());
+        datos.put("invalidaciones", invalidaciones.sum());
+        return datos;
+    }
+
+    private Segmento segmento(int id) {
+        // mezcla los bits para repartir ids consecutivos entre segmentos
+        int h = id * 0x9E3779B9;
+        return segmentos[(h >>> 28) & (SEGMENTOS - 1)];
+    }
+
+    private static Paciente copiar(Paciente p) {
+        return new Paciente(p.getId(), p.getNombre(), p.getCedula(), p.getCorreo(),
+                p.getEdad(), p.getDireccion(), p.isActivo());
+    }
+
+    private static final class Entrada {
+        private final Paciente paciente;
+        private final long vence;
+
+        private Entrada(Paciente paciente, long vence) {
+            this.paciente = paciente;
+            this.vence = vence;
+        }
+    }
+
+    /**
+     * Segmento LRU: LinkedHashMap en orden de acceso que desaloja la entrada
+     * menos usada al superar su capacidad.
+     */
+    private final class Segmento {
+        private long generacion;
+        private final LinkedHashMap<Integer, Entrada> mapa;
+
+        private Segmento(int capacidad) {
+            this.mapa = new LinkedHashMap<>(Math.min(capacidad, 1024) * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entrada> mayor) {
+                    if (size() > capacidad) {
+                        desalojos.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
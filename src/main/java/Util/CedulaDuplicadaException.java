@@ -0,0 +1,16 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Excepción lanzada cuando se intenta registrar (o actualizar) un paciente con
+ * una cédula que ya pertenece a otro. La detecta el índice único de la cédula
+ * y la API la traduce a HTTP 409 Conflict.
+ */
+public class CedulaDuplicadaException extends HospitalException {
+
+    public CedulaDuplicadaException(String message) {
+        super(message);
+    }
+}
@@ -9,31 +9,238 @@ package Util;
  * metodo estático para obtener conexiones activas, facilitando el uso desde filtros,
  * repositorios y servicios.
  *
+ * Las conexiones se prestan desde un pool (PoolConexiones) que se crea la primera
+ * vez que se solicita una conexión; al cerrarlas vuelven al pool. Además del
+ * servidor primario se pueden configurar réplicas de solo lectura
+ * (hospital.db.replicas), cada una con su propio pool.
+ *
  * Incluye, además, un metodo main opcional para realizar pruebas rápidas de
  * conectividad sin necesidad de desplegar toda la aplicación.
  */
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class Conexion {
     // URL de conexión al servidor MySQL, incluyendo puerto y base de datos
-    private static String url = "jdbc:mysql://localhost:3307/hospital_db?serverTimezone=UTC";
+    private static String url = Configuracion.texto("db.url",
+            "jdbc:mysql://localhost:3307/hospital_db?serverTimezone=UTC");
     // Credenciales de acceso
-    private static String username = "root";
-    private static String password = "root";
+    private static String username = Configuracion.texto("db.usuario", "root");
+    private static String password = Configuracion.texto("db.clave", "root");
+
+    // Caché de sentencias preparadas del driver (por conexión física)
+    private static final boolean cacheSentencias = Configuracion.logico("db.cacheSentencias", true);
+    private static final int tamanoCacheSentencias = Configuracion.entero("db.cacheSentencias.tamano", 250);
+    private static final int limiteSqlCacheSentencias = Configuracion.entero("db.cacheSentencias.limiteSql", 2048);
+
+    // URLs de las réplicas de solo lectura (hospital.db.replicas, separadas por comas)
+    private static final List<String> urlsReplicas = Configuracion.lista("db.replicas");
+    // Tiempo que una réplica que falló queda fuera de la elección
+    private static final long enfriamientoReplicaMs = Configuracion.largo("db.replicas.enfriamientoMs", 30_000);
+
+    // Pools compartidos por toda la aplicación, creados de forma perezosa
+    private static volatile PoolConexiones pool;
+    private static volatile List<PoolConexiones> replicas;
+
+    // Desempate por turnos entre réplicas con la misma carga
+    private static final AtomicInteger turno = new AtomicInteger();
+
+    private static final Logger LOG = Logger.getLogger(Conexion.class.getName());
 
     /**
      * Metodo estático que devuelve una conexión activa hacia la base de datos.
-     *Utiliza DriverManager para crear una nueva conexión cada vez que se
-     * invoque. Se maneja a través de SQLException, permitiendo que las capas
-     * superiores decidan cómo gestionar el error.
+     * La conexión se toma del pool; al llamar close() se devuelve al pool en lugar
+     * de cerrarse. Se maneja a través de SQLException, permitiendo que las capas
+     * superiores decidan cómo gestionar el error (PoolAgotadoException si el pool
+     * no tuvo conexiones libres a tiempo).
+     * Esta conexión apunta siempre al servidor primario (lecturas y escrituras).
      *
      */
     public static Connection getConnection()throws SQLException {
-        return DriverManager.getConnection(url,username,password);
+        return getPool().getConnection();
+    }
+
+    /**
+     * Igual que getConnection(), pero esperando al pool como máximo esperaMs
+     * (la solicitud puede tener menos tiempo que la espera configurada).
+     */
+    public static Connection getConnection(long esperaMs) throws SQLException {
+        return getPool().obtener(esperaMs);
+    }
+
+    /**
+     * Devuelve una conexión de solo lectura tomada de la réplica menos cargada
+     * (la de menos conexiones prestadas; a igual carga se alterna por turnos).
+     * Si no hay réplicas configuradas, o la réplica elegida no responde, se usa
+     * el primario; una réplica que no responde queda fuera de la elección
+     * durante hospital.db.replicas.enfriamientoMs.
+     */
+    public static Connection getConnectionLectura() throws SQLException {
+        return getConnectionLectura(getPool().getEsperaMaximaMs());
+    }
+
+    /**
+     * Igual que getConnectionLectura(), pero esperando al pool como máximo esperaMs.
+     */
+    public static Connection getConnectionLectura(long esperaMs) throws SQLException {
+        List<PoolConexiones> disponibles = getReplicas();
+        if (disponibles.isEmpty()) {
+            return getConnection(esperaMs);
+        }
+        int inicio = Math.floorMod(turno.getAndIncrement(), disponibles.size());
+        PoolConexiones elegida = null;
+        for (int i = 0; i < disponibles.size(); i++) {
+            PoolConexiones candidata = disponibles.get((inicio + i) % disponibles.size());
+            // una réplica caída no tiene conexiones activas: sin este filtro sería siempre la elegida
+            if (candidata.isDisponible()
+                    && (elegida == null || candidata.getActivas() < elegida.getActivas())) {
+                elegida = candidata;
+            }
+        }
+        if (elegida == null) {
+            return getConnection(esperaMs);
+        }
+        Connection conexion;
+        try {
+            conexion = elegida.obtener(esperaMs);
+        } catch (PoolAgotadoException e) {
+            throw e;
+        } catch (SQLException e) {
+            return usarPrimario(elegida, e, esperaMs);
+        }
+        try {
+            conexion.setReadOnly(true);
+            return conexion;
+        } catch (SQLException e) {
+            // se devuelve al pool de la réplica, que la descarta si quedó rota
+            try {
+                conexion.close();
+            } catch (SQLException ex) {
+                e.addSuppressed(ex);
+            }
+            return usarPrimario(elegida, e, esperaMs);
+        }
+    }
+
+    /**
+     * La réplica falló: queda fuera de la elección durante
+     * hospital.db.replicas.enfriamientoMs y la lectura va al primario.
+     */
+    private static Connection usarPrimario(PoolConexiones replica, SQLException e, long esperaMs)
+            throws SQLException {
+        replica.marcarNoDisponible(enfriamientoReplicaMs);
+        LOG.log(Level.WARNING, "Réplica " + replica.getNombre() + " no disponible durante "
+                + enfriamientoReplicaMs + " ms, se usa el primario", e);
+        return getConnection(esperaMs);
     }
+
+    /**
+     * Indica si hay réplicas de lectura configuradas.
+     */
+    public static boolean hayReplicas() {
+        return !urlsReplicas.isEmpty();
+    }
+
+    /**
+     * Devuelve el pool principal, creándolo si aún no existe.
+     */
+    public static PoolConexiones getPool() {
+        PoolConexiones actual = pool;
+        if (actual == null) {
+            synchronized (Conexion.class) {
+                actual = pool;
+                if (actual == null) {
+                    actual = PoolConexiones.crear("primario", url, propiedades());
+                    pool = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Devuelve los pools de las réplicas, creándolos si aún no existen.
+     */
+    public static List<PoolConexiones> getReplicas() {
+        List<PoolConexiones> actuales = replicas;
+        if (actuales == null) {
+            synchronized (Conexion.class) {
+                actuales = replicas;
+                if (actuales == null) {
+                    List<PoolConexiones> nuevas = new ArrayList<>();
+                    for (int i = 0; i < urlsReplicas.size(); i++) {
+                        nuevas.add(PoolConexiones.crear("replica-" + (i + 1), urlsReplicas.get(i), propiedades()));
+                    }
+                    actuales = List.copyOf(nuevas);
+                    replicas = actuales;
+                }
+            }
+        }
+        return actuales;
+    }
+
+    /**
+     * Todos los pools (primario y réplicas), para estadísticas.
+     */
+    public static List<PoolConexiones> getPools() {
+        List<PoolConexiones> todos = new ArrayList<>();
+        todos.add(getPool());
+        todos.addAll(getReplicas());
+        return todos;
+    }
+
+    /**
+     * Cierra los pools al detener la aplicación.
+     */
+    public static void cerrar() {
+        synchronized (Conexion.class) {
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+            if (replicas != null) {
+                for (PoolConexiones replica : replicas) {
+                    replica.close();
+                }
+                replicas = null;
+            }
+        }
+    }
+
+    /**
+     * Propiedades JDBC comunes a todas las conexiones físicas.
+     */
+    private static Properties propiedades() {
+        Properties propiedades = new Properties();
+        propiedades.setProperty("user", username);
+        propiedades.setProperty("password", password);
+        // Permite cursores del lado del servidor cuando una sentencia usa setFetchSize
+        propiedades.setProperty("useCursorFetch", "true");
+        // Convierte los lotes de INSERT en un único INSERT con múltiples VALUES
+        propiedades.setProperty("rewriteBatchedStatements", "true");
+        // Evita enviar SET autocommit / transaction read only cuando el valor no cambia
+        // (el pool restablece ambos cada vez que se devuelve una conexión)
+        propiedades.setProperty("useLocalSessionState", "true");
+        if (cacheSentencias) {
+            // Sentencias preparadas en el servidor: el SQL se analiza una sola vez por
+            // conexión física y luego solo viajan los parámetros en binario. Como el pool
+            // reutiliza las conexiones físicas, la caché sobrevive entre solicitudes: al
+            // cerrar la sentencia vuelve a la caché en lugar de liberarse en MySQL.
+            propiedades.setProperty("useServerPrepStmts", "true");
+            propiedades.setProperty("cachePrepStmts", "true");
+            propiedades.setProperty("prepStmtCacheSize", String.valueOf(tamanoCacheSentencias));
+            propiedades.setProperty("prepStmtCacheSqlLimit", String.valueOf(limiteSqlCacheSentencias));
+        }
+        return propiedades;
+    }
+
     //metodo de prueba
     public static void main (String [] args) {
         try(Connection conn = Conexion.getConnection()){
@@ -42,7 +249,8 @@ public class Conexion {
             }
         }catch(SQLException e){
             System.out.println("Error al conectarse a la bdd: " + e.getMessage());
+        } finally {
+            Conexion.cerrar();
         }
     }
 }
-
@@ -0,0 +1,92 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Clase utilitaria que centraliza la lectura de parámetros de configuración
+ * del despliegue. Cada parámetro se busca primero como propiedad del sistema
+ * (-Dhospital.db.url=...) y luego como variable de entorno (HOSPITAL_DB_URL),
+ * usando un valor por defecto cuando no se ha definido ninguno.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public class Configuracion {
+
+    // Prefijo común para todas las propiedades del proyecto
+    private static final String PREFIJO = "hospital.";
+
+    private Configuracion() {
+    }
+
+    /**
+     * Obtiene un parámetro de texto.
+     * @param clave nombre sin prefijo, por ejemplo "db.url".
+     * @param porDefecto valor usado si el parámetro no está definido.
+     */
+    public static String texto(String clave, String porDefecto) {
+        String valor = System.getProperty(PREFIJO + clave);
+        if (valor == null) {
+            // hospital.db.url -> HOSPITAL_DB_URL
+            String variable = (PREFIJO + clave).toUpperCase().replace('.', '_');
+            valor = System.getenv(variable);
+        }
+        return (valor == null || valor.isBlank()) ? porDefecto : valor.trim();
+    }
+
+    /**
+     * Obtiene un parámetro numérico entero.
+     */
+    public static int entero(String clave, int porDefecto) {
+        String valor = texto(clave, null);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Obtiene un parámetro numérico largo (milisegundos, tamaños, etc.).
+     */
+    public static long largo(String clave, long porDefecto) {
+        String valor = texto(clave, null);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Obtiene un parámetro booleano (true/false).
+     */
+    public static boolean logico(String clave, boolean porDefecto) {
+        String valor = texto(clave, null);
+        return valor == null ? porDefecto : Boolean.parseBoolean(valor);
+    }
+
+    /**
+     * Obtiene una lista de valores separados por comas.
+     * Los elementos vacíos se ignoran.
+     */
+    public static List<String> lista(String clave) {
+        List<String> resultado = new ArrayList<>();
+        String valor = texto(clave, null);
+        if (valor != null) {
+            for (String parte : valor.split(",")) {
+                if (!parte.isBlank()) {
+                    resultado.add(parte.trim());
+                }
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,126 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Ejecuta la lógica de los endpoints REST. En el modo por defecto la tarea se
+ * ejecuta en el mismo hilo del contenedor (modelo de un hilo por solicitud).
+ * Con hospital.hilosVirtuales.habilitado=true cada tarea se ejecuta en un hilo
+ * virtual (Java 21) y el hilo del contenedor queda libre mientras se espera a
+ * MySQL.
+ *
+ * En el modo virtual la transacción deja de pertenecer al filtro de conexión:
+ * el propio hilo virtual hace commit o rollback y devuelve la conexión antes
+ * de enviar la respuesta. Un semáforo justo, del tamaño del pool, limita
+ * cuántas tareas pueden tener una conexión al mismo tiempo, para que miles de
+ * hilos virtuales no saturen MySQL.
+ */
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class EjecutorPeticiones {
+
+    private static final Logger LOG = Logger.getLogger(EjecutorPeticiones.class.getName());
+
+    private static final boolean HILOS_VIRTUALES = Configuracion.logico("hilosVirtuales.habilitado", false);
+
+    // Permisos para acceder a la base de datos; por defecto igual al tamaño del pool
+    private static final Semaphore PERMISOS_BD = new Semaphore(
+            Configuracion.entero("hilosVirtuales.permisosBd", Configuracion.entero("db.pool.maximo", 20)), true);
+
+    private static final ExecutorService VIRTUALES =
+            HILOS_VIRTUALES ? Executors.newVirtualThreadPerTaskExecutor() : null;
+
+    private EjecutorPeticiones() {
+    }
+
+    /**
+     * Ejecuta la tarea y reanuda la respuesta asíncrona con su resultado.
+     * @param async respuesta suspendida del endpoint.
+     * @param proveedor proveedor de conexión de la solicitud.
+     * @param tarea lógica del endpoint; debe capturar sus propias excepciones de negocio.
+     */
+    public static void ejecutar(AsyncResponse async, ProveedorConexion proveedor, Supplier<Response> tarea) {
+        if (!HILOS_VIRTUALES || proveedor == null) {
+            // modelo tradicional: el filtro confirma la transacción al terminar la cadena
+            async.resume(tarea.get());
+            return;
+        }
+        proveedor.delegar(PERMISOS_BD);
+        try {
+            VIRTUALES.execute(() -> async.resume(ejecutarEnTransaccion(proveedor, tarea)));
+        } catch (RejectedExecutionException e) {
+            cerrar(proveedor);
+            async.resume(RespuestasError.servicioNoDisponible());
+        }
+    }
+
+    /**
+     * Ejecuta la tarea en el hilo virtual y termina la transacción antes de
+     * devolver la respuesta, igual que lo haría el filtro de conexión. Si el
+     * commit falla, la respuesta de error es la misma que darían los recursos
+     * (RespuestasError): 504 por plazo, 503 por pool agotado, 500 en otro caso.
+     */
+    private static Response ejecutarEnTransaccion(ProveedorConexion proveedor, Supplier<Response> tarea) {
+        try {
+            Response respuesta = tarea.get();
+            proveedor.verificarPlazo();
+            proveedor.confirmar();
+            return respuesta;
+        } catch (SQLException | RuntimeException e) {
+            deshacer(proveedor);
+            return RespuestasError.error(e, 500, RespuestasError.ERROR_INTERNO);
+        } finally {
+            cerrar(proveedor);
+        }
+    }
+
+    private static void deshacer(ProveedorConexion proveedor) {
+        try {
+            proveedor.deshacer();
+        } catch (SQLException ex) {
+            LOG.log(Level.WARNING, "Error al deshacer la transacción", ex);
+        }
+    }
+
+    private static void cerrar(ProveedorConexion proveedor) {
+        try {
+            proveedor.cerrar();
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Error al devolver la conexión", e);
+        }
+    }
+
+    /**
+     * Indica si los endpoints se ejecutan en hilos virtuales.
+     */
+    public static boolean isHilosVirtuales() {
+        return HILOS_VIRTUALES;
+    }
+
+    /**
+     * Permisos de base de datos libres en este momento.
+     */
+    public static int getPermisosDisponibles() {
+        return PERMISOS_BD.availablePermits();
+    }
+
+    /**
+     * Detiene el ejecutor de hilos virtuales al cerrar la aplicación.
+     */
+    public static void detener() {
+        if (VIRTUALES != null) {
+            VIRTUALES.shutdown();
+        }
+    }
+}
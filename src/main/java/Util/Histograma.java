@@ -0,0 +1,114 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Histograma de latencias de bajo costo y sin bloqueos. Agrupa los valores
+ * (en nanosegundos) en cubetas logarítmicas con 16 subdivisiones lineales por
+ * cada potencia de dos, al estilo de HdrHistogram, lo que da un error relativo
+ * menor al 7 % en los percentiles. Cada cubeta es un LongAdder, por lo que
+ * registrar un valor desde muchos hilos no genera contención.
+ */
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histograma {
+
+    // 4 bits de precisión: 16 subcubetas por potencia de dos
+    private static final int BITS_SUBCUBETA = 4;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int TOTAL_CUBETAS = (64 - BITS_SUBCUBETA + 1) * SUBCUBETAS;
+
+    private final LongAdder[] cubetas = new LongAdder[TOTAL_CUBETAS];
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public Histograma() {
+        for (int i = 0; i < cubetas.length; i++) {
+            cubetas[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra un valor en nanosegundos. Los valores negativos se tratan como cero.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubetas[indice(valor)].increment();
+        cantidad.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Registra el tiempo transcurrido desde un instante obtenido con System.nanoTime().
+     */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    public long getCantidad() {
+        return cantidad.sum();
+    }
+
+    public long getSumaNanos() {
+        return suma.sum();
+    }
+
+    public long getMaximoNanos() {
+        return maximo.get();
+    }
+
+    /**
+     * Calcula un percentil aproximado (por ejemplo 0.99) recorriendo las cubetas.
+     * @return límite superior de la cubeta que contiene el percentil, en nanosegundos.
+     */
+    public long percentil(double fraccion) {
+        long total = 0;
+        long[] conteos = new long[cubetas.length];
+        for (int i = 0; i < cubetas.length; i++) {
+            conteos[i] = cubetas[i].sum();
+            total += conteos[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(total * fraccion);
+        long acumulado = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= Math.max(1, objetivo)) {
+                return Math.min(limiteSuperior(i), getMaximoNanos());
+            }
+        }
+        return getMaximoNanos();
+    }
+
+    /**
+     * Cubeta que corresponde a un valor: los 16 primeros valores tienen cubeta
+     * propia y a partir de ahí cada potencia de dos se divide en 16 partes.
+     */
+    static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + sub;
+    }
+
+    /**
+     * Mayor valor que puede caer en la cubeta indicada.
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBETAS + BITS_SUBCUBETA - 1;
+        long sub = indice % SUBCUBETAS;
+        long base = (SUBCUBETAS + sub + 1) << (exponente - BITS_SUBCUBETA);
+        return base - 1;
+    }
+}
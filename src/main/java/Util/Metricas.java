@@ -0,0 +1,195 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Registro central de métricas de la aplicación: contadores, histogramas de
+ * latencia e indicadores (valores que se leen al momento de exportar). Se
+ * exportan en el formato de texto de Prometheus desde /api/metrics.
+ *
+ * Registrar es barato y no usa bloqueos: los contadores son LongAdder, los
+ * histogramas son Histograma (cubetas LongAdder) y la búsqueda de cada serie
+ * es una lectura de ConcurrentHashMap; solo la primera vez que aparece una
+ * serie se inserta en el mapa. Por eso puede quedar siempre activo.
+ *
+ * Las etiquetas se pasan como pares clave/valor. Deben tener pocos valores
+ * posibles (método, endpoint, estado...); nunca ids ni datos de pacientes.
+ */
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+public final class Metricas {
+
+    // Percentiles publicados para cada histograma
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final ConcurrentHashMap<String, Serie> SERIES = new ConcurrentHashMap<>();
+
+    private Metricas() {
+    }
+
+    /**
+     * Devuelve el contador de la serie indicada, creándolo si no existe.
+     * Por convención de Prometheus el nombre debe terminar en _total.
+     */
+    public static LongAdder contador(String nombre, String... etiquetas) {
+        return (LongAdder) serie(nombre, Tipo.CONTADOR, etiquetas, LongAdder::new).valor;
+    }
+
+    /**
+     * Devuelve el histograma de la serie indicada, creándolo si no existe.
+     * Los valores se registran en nanosegundos y se exportan en segundos.
+     */
+    public static Histograma histograma(String nombre, String... etiquetas) {
+        return (Histograma) serie(nombre, Tipo.HISTOGRAMA, etiquetas, Histograma::new).valor;
+    }
+
+    /**
+     * Publica un histograma que ya existe (por ejemplo el de un pool). Si ya
+     * había uno registrado con el mismo nombre y etiquetas, se reemplaza.
+     */
+    public static void registrarHistograma(String nombre, Histograma histograma, String... etiquetas) {
+        String clave = clave(nombre, etiquetas);
+        SERIES.put(clave, new Serie(nombre, Tipo.HISTOGRAMA, etiquetas(etiquetas), histograma));
+    }
+
+    /**
+     * Publica un indicador cuyo valor se calcula al exportar (conexiones activas,
+     * tamaño de una cola...). Si ya existía, se reemplaza.
+     */
+    public static void indicador(String nombre, LongSupplier valor, String... etiquetas) {
+        String clave = clave(nombre, etiquetas);
+        SERIES.put(clave, new Serie(nombre, Tipo.INDICADOR, etiquetas(etiquetas), valor));
+    }
+
+    /**
+     * Genera el texto de todas las métricas en formato de exposición de Prometheus
+     * (text/plain; version=0.0.4). Los histogramas se publican como summary con
+     * los cuantiles 0.5, 0.9, 0.99 y 0.999, más una serie _max.
+     */
+    public static String exportar() {
+        // agrupamos por nombre (ordenado) para escribir una sola línea TYPE por familia
+        Map<String, Map<String, Serie>> familias = new TreeMap<>();
+        for (Serie serie : SERIES.values()) {
+            familias.computeIfAbsent(serie.nombre, n -> new TreeMap<>()).put(serie.etiquetas, serie);
+        }
+        StringBuilder salida = new StringBuilder(4096);
+        for (Map.Entry<String, Map<String, Serie>> familia : familias.entrySet()) {
+            String nombre = familia.getKey();
+            Tipo tipo = familia.getValue().values().iterator().next().tipo;
+            switch (tipo) {
+                case CONTADOR -> {
+                    salida.append("# TYPE ").append(nombre).append(" counter\n");
+                    for (Serie serie : familia.getValue().values()) {
+                        linea(salida, nombre, serie.etiquetas, null, ((LongAdder) serie.valor).sum());
+                    }
+                }
+                case INDICADOR -> {
+                    salida.append("# TYPE ").append(nombre).append(" gauge\n");
+                    for (Serie serie : familia.getValue().values()) {
+                        linea(salida, nombre, serie.etiquetas, null, ((LongSupplier) serie.valor).getAsLong());
+                    }
+                }
+                case HISTOGRAMA -> {
+                    salida.append("# TYPE ").append(nombre).append(" summary\n");
+                    for (Serie serie : familia.getValue().values()) {
+                        Histograma h = (Histograma) serie.valor;
+                        for (double cuantil : CUANTILES) {
+                            linea(salida, nombre, serie.etiquetas, "quantile=\"" + cuantil + "\"",
+                                    segundos(h.percentil(cuantil)));
+                        }
+                        linea(salida, nombre + "_sum", serie.etiquetas, null, segundos(h.getSumaNanos()));
+                        linea(salida, nombre + "_count", serie.etiquetas, null, h.getCantidad());
+                    }
+                    salida.append("# TYPE ").append(nombre).append("_max gauge\n");
+                    for (Serie serie : familia.getValue().values()) {
+                        linea(salida, nombre + "_max", serie.etiquetas, null,
+                                segundos(((Histograma) serie.valor).getMaximoNanos()));
+                    }
+                }
+            }
+        }
+        return salida.toString();
+    }
+
+    /**
+     * Busca la serie y solo si no existe la crea (computeIfAbsent).
+     */
+    private static Serie serie(String nombre, Tipo tipo, String[] etiquetas,
+                               Supplier<Object> fabrica) {
+        String clave = clave(nombre, etiquetas);
+        Serie serie = SERIES.get(clave);
+        if (serie == null) {
+            serie = SERIES.computeIfAbsent(clave,
+                    c -> new Serie(nombre, tipo, etiquetas(etiquetas), fabrica.get()));
+        }
+        if (serie.tipo != tipo) {
+            throw new IllegalArgumentException("La métrica " + nombre + " ya existe con otro tipo");
+        }
+        return serie;
+    }
+
+    private static String clave(String nombre, String[] etiquetas) {
+        if (etiquetas.length == 0) {
+            return nombre;
+        }
+        StringBuilder clave = new StringBuilder(nombre);
+        for (String etiqueta : etiquetas) {
+            clave.append('\u0000').append(etiqueta);
+        }
+        return clave.toString();
+    }
+
+    /**
+     * Convierte los pares clave/valor al formato a="b",c="d".
+     */
+    private static String etiquetas(String[] pares) {
+        if (pares.length % 2 != 0) {
+            throw new IllegalArgumentException("Las etiquetas deben ir en pares clave/valor");
+        }
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < pares.length; i += 2) {
+            if (i > 0) texto.append(',');
+            texto.append(pares[i]).append("=\"");
+            String valor = pares[i + 1] == null ? "" : pares[i + 1];
+            for (int j = 0; j < valor.length(); j++) {
+                char c = valor.charAt(j);
+                switch (c) {
+                    case '\\' -> texto.append("\\\\");
+                    case '"' -> texto.append("\\\"");
+                    case '\n' -> texto.append("\\n");
+                    default -> texto.append(c);
+                }
+            }
+            texto.append('"');
+        }
+        return texto.toString();
+    }
+
+    private static void linea(StringBuilder salida, String nombre, String etiquetas, String extra, Object valor) {
+        salida.append(nombre);
+        if (!etiquetas.isEmpty() || extra != null) {
+            salida.append('{').append(etiquetas);
+            if (extra != null) {
+                if (!etiquetas.isEmpty()) salida.append(',');
+                salida.append(extra);
+            }
+            salida.append('}');
+        }
+        salida.append(' ').append(valor).append('\n');
+    }
+
+    private static double segundos(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private enum Tipo { CONTADOR, HISTOGRAMA, INDICADOR }
+
+    private record Serie(String nombre, Tipo tipo, String etiquetas, Object valor) {
+    }
+}
@@ -0,0 +1,24 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Excepción lanzada cuando una solicitud supera su plazo: antes de ejecutar
+ * una consulta, esperando una conexión o al momento de confirmar. Extiende
+ * SQLTimeoutException, la misma clase base de la cancelación por
+ * setQueryTimeout del driver, para que ambas se traduzcan a HTTP 504
+ * (Gateway Timeout).
+ */
+import java.sql.SQLTimeoutException;
+
+public class PlazoVencidoException extends SQLTimeoutException {
+
+    /**
+     * Constructor que recibe el mensaje descriptivo del error.
+     * @param message descripción del error ocurrido.
+     */
+    public PlazoVencidoException(String message) {
+        super(message);
+    }
+}
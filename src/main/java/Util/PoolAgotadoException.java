@@ -0,0 +1,23 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Excepción lanzada por el pool de conexiones cuando no se pudo obtener una
+ * conexión libre dentro del tiempo de espera configurado. El filtro de
+ * conexión la traduce a una respuesta HTTP 503 (Service Unavailable) en
+ * lugar de dejar la solicitud bloqueada indefinidamente.
+ */
+import java.sql.SQLTransientConnectionException;
+
+public class PoolAgotadoException extends SQLTransientConnectionException {
+
+    /**
+     * Constructor que recibe el mensaje descriptivo del error.
+     * @param message descripción del error ocurrido.
+     */
+    public PoolAgotadoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,515 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Pool de conexiones JDBC propio, expuesto como DataSource. Mantiene un número
+ * acotado de conexiones físicas hacia MySQL y las presta a cada solicitud en
+ * lugar de abrir una conexión nueva (handshake TCP + autenticación) cada vez.
+ *
+ * Características:
+ * - Tamaño máximo acotado y espera con tiempo límite cuando está agotado.
+ * - Validación al prestar (isValid), omitida si la conexión se usó hace poco.
+ * - Desalojo de conexiones inactivas y reciclaje por tiempo de vida máximo.
+ * - Estadísticas de conexiones activas, inactivas, en espera y un histograma
+ *   de la latencia de préstamo.
+ *
+ * Las conexiones entregadas son envoltorios (proxy): al llamar close() la
+ * conexión física vuelve al pool en lugar de cerrarse.
+ */
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class PoolConexiones implements DataSource, AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(PoolConexiones.class.getName());
+
+    // Si la conexión se usó hace menos de este tiempo no se vuelve a validar
+    private static final long VENTANA_SIN_VALIDACION_MS = 500;
+
+    private final String nombre;
+    private final String url;
+    private final Properties propiedades;
+    private final int maximo;
+    private final int minimoInactivas;
+    private final long esperaMaximaMs;
+    private final long inactividadMaximaMs;
+    private final long vidaMaximaMs;
+    private final int validacionSegundos;
+
+    // Estado protegido por el candado
+    private final ReentrantLock candado = new ReentrantLock(true);
+    private final Condition disponible = candado.newCondition();
+    private final ArrayDeque<ConexionFisica> inactivas = new ArrayDeque<>();
+    private int total;      // conexiones físicas abiertas o en apertura
+    private int activas;    // conexiones prestadas
+    private int esperando;  // hilos esperando una conexión
+    private boolean cerrado;
+
+    private final Histograma latenciaPrestamo = new Histograma();
+    private final ScheduledExecutorService mantenimiento;
+    // réplica que falló: no se elige hasta este instante (System.nanoTime); 0 si está sana
+    private volatile long noDisponibleHasta;
+
+    /**
+     * Crea el pool leyendo los límites desde Configuracion
+     * (hospital.db.pool.maximo, hospital.db.pool.esperaMaximaMs, etc.), y
+     * arranca su mantenimiento y sus métricas.
+     */
+    public static PoolConexiones crear(String nombre, String url, Properties propiedades) {
+        PoolConexiones pool = new PoolConexiones(nombre, url, propiedades);
+        pool.iniciar();
+        return pool;
+    }
+
+    /**
+     * Solo inicializa los campos: el pool se publica (tarea de mantenimiento,
+     * indicadores) en iniciar(), una vez construido del todo.
+     */
+    private PoolConexiones(String nombre, String url, Properties propiedades) {
+        this.nombre = nombre;
+        this.url = url;
+        this.propiedades = propiedades;
+        this.maximo = Math.max(1, Configuracion.entero("db.pool.maximo", 20));
+        this.minimoInactivas = Math.min(maximo, Configuracion.entero("db.pool.minimoInactivas", 2));
+        this.esperaMaximaMs = Configuracion.largo("db.pool.esperaMaximaMs", 5_000);
+        this.inactividadMaximaMs = Configuracion.largo("db.pool.inactividadMaximaMs", 300_000);
+        this.vidaMaximaMs = Configuracion.largo("db.pool.vidaMaximaMs", 1_800_000);
+        this.validacionSegundos = Configuracion.entero("db.pool.validacionSegundos", 2);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-" + nombre + "-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    private void iniciar() {
+        long periodo = Math.max(1_000, Math.min(inactividadMaximaMs, 30_000));
+        mantenimiento.scheduleWithFixedDelay(this::desalojar, periodo, periodo, TimeUnit.MILLISECONDS);
+
+        // publicamos el estado del pool en /api/metrics
+        Metricas.indicador("hospital_pool_conexiones_maximo", () -> maximo, "pool", nombre);
+        Metricas.indicador("hospital_pool_conexiones_activas", this::getActivas, "pool", nombre);
+        Metricas.indicador("hospital_pool_conexiones_inactivas", this::getInactivas, "pool", nombre);
+        Metricas.indicador("hospital_pool_solicitudes_esperando", this::getEsperando, "pool", nombre);
+        Metricas.registrarHistograma("hospital_pool_prestamo_segundos", latenciaPrestamo, "pool", nombre);
+    }
+
+    /**
+     * Presta una conexión del pool. Si no hay ninguna libre y ya se alcanzó el
+     * máximo, espera hasta esperaMaximaMs y luego lanza PoolAgotadoException.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return obtener(esperaMaximaMs);
+    }
+
+    /**
+     * Igual que getConnection(), pero con un tiempo de espera explícito.
+     */
+    public Connection obtener(long esperaMs) throws SQLException {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(Math.max(0, esperaMs));
+        while (true) {
+            ConexionFisica fisica;
+            boolean crear = false;
+            candado.lock();
+            try {
+                if (cerrado) {
+                    throw new SQLException("El pool " + nombre + " está cerrado");
+                }
+                while (inactivas.isEmpty() && total >= maximo) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) {
+                        throw new PoolAgotadoException("No hay conexiones disponibles en el pool "
+                                + nombre + " (máximo " + maximo + ")");
+                    }
+                    esperando++;
+                    try {
+                        disponible.awaitNanos(restante);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Espera de conexión interrumpida", e);
+                    } finally {
+                        esperando--;
+                    }
+                    if (cerrado) {
+                        throw new SQLException("El pool " + nombre + " está cerrado");
+                    }
+                }
+                fisica = inactivas.pollFirst();
+                if (fisica == null) {
+                    total++;
+                    crear = true;
+                }
+                activas++;
+            } finally {
+                candado.unlock();
+            }
+
+            if (crear) {
+                try {
+                    fisica = new ConexionFisica(DriverManager.getConnection(url, propiedades));
+                } catch (SQLException e) {
+                    liberarCupo();
+                    throw e;
+                }
+            } else if (expirada(fisica) || !fisica.esValida()) {
+                // Conexión vieja o rota: se descarta y se intenta con otra
+                cerrarFisica(fisica);
+                liberarCupo();
+                continue;
+            }
+            latenciaPrestamo.registrarDesde(inicio);
+            return fisica.prestar();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("El pool usa credenciales fijas");
+    }
+
+    /**
+     * Devuelve la conexión física al pool, restableciendo su estado.
+     */
+    private void devolver(ConexionFisica fisica) {
+        boolean reutilizable = fisica.restablecer() && !expirada(fisica);
+        candado.lock();
+        try {
+            activas--;
+            if (reutilizable && !cerrado) {
+                fisica.ultimoUso = System.currentTimeMillis();
+                inactivas.addFirst(fisica); // LIFO: las conexiones calientes se reutilizan primero
+                disponible.signal();
+                return;
+            }
+            total--;
+            disponible.signal();
+        } finally {
+            candado.unlock();
+        }
+        cerrarFisica(fisica);
+    }
+
+    /**
+     * Libera el cupo de una conexión que no llegó a entregarse.
+     */
+    private void liberarCupo() {
+        candado.lock();
+        try {
+            total--;
+            activas--;
+            disponible.signal();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private boolean expirada(ConexionFisica fisica) {
+        return System.currentTimeMillis() - fisica.creada > vidaMaximaMs;
+    }
+
+    /**
+     * Tarea periódica: cierra conexiones inactivas por demasiado tiempo o que
+     * superaron su vida máxima, conservando un mínimo de conexiones libres.
+     * Visible en el paquete para que las pruebas la ejecuten sin esperar.
+     */
+    void desalojar() {
+        List<ConexionFisica> aCerrar = new ArrayList<>();
+        long ahora = System.currentTimeMillis();
+        candado.lock();
+        try {
+            Iterator<ConexionFisica> it = inactivas.descendingIterator(); // las más antiguas primero
+            while (it.hasNext()) {
+                ConexionFisica fisica = it.next();
+                boolean vieja = ahora - fisica.creada > vidaMaximaMs;
+                boolean ociosa = ahora - fisica.ultimoUso > inactividadMaximaMs
+                        && inactivas.size() > minimoInactivas; // it.remove() ya descontó las cerradas
+                if (vieja || ociosa) {
+                    it.remove();
+                    total--;
+                    aCerrar.add(fisica);
+                }
+            }
+        } finally {
+            candado.unlock();
+        }
+        for (ConexionFisica fisica : aCerrar) {
+            cerrarFisica(fisica);
+        }
+    }
+
+    private void cerrarFisica(ConexionFisica fisica) {
+        try {
+            fisica.conexion.close();
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "Error al cerrar conexión física", e);
+        }
+    }
+
+    /**
+     * Cierra el pool: las conexiones libres se cierran de inmediato y las
+     * prestadas se cerrarán cuando sean devueltas.
+     */
+    @Override
+    public void close() {
+        List<ConexionFisica> aCerrar;
+        candado.lock();
+        try {
+            cerrado = true;
+            aCerrar = new ArrayList<>(inactivas);
+            total -= inactivas.size();
+            inactivas.clear();
+            disponible.signalAll();
+        } finally {
+            candado.unlock();
+        }
+        mantenimiento.shutdownNow();
+        for (ConexionFisica fisica : aCerrar) {
+            cerrarFisica(fisica);
+        }
+    }
+
+    // Estadísticas del pool
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    public long getEsperaMaximaMs() {
+        return esperaMaximaMs;
+    }
+
+    public int getActivas() {
+        candado.lock();
+        try {
+            return activas;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public int getInactivas() {
+        candado.lock();
+        try {
+            return inactivas.size();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public int getEsperando() {
+        candado.lock();
+        try {
+            return esperando;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public Histograma getLatenciaPrestamo() {
+        return latenciaPrestamo;
+    }
+
+    /**
+     * Marca el pool como no disponible durante el tiempo indicado (la réplica
+     * no respondió); mientras tanto las lecturas no lo eligen.
+     */
+    public void marcarNoDisponible(long milisegundos) {
+        noDisponibleHasta = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, milisegundos));
+    }
+
+    /**
+     * Indica si el pool se puede elegir: nunca falló o ya pasó su enfriamiento.
+     */
+    public boolean isDisponible() {
+        long hasta = noDisponibleHasta;
+        return hasta == 0 || System.nanoTime() - hasta >= 0;
+    }
+
+    /**
+     * Fotografía de las estadísticas en un mapa, lista para serializar a JSON.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        candado.lock();
+        try {
+            datos.put("nombre", nombre);
+            datos.put("maximo", maximo);
+            datos.put("total", total);
+            datos.put("activas", activas);
+            datos.put("inactivas", inactivas.size());
+            datos.put("esperando", esperando);
+            datos.put("disponible", isDisponible());
+        } finally {
+            candado.unlock();
+        }
+        datos.put("prestamos", latenciaPrestamo.getCantidad());
+        datos.put("prestamoP50Ms", latenciaPrestamo.percentil(0.50) / 1_000_000.0);
+        datos.put("prestamoP99Ms", latenciaPrestamo.percentil(0.99) / 1_000_000.0);
+        datos.put("prestamoMaxMs", latenciaPrestamo.getMaximoNanos() / 1_000_000.0);
+        return datos;
+    }
+
+    // Métodos de DataSource no soportados o sin efecto
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return LOG;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("No es un envoltorio de " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Conexión física administrada por el pool junto con sus marcas de tiempo.
+     */
+    private final class ConexionFisica {
+        private final Connection conexion;
+        private final long creada = System.currentTimeMillis();
+        private volatile long ultimoUso = creada;
+
+        private ConexionFisica(Connection conexion) {
+            this.conexion = conexion;
+        }
+
+        private boolean esValida() {
+            if (System.currentTimeMillis() - ultimoUso < VENTANA_SIN_VALIDACION_MS) {
+                return true;
+            }
+            try {
+                return conexion.isValid(validacionSegundos);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Deshace cualquier transacción pendiente y restablece autocommit y
+         * solo-lectura para que el siguiente préstamo reciba una conexión limpia.
+         */
+        private boolean restablecer() {
+            try {
+                if (conexion.isClosed()) {
+                    return false;
+                }
+                if (!conexion.getAutoCommit()) {
+                    conexion.rollback();
+                    conexion.setAutoCommit(true);
+                }
+                if (conexion.isReadOnly()) {
+                    conexion.setReadOnly(false);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private Connection prestar() {
+            return (Connection) Proxy.newProxyInstance(
+                    PoolConexiones.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Prestamo(this));
+        }
+    }
+
+    /**
+     * Manejador del proxy entregado a cada solicitud. close() devuelve la
+     * conexión al pool una única vez; usarla después lanza SQLException.
+     */
+    private final class Prestamo implements InvocationHandler {
+        private ConexionFisica fisica;
+
+        private Prestamo(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (fisica != null) {
+                        ConexionFisica devuelta = fisica;
+                        fisica = null;
+                        devolver(devuelta);
+                    }
+                    return null;
+                case "isClosed":
+                    return fisica == null || fisica.conexion.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Prestamo[" + nombre + "]";
+                default:
+                    if (fisica == null) {
+                        throw new SQLException("La conexión ya fue devuelta al pool");
+                    }
+                    try {
+                        return method.invoke(fisica.conexion, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
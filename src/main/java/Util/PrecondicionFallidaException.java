@@ -0,0 +1,16 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Excepción lanzada cuando una actualización condicional (If-Match) no se
+ * aplica porque el paciente cambió desde que el cliente lo leyó. La API la
+ * traduce a HTTP 412 Precondition Failed para evitar pisar cambios ajenos.
+ */
+public class PrecondicionFallidaException extends HospitalException {
+
+    public PrecondicionFallidaException(String message) {
+        super(message);
+    }
+}
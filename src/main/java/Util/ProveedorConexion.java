@@ -0,0 +1,361 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Proveedor de la conexión de una solicitud. El filtro de conexión crea uno por
+ * cada solicitud, pero la conexión solo se toma del pool la primera vez que
+ * alguien llama a obtener(). Así, las solicitudes que no usan la base de datos
+ * (OPTIONS de CORS, aciertos de caché, recursos estáticos) nunca ocupan una
+ * conexión. El commit, el rollback y la devolución al pool solo ocurren si la
+ * conexión llegó a tomarse.
+ *
+ * Las consultas de solo lectura pueden pedir obtenerLectura(), que usa una
+ * réplica cuando hay réplicas configuradas.
+ *
+ * Un proveedor lo usa un solo hilo a la vez: el del contenedor o, en el modo de
+ * hilos virtuales, el hilo virtual al que EjecutorPeticiones le entrega la
+ * solicitud (la entrega al ejecutor garantiza la visibilidad de su estado). Por
+ * eso no usa synchronized, que además fijaría el hilo virtual a su portador
+ * mientras espera una conexión.
+ *
+ * La solicitud puede tener un plazo (ver ConexionFilter). Con plazo, la espera
+ * de la conexión no lo supera, cada sentencia recibe como setQueryTimeout los
+ * segundos que le quedan (el driver la cancela al vencer) y, con
+ * verificarPlazo(), una transacción cuyo plazo ya venció se deshace en lugar
+ * de confirmarse, porque el cliente ya no espera su resultado.
+ */
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ProveedorConexion {
+
+    /** Nombre del atributo de la solicitud donde el filtro deja el proveedor. */
+    public static final String ATRIBUTO = "proveedorConexion";
+
+    private static final long ESPERA_MAXIMA_MS = Configuracion.largo("db.pool.esperaMaximaMs", 5_000);
+
+    // Métricas: tiempo para obtener la conexión (permiso + pool) y duración del commit
+    private static final Histograma OBTENER_PRIMARIO =
+            Metricas.histograma("hospital_db_obtener_conexion_segundos", "tipo", "primario");
+    private static final Histograma OBTENER_LECTURA =
+            Metricas.histograma("hospital_db_obtener_conexion_segundos", "tipo", "lectura");
+    private static final Histograma COMMIT = Metricas.histograma("hospital_db_commit_segundos");
+    private static final LongAdder ROLLBACKS = Metricas.contador("hospital_db_rollbacks_total");
+    private static final LongAdder PLAZOS_VENCIDOS = Metricas.contador("hospital_db_plazos_vencidos_total");
+
+    private Connection conexion;   // conexión al primario (lecturas y escrituras)
+    private Connection lectura;    // conexión de solo lectura a una réplica
+    // true si la conexión pertenece a este proveedor y debe devolverse al pool
+    private final boolean propia;
+    // identificador del cliente para la afinidad de lectura propia
+    private final String cliente;
+    // límite de accesos concurrentes a la base de datos (modo hilos virtuales)
+    private Semaphore limitador;
+    private boolean permisoTomado;
+    // true si la transacción pasó a manos de otro hilo (ver EjecutorPeticiones)
+    private boolean delegado;
+    private boolean cerrado;
+    // true si la transacción actual cambió datos (ver marcarEscritura)
+    private boolean escribio;
+    // instante (System.nanoTime) en que vence la solicitud; 0 si no tiene plazo
+    private long plazo;
+
+    /**
+     * Crea un proveedor perezoso que tomará la conexión del pool al primer uso.
+     */
+    public ProveedorConexion() {
+        this((String) null);
+    }
+
+    /**
+     * Crea un proveedor perezoso para el cliente indicado; si el cliente escribió
+     * hace poco, sus lecturas irán al primario en lugar de a una réplica.
+     */
+    public ProveedorConexion(String cliente) {
+        this.propia = true;
+        this.cliente = cliente;
+    }
+
+    private ProveedorConexion(Connection conexion) {
+        this.conexion = conexion;
+        this.propia = false;
+        this.cliente = null;
+    }
+
+    /**
+     * Envuelve una conexión ya abierta (por ejemplo en pruebas o tareas de fondo).
+     * El proveedor no la cierra; quien la creó sigue siendo responsable de ella.
+     */
+    public static ProveedorConexion de(Connection conexion) {
+        return new ProveedorConexion(conexion);
+    }
+
+    /**
+     * Devuelve la conexión de la solicitud, tomándola del pool si aún no se tomó.
+     * La conexión queda en modo de transacción manual.
+     */
+    public Connection obtener() throws SQLException {
+        if (conexion == null) {
+            long inicio = System.nanoTime();
+            tomarPermiso();
+            Connection nueva;
+            try {
+                nueva = Conexion.getConnection(espera());
+            } catch (PoolAgotadoException e) {
+                throw vencidoSiCorresponde(e);
+            }
+            try {
+                if (nueva.getAutoCommit()) {
+                    nueva.setAutoCommit(false);
+                }
+            } catch (SQLException e) {
+                nueva.close();
+                throw e;
+            }
+            conexion = nueva;
+            OBTENER_PRIMARIO.registrarDesde(inicio);
+        }
+        return conexion;
+    }
+
+    /**
+     * Devuelve una conexión para consultas de solo lectura. Se usa una réplica,
+     * salvo que esta solicitud ya tenga una conexión al primario (para ver sus
+     * propios cambios) o que el cliente haya escrito hace muy poco.
+     */
+    public Connection obtenerLectura() throws SQLException {
+        if (conexion != null || !propia || AfinidadPrimario.debeLeerDelPrimario(cliente)) {
+            return obtener();
+        }
+        if (lectura == null) {
+            long inicio = System.nanoTime();
+            tomarPermiso();
+            try {
+                lectura = Conexion.getConnectionLectura(espera());
+            } catch (PoolAgotadoException e) {
+                throw vencidoSiCorresponde(e);
+            }
+            OBTENER_LECTURA.registrarDesde(inicio);
+        }
+        return lectura;
+    }
+
+    /**
+     * Transfiere la responsabilidad de la transacción a otro hilo: el filtro ya no
+     * hará commit ni cerrará la conexión. Antes de tomar una conexión se deberá
+     * obtener un permiso del limitador.
+     */
+    public void delegar(Semaphore limitador) {
+        this.limitador = limitador;
+        this.delegado = true;
+    }
+
+    /**
+     * Indica si la transacción fue delegada a otro hilo.
+     */
+    public boolean esDelegado() {
+        return delegado;
+    }
+
+    /**
+     * Fija el plazo de la solicitud contando desde ahora.
+     * @param milisegundos tiempo disponible; 0 o negativo quita el plazo.
+     */
+    public void establecerPlazo(long milisegundos) {
+        plazo = milisegundos <= 0 ? 0 : (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milisegundos)) | 1;
+    }
+
+    /**
+     * Instante (System.nanoTime) en que vence la solicitud, o 0 si no tiene plazo.
+     * Los repositorios lo reciben para limitar sus sentencias.
+     */
+    public long getPlazo() {
+        return plazo;
+    }
+
+    /**
+     * Indica si la solicitud tiene plazo y ya venció.
+     */
+    public boolean plazoVencido() {
+        return plazo != 0 && System.nanoTime() - plazo >= 0;
+    }
+
+    /**
+     * Limita la sentencia a lo que le queda al plazo (en segundos, redondeado
+     * hacia arriba porque es la unidad de setQueryTimeout). Sin plazo no hace nada.
+     * @throws PlazoVencidoException si el plazo ya venció.
+     */
+    public static void aplicarPlazo(Statement sentencia, long plazo) throws SQLException {
+        if (plazo == 0) {
+            return;
+        }
+        long restante = plazo - System.nanoTime();
+        if (restante <= 0) {
+            PLAZOS_VENCIDOS.increment();
+            throw new PlazoVencidoException("La solicitud superó su plazo antes de ejecutar la consulta");
+        }
+        sentencia.setQueryTimeout((int) Math.min(Integer.MAX_VALUE,
+                (restante + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Espera máxima por un permiso o una conexión: la configurada, acotada por
+     * lo que le queda al plazo.
+     */
+    private long espera() throws PlazoVencidoException {
+        if (plazo == 0) {
+            return ESPERA_MAXIMA_MS;
+        }
+        long restante = plazo - System.nanoTime();
+        if (restante <= 0) {
+            PLAZOS_VENCIDOS.increment();
+            throw new PlazoVencidoException("La solicitud superó su plazo esperando una conexión");
+        }
+        return Math.min(ESPERA_MAXIMA_MS, TimeUnit.NANOSECONDS.toMillis(restante));
+    }
+
+    /**
+     * Si la espera terminó porque venció el plazo (y no por el límite del pool),
+     * el error es de plazo: la solicitud responde 504 en lugar de 503.
+     */
+    private SQLException vencidoSiCorresponde(PoolAgotadoException e) {
+        if (!plazoVencido()) {
+            return e;
+        }
+        PLAZOS_VENCIDOS.increment();
+        PlazoVencidoException vencido = new PlazoVencidoException("La solicitud superó su plazo esperando una conexión");
+        vencido.initCause(e);
+        return vencido;
+    }
+
+    /**
+     * Obtiene un permiso del limitador (si lo hay) antes de tomar la primera
+     * conexión, esperando como máximo lo mismo que se espera al pool.
+     */
+    private void tomarPermiso() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("La solicitud ya terminó; no se puede tomar una conexión");
+        }
+        if (limitador == null || permisoTomado) {
+            return;
+        }
+        try {
+            if (!limitador.tryAcquire(espera(), TimeUnit.MILLISECONDS)) {
+                throw vencidoSiCorresponde(
+                        new PoolAgotadoException("Se alcanzó el límite de accesos concurrentes a la base de datos"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Espera de permiso interrumpida", e);
+        }
+        permisoTomado = true;
+    }
+
+    /**
+     * Indica si durante la solicitud se llegó a tomar una conexión.
+     */
+    public boolean fueUsada() {
+        return conexion != null || lectura != null;
+    }
+
+    /**
+     * Antes de confirmar: si la solicitud tiene una transacción abierta y su
+     * plazo ya venció, lanza PlazoVencidoException para que quien llama la
+     * deshaga en lugar de confirmarla.
+     */
+    public void verificarPlazo() throws PlazoVencidoException {
+        if (conexion != null && plazoVencido()) {
+            PLAZOS_VENCIDOS.increment();
+            throw new PlazoVencidoException("La solicitud superó su plazo; la transacción no se confirma");
+        }
+    }
+
+    /**
+     * Confirma la transacción (si hubo conexión) y ejecuta las acciones
+     * registradas para después del commit.
+     */
+    public void confirmar() throws SQLException {
+        if (conexion != null && !conexion.getAutoCommit()) {
+            long inicio = System.nanoTime();
+            conexion.commit();
+            COMMIT.registrarDesde(inicio);
+            Transacciones.confirmado(conexion);
+            // la transacción cambió datos: las próximas lecturas del cliente no deben ir a réplicas
+            if (escribio) {
+                escribio = false;
+                AfinidadPrimario.registrarEscritura(cliente);
+            }
+        }
+    }
+
+    /**
+     * Indica que la transacción actual cambió datos. Al confirmarla se renueva
+     * la afinidad del cliente con el primario; una transacción que solo leyó
+     * del primario (por ejemplo porque el cliente ya tenía afinidad) no la
+     * renueva, para que el cliente vuelva a las réplicas al vencer la ventana.
+     * @return true la primera vez en la transacción (para hacer una sola vez
+     *         lo que corresponde por transacción, como incrementar la versión).
+     */
+    public boolean marcarEscritura() {
+        boolean primera = !escribio;
+        escribio = true;
+        return primera;
+    }
+
+    /**
+     * Registra qué hacer cuando termine la transacción de la solicitud:
+     * "confirmada" después del commit (o de inmediato si la solicitud no llegó a
+     * tomar una conexión al primario, porque no hay nada que confirmar) y
+     * "descartada" si la transacción se deshace.
+     */
+    public void alTerminar(Runnable confirmada, Runnable descartada) {
+        if (conexion == null) {
+            confirmada.run();
+            return;
+        }
+        Transacciones.alConfirmar(conexion, confirmada);
+        Transacciones.alDescartar(conexion, descartada);
+    }
+
+    /**
+     * Deshace la transacción (si hubo conexión) y descarta las acciones pendientes.
+     */
+    public void deshacer() throws SQLException {
+        if (conexion != null) {
+            Transacciones.descartar(conexion);
+            escribio = false;
+            if (!conexion.getAutoCommit()) {
+                conexion.rollback();
+                ROLLBACKS.increment();
+            }
+        }
+    }
+
+    /**
+     * Devuelve la conexión al pool si este proveedor la tomó.
+     */
+    public void cerrar() throws SQLException {
+        cerrado = true;
+        if (permisoTomado) {
+            permisoTomado = false;
+            limitador.release();
+        }
+        if (lectura != null) {
+            Connection devolver = lectura;
+            lectura = null;
+            devolver.close();
+        }
+        if (conexion != null && propia) {
+            Connection devolver = conexion;
+            conexion = null;
+            Transacciones.descartar(devolver);
+            devolver.close();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Registro en memoria de las solicitudes con cabecera Idempotency-Key. Guarda
+ * la respuesta de cada clave para que un reintento del cliente reciba la misma
+ * respuesta sin volver a ejecutar la escritura (ni tocar MySQL).
+ *
+ * - La primera solicitud con una clave la reserva y se ejecuta normalmente.
+ *   Su resultado se publica recién cuando la transacción se confirma; si se
+ *   deshace, la clave se libera para que un reintento vuelva a ejecutarse.
+ * - Las solicitudes idénticas que llegan mientras la primera está en curso no
+ *   se ejecutan: esperan su resultado (se agrupan en una sola ejecución).
+ * - Una clave reutilizada con otro cuerpo u otra operación se rechaza: la
+ *   huella (método, ruta y hash del cuerpo) no coincide.
+ *
+ * Es acotado (hospital.idempotencia.capacidad) y cada clave vence después de
+ * hospital.idempotencia.ttlMs. Como todas las claves viven lo mismo, el orden
+ * de inserción es también el orden de vencimiento y basta revisar las más
+ * antiguas. Una clave que sigue "en curso" después de
+ * hospital.idempotencia.enCursoMaximoMs se considera abandonada (la solicitud
+ * original nunca terminó) y el siguiente reintento la vuelve a ejecutar.
+ * Las claves solo se conocen en esta instancia.
+ */
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class RegistroIdempotencia {
+
+    private static final RegistroIdempotencia INSTANCIA = new RegistroIdempotencia(
+            Configuracion.entero("idempotencia.capacidad", 10_000),
+            Configuracion.largo("idempotencia.ttlMs", 24 * 60 * 60 * 1000L));
+    private static final long EN_CURSO_MAXIMO_MS = Configuracion.largo("idempotencia.enCursoMaximoMs", 60_000);
+
+    private static final LongAdder REPETIDAS = Metricas.contador("hospital_idempotencia_repeticiones_total");
+    private static final LongAdder AGRUPADAS = Metricas.contador("hospital_idempotencia_agrupadas_total");
+    private static final LongAdder CONFLICTOS = Metricas.contador("hospital_idempotencia_conflictos_total");
+
+    /**
+     * Respuesta guardada para repetirla tal cual.
+     */
+    public record Respuesta(int estado, String cuerpo) {
+    }
+
+    /**
+     * Resultado de reservar una clave.
+     */
+    public enum Estado {
+        NUEVA,           // la solicitud debe ejecutarse y luego llamar a terminar()
+        EN_CURSO,        // otra solicitud idéntica se está ejecutando: esperar el resultado
+        COMPLETADA,      // ya hay respuesta guardada: repetirla
+        HUELLA_DISTINTA  // la clave ya se usó con otra solicitud
+    }
+
+    public record Reserva(Estado estado, CompletableFuture<Respuesta> resultado) {
+    }
+
+    private final int capacidad;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+    // ReentrantLock y no synchronized para no fijar hilos virtuales
+    private final ReentrantLock candado = new ReentrantLock();
+
+    public RegistroIdempotencia(int capacidad, long ttlMs) {
+        this.capacidad = Math.max(1, capacidad);
+        this.ttlMs = ttlMs;
+        Metricas.indicador("hospital_idempotencia_claves", this::tamano);
+    }
+
+    public static RegistroIdempotencia getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Reserva la clave o devuelve el estado en que está.
+     * @param huella identifica la solicitud (método, ruta y cuerpo).
+     */
+    public Reserva reservar(String clave, String huella) {
+        long ahora = System.currentTimeMillis();
+        candado.lock();
+        try {
+            purgar(ahora);
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null && !entrada.resultado.isDone() && ahora - entrada.inicio > EN_CURSO_MAXIMO_MS) {
+                entradas.remove(clave);
+                entrada = null;
+            }
+            if (entrada == null) {
+                entrada = new Entrada(huella, ahora, ahora + ttlMs);
+                entradas.put(clave, entrada);
+                return new Reserva(Estado.NUEVA, entrada.resultado);
+            }
+            if (!entrada.huella.equals(huella)) {
+                CONFLICTOS.increment();
+                return new Reserva(Estado.HUELLA_DISTINTA, null);
+            }
+            if (entrada.resultado.isDone()) {
+                REPETIDAS.increment();
+                return new Reserva(Estado.COMPLETADA, entrada.resultado);
+            }
+            AGRUPADAS.increment();
+            return new Reserva(Estado.EN_CURSO, entrada.resultado);
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Publica el resultado de una clave reservada con NUEVA. Las solicitudes que
+     * esperaban la reciben en cualquier caso.
+     * @param guardar true para conservarla y repetirla en los reintentos; false
+     *                para liberar la clave (errores transitorios, rollback).
+     */
+    public void terminar(String clave, Reserva reserva, Respuesta respuesta, boolean guardar) {
+        if (!guardar) {
+            candado.lock();
+            try {
+                // solo se libera si la entrada sigue siendo la de esta reserva
+                Entrada entrada = entradas.get(clave);
+                if (entrada != null && entrada.resultado == reserva.resultado()) {
+                    entradas.remove(clave);
+                }
+            } finally {
+                candado.unlock();
+            }
+        }
+        reserva.resultado().complete(respuesta);
+    }
+
+    private int tamano() {
+        candado.lock();
+        try {
+            return entradas.size();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Quita las claves vencidas y, si se supera la capacidad, las más antiguas.
+     */
+    private void purgar(long ahora) {
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (entrada.vence > ahora && entradas.size() < capacidad) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private static final class Entrada {
+        final String huella;
+        final long inicio;
+        final long vence;
+        final CompletableFuture<Respuesta> resultado = new CompletableFuture<>();
+
+        Entrada(String huella, long inicio, long vence) {
+            this.huella = huella;
+            this.inicio = inicio;
+            this.vence = vence;
+        }
+    }
+}
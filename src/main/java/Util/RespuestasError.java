@@ -0,0 +1,66 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Traducción de excepciones a respuestas HTTP de error, compartida por los
+ * recursos REST y por EjecutorPeticiones, para que una solicitud falle igual
+ * en el hilo del contenedor y en un hilo virtual:
+ * - plazo vencido (SQLTimeoutException en la cadena de causas): 504;
+ * - pool agotado (PoolAgotadoException): 503 con Retry-After;
+ * - cualquier otro error: el estado y el cuerpo indicados.
+ * Los errores internos (5xx) se registran en el log con su traza; al cliente
+ * le llega un cuerpo fijo (ERROR_INTERNO), nunca el mensaje de la excepción,
+ * que puede traer SQL o nombres del esquema y no está escapado como JSON.
+ */
+import jakarta.ws.rs.core.Response;
+
+import java.sql.SQLTimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class RespuestasError {
+
+    private static final Logger LOG = Logger.getLogger(RespuestasError.class.getName());
+
+    /** Cuerpo de las respuestas 500 sin un mensaje propio. */
+    public static final String ERROR_INTERNO = "{\"error\": \"Error interno\"}";
+
+    private RespuestasError() {
+    }
+
+    /**
+     * Construye la respuesta de error para la excepción.
+     * @param estado código HTTP si la causa no es plazo vencido ni pool agotado.
+     * @param cuerpo cuerpo de la respuesta en ese caso.
+     */
+    public static Response error(Throwable e, int estado, Object cuerpo) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLTimeoutException) {
+                LOG.log(Level.WARNING, "La solicitud superó su plazo: {0}", causa.getMessage());
+                return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                        .entity("{\"error\": \"La solicitud superó su plazo, intente nuevamente\"}")
+                        .build();
+            }
+            if (causa instanceof PoolAgotadoException) {
+                return servicioNoDisponible();
+            }
+        }
+        if (estado >= 500) {
+            LOG.log(Level.SEVERE, "Error interno atendiendo la solicitud", e);
+        }
+        return Response.status(estado).entity(cuerpo).build();
+    }
+
+    /**
+     * 503 con Retry-After: el servidor no tiene capacidad ahora, el cliente
+     * puede reintentar en un segundo.
+     */
+    public static Response servicioNoDisponible() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .entity("{\"error\": \"Servicio no disponible, intente nuevamente\"}")
+                .build();
+    }
+}
@@ -0,0 +1,514 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Copia compacta en memoria de la tabla paciente, para el modelo de lectura
+ * (ver Service.ModeloPacientes). En vez de un HashMap<Integer, Paciente>,
+ * que por fila cuesta una entrada, un Integer, un Paciente y cuatro String,
+ * los datos se guardan por columnas:
+ *
+ * - ids: int[] ordenado de menor a mayor (permite paginar por cursor con una
+ *   búsqueda binaria, igual que WHERE id > ? ORDER BY id).
+ * - edades: int[]; activos: un bit por fila en un long[].
+ * - textos: un solo byte[] por fila con nombre, cédula, correo y dirección
+ *   en UTF-8, cada uno precedido por su largo en dos bytes.
+ * - índice id → fila: direccionamiento abierto con sondeo lineal sobre dos
+ *   int[] (sin objetos por entrada), con carga máxima de 3/4.
+ *
+ * Las filas nuevas casi siempre tienen el id más alto y se agregan al final.
+ * Si llega una fuera de orden (dos altas confirmadas en distinto orden) o se
+ * quita una, se desplazan las filas posteriores; es poco frecuente.
+ *
+ * Muchas lecturas y pocas escrituras: se usa un ReentrantReadWriteLock (no
+ * synchronized, para no fijar hilos virtuales). Cada escritura incrementa la
+ * versión dentro del candado, de modo que quien lee la versión antes que los
+ * datos nunca recibe datos más antiguos que esa versión.
+ */
+import Model.FiltroPaciente;
+import Model.Paciente;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public final class TablaPacientes {
+
+    // Largo que representa un texto null
+    private static final int NULO = 0xFFFF;
+    // Campos de texto, en el orden en que se guardan
+    private static final int CAMPOS_TEXTO = 4;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+
+    // Índice id → fila; 0 marca una posición libre (los ids empiezan en 1)
+    private int[] claves;
+    private int[] posiciones;
+
+    // Columnas, una posición por fila
+    private int[] ids;
+    private int[] edades;
+    private long[] activos;
+    private byte[][] textos;
+    private int filas;
+    private long bytesTexto;
+    private volatile long version;
+
+    /**
+     * @param capacidad filas esperadas (se crece automáticamente si hay más).
+     * @param version versión inicial (ver getVersion).
+     */
+    public TablaPacientes(int capacidad, long version) {
+        int tamano = Math.max(16, capacidad);
+        ids = new int[tamano];
+        edades = new int[tamano];
+        activos = new long[(tamano + 63) >>> 6];
+        textos = new byte[tamano][];
+        int indice = Integer.highestOneBit(Math.max(16, tamano * 4 / 3) - 1) << 1;
+        claves = new int[indice];
+        posiciones = new int[indice];
+        this.version = version;
+    }
+
+    /**
+     * Número que cambia con cada escritura. Sirve como versión de las
+     * respuestas de listado (ETag) mientras se lee desde el modelo.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int tamano() {
+        candado.readLock().lock();
+        try {
+            return filas;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Memoria aproximada que ocupan los datos (arreglos y textos), suponiendo
+     * referencias comprimidas y 16 bytes de cabecera por arreglo de texto.
+     */
+    public long bytesAproximados() {
+        candado.readLock().lock();
+        try {
+            return (long) claves.length * 8 + (long) ids.length * 12 + (long) activos.length * 8
+                    + (long) filas * 16 + bytesTexto;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega o reemplaza la fila de un paciente.
+     */
+    public void poner(Paciente p) {
+        if (p.getId() <= 0) {
+            return;
+        }
+        byte[] texto = codificar(p);
+        candado.writeLock().lock();
+        try {
+            int fila = buscarFila(p.getId());
+            if (fila < 0) {
+                fila = insertarFila(p.getId());
+                bytesTexto += texto.length;
+            } else {
+                bytesTexto += texto.length - textos[fila].length;
+            }
+            edades[fila] = p.getEdad();
+            ponerBit(fila, p.isActivo());
+            textos[fila] = texto;
+            version++;
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cambia solo el estado activo de un paciente.
+     * @return false si el paciente no está en la tabla.
+     */
+    public boolean cambiarEstado(int id, boolean activo) {
+        candado.writeLock().lock();
+        try {
+            int fila = buscarFila(id);
+            if (fila < 0) {
+                return false;
+            }
+            ponerBit(fila, activo);
+            version++;
+            return true;
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un paciente (solo lo usa la reconciliación: la API no borra filas).
+     * @return false si no estaba.
+     */
+    public boolean quitar(int id) {
+        candado.writeLock().lock();
+        try {
+            int fila = buscarFila(id);
+            if (fila < 0) {
+                return false;
+            }
+            bytesTexto -= textos[fila].length;
+            desindexar(id);
+            desplazar(fila + 1, fila);
+            filas--;
+            textos[filas] = null;
+            version++;
+            return true;
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return el paciente (un objeto nuevo en cada llamada) o null si no está.
+     */
+    public Paciente obtener(int id) {
+        candado.readLock().lock();
+        try {
+            int fila = buscarFila(id);
+            return fila < 0 ? null : leerFila(fila);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Equivalente en memoria de PacienteRepository.listarPagina: pacientes con
+     * id mayor que "despuesDe" que cumplen los filtros, en orden de id.
+     * El prefijo del nombre se compara sin distinguir mayúsculas ni tildes,
+     * como la intercalación de la columna en MySQL.
+     * La proyección del filtro no se aplica: se devuelven todos los campos.
+     */
+    public List<Paciente> pagina(FiltroPaciente filtro, int limite) {
+        Boolean activo = filtro.getActivo();
+        Integer edadMin = filtro.getEdadMin();
+        Integer edadMax = filtro.getEdadMax();
+        String prefijoNombre = filtro.getPrefijoNombre();
+        List<Paciente> lista = new ArrayList<>(Math.min(limite, 1000));
+        candado.readLock().lock();
+        try {
+            for (int fila = primeraMayor(filtro.getDespuesDe()); fila < filas && lista.size() < limite; fila++) {
+                if (activo != null && leerBit(fila) != activo) {
+                    continue;
+                }
+                if ((edadMin != null && edades[fila] < edadMin) || (edadMax != null && edades[fila] > edadMax)) {
+                    continue;
+                }
+                if (prefijoNombre != null && !empiezaCon(textos[fila], prefijoNombre)) {
+                    continue;
+                }
+                lista.add(leerFila(fila));
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+        return lista;
+    }
+
+    /**
+     * Todos los pacientes, en orden de id.
+     */
+    public List<Paciente> todos() {
+        candado.readLock().lock();
+        try {
+            List<Paciente> lista = new ArrayList<>(filas);
+            for (int fila = 0; fila < filas; fila++) {
+                lista.add(leerFila(fila));
+            }
+            return lista;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copia ordenada de los ids presentes (para la reconciliación).
+     */
+    public int[] ids() {
+        candado.readLock().lock();
+        try {
+            return Arrays.copyOf(ids, filas);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    // ---- filas y columnas (con el candado tomado) ----
+
+    /**
+     * Reserva la fila para un id nuevo manteniendo el orden y la indexa.
+     */
+    private int insertarFila(int id) {
+        if (filas == ids.length) {
+            crecer();
+        }
+        if ((filas + 1) * 4L > claves.length * 3L) {
+            reindexar(claves.length * 2);
+        }
+        int fila = filas == 0 || ids[filas - 1] < id ? filas : primeraMayor(id);
+        if (fila < filas) {
+            desplazar(fila, fila + 1);
+        }
+        ids[fila] = id;
+        filas++;
+        indexar(id, fila);
+        return fila;
+    }
+
+    /**
+     * Mueve las filas [desde, filas) para que empiecen en "hacia" y actualiza
+     * su posición en el índice.
+     */
+    private void desplazar(int desde, int hacia) {
+        int cantidad = filas - desde;
+        if (cantidad <= 0) {
+            return;
+        }
+        System.arraycopy(ids, desde, ids, hacia, cantidad);
+        System.arraycopy(edades, desde, edades, hacia, cantidad);
+        System.arraycopy(textos, desde, textos, hacia, cantidad);
+        if (hacia > desde) {
+            for (int i = cantidad - 1; i >= 0; i--) {
+                ponerBit(hacia + i, leerBit(desde + i));
+            }
+        } else {
+            for (int i = 0; i < cantidad; i++) {
+                ponerBit(hacia + i, leerBit(desde + i));
+            }
+        }
+        for (int fila = hacia; fila < hacia + cantidad; fila++) {
+            indexar(ids[fila], fila);
+        }
+    }
+
+    private void crecer() {
+        int tamano = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, tamano);
+        edades = Arrays.copyOf(edades, tamano);
+        textos = Arrays.copyOf(textos, tamano);
+        activos = Arrays.copyOf(activos, (tamano + 63) >>> 6);
+    }
+
+    /** Primera fila con id mayor que el indicado (búsqueda binaria). */
+    private int primeraMayor(int id) {
+        int bajo = 0;
+        int alto = filas;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (ids[medio] <= id) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private boolean leerBit(int fila) {
+        return (activos[fila >>> 6] & (1L << fila)) != 0;
+    }
+
+    private void ponerBit(int fila, boolean valor) {
+        if (valor) {
+            activos[fila >>> 6] |= 1L << fila;
+        } else {
+            activos[fila >>> 6] &= ~(1L << fila);
+        }
+    }
+
+    private Paciente leerFila(int fila) {
+        String[] texto = decodificar(textos[fila]);
+        return new Paciente(ids[fila], texto[0], texto[1], texto[2], edades[fila], texto[3], leerBit(fila));
+    }
+
+    // ---- índice id → fila ----
+
+    private int ranura(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (claves.length - 1);
+    }
+
+    private int buscarFila(int id) {
+        int mascara = claves.length - 1;
+        for (int i = ranura(id); ; i = (i + 1) & mascara) {
+            int clave = claves[i];
+            if (clave == id) {
+                return posiciones[i];
+            }
+            if (clave == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /** Inserta el id o actualiza su fila si ya estaba. */
+    private void indexar(int id, int fila) {
+        int mascara = claves.length - 1;
+        int i = ranura(id);
+        while (claves[i] != 0 && claves[i] != id) {
+            i = (i + 1) & mascara;
+        }
+        claves[i] = id;
+        posiciones[i] = fila;
+    }
+
+    /**
+     * Quita el id del índice. Con sondeo lineal no basta con vaciar la
+     * posición: las claves siguientes del mismo grupo se corren hacia atrás
+     * para que ninguna búsqueda se corte antes de tiempo.
+     */
+    private void desindexar(int id) {
+        int mascara = claves.length - 1;
+        int i = ranura(id);
+        while (claves[i] != id) {
+            if (claves[i] == 0) {
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            if (claves[j] == 0) {
+                break;
+            }
+            int inicio = ranura(claves[j]);
+            // la clave en j puede quedarse si su ranura ideal está entre i (excluida) y j
+            boolean quedarse = i <= j ? (i < inicio && inicio <= j) : (i < inicio || inicio <= j);
+            if (!quedarse) {
+                claves[i] = claves[j];
+                posiciones[i] = posiciones[j];
+                i = j;
+            }
+        }
+        claves[i] = 0;
+    }
+
+    private void reindexar(int tamano) {
+        claves = new int[tamano];
+        posiciones = new int[tamano];
+        for (int fila = 0; fila < filas; fila++) {
+            indexar(ids[fila], fila);
+        }
+    }
+
+    // ---- textos ----
+
+    /**
+     * nombre, cédula, correo y dirección en UTF-8, cada uno con su largo en
+     * dos bytes (NULO para null).
+     */
+    private static byte[] codificar(Paciente p) {
+        byte[][] campos = {utf8(p.getNombre()), utf8(p.getCedula()), utf8(p.getCorreo()), utf8(p.getDireccion())};
+        int largo = 0;
+        for (byte[] campo : campos) {
+            largo += 2 + (campo == null ? 0 : campo.length);
+        }
+        byte[] texto = new byte[largo];
+        int pos = 0;
+        for (byte[] campo : campos) {
+            int n = campo == null ? NULO : campo.length;
+            texto[pos++] = (byte) (n >>> 8);
+            texto[pos++] = (byte) n;
+            if (campo != null) {
+                System.arraycopy(campo, 0, texto, pos, campo.length);
+                pos += campo.length;
+            }
+        }
+        return texto;
+    }
+
+    private static byte[] utf8(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULO) {
+            throw new IllegalArgumentException("Texto demasiado largo para el modelo en memoria");
+        }
+        return bytes;
+    }
+
+    private static String[] decodificar(byte[] texto) {
+        String[] campos = new String[CAMPOS_TEXTO];
+        int pos = 0;
+        for (int i = 0; i < CAMPOS_TEXTO; i++) {
+            int n = ((texto[pos] & 0xFF) << 8) | (texto[pos + 1] & 0xFF);
+            pos += 2;
+            if (n != NULO) {
+                campos[i] = new String(texto, pos, n, StandardCharsets.UTF_8);
+                pos += n;
+            }
+        }
+        return campos;
+    }
+
+    /**
+     * Compara el prefijo con el nombre guardado decodificando el UTF-8 sobre la
+     * marcha, sin crear el String (el filtro puede recorrer muchas filas).
+     */
+    private static boolean empiezaCon(byte[] texto, String prefijo) {
+        int n = ((texto[0] & 0xFF) << 8) | (texto[1] & 0xFF);
+        if (n == NULO) {
+            return false;
+        }
+        int pos = 2;
+        int fin = 2 + n;
+        for (int i = 0; i < prefijo.length(); i++) {
+            if (pos >= fin) {
+                return false;
+            }
+            int b = texto[pos] & 0xFF;
+            char c;
+            if (b < 0x80) {
+                c = (char) b;
+                pos++;
+            } else if (b < 0xE0 && pos + 1 < fin) {
+                c = (char) (((b & 0x1F) << 6) | (texto[pos + 1] & 0x3F));
+                pos += 2;
+            } else if (b < 0xF0 && pos + 2 < fin) {
+                c = (char) (((b & 0x0F) << 12) | ((texto[pos + 1] & 0x3F) << 6) | (texto[pos + 2] & 0x3F));
+                pos += 3;
+            } else {
+                // fuera del plano básico (emojis...): se compara con el String completo
+                String nombre = new String(texto, 2, n, StandardCharsets.UTF_8);
+                return nombre.length() >= prefijo.length()
+                        && nombre.regionMatches(true, 0, prefijo, 0, prefijo.length());
+            }
+            if (plegar(c) != plegar(prefijo.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Minúscula sin tilde, para comparar como la intercalación _ai_ci de MySQL
+     * (en ella ñ y n también son iguales).
+     */
+    private static char plegar(char c) {
+        char m = Character.toLowerCase(c);
+        switch (m) {
+            case 'á': case 'à': case 'ä': case 'â': return 'a';
+            case 'é': case 'è': case 'ë': case 'ê': return 'e';
+            case 'í': case 'ì': case 'ï': case 'î': return 'i';
+            case 'ó': case 'ò': case 'ö': case 'ô': return 'o';
+            case 'ú': case 'ù': case 'ü': case 'û': return 'u';
+            case 'ñ': return 'n';
+            default: return m;
+        }
+    }
+}
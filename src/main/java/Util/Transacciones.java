@@ -0,0 +1,102 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Registro de acciones que deben ejecutarse solo cuando la transacción de una
+ * conexión se confirma (commit), por ejemplo invalidar o actualizar la caché.
+ * Si la transacción se deshace (rollback), las acciones se descartan y se
+ * ejecutan, en cambio, las registradas con alDescartar().
+ *
+ * El filtro de conexión llama a confirmado() justo después del commit y a
+ * descartar() en caso de rollback o al devolver la conexión.
+ */
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class Transacciones {
+
+    private static final Logger LOG = Logger.getLogger(Transacciones.class.getName());
+
+    // Acciones pendientes por conexión (las conexiones del pool usan identidad en equals/hashCode)
+    private static final Map<Connection, List<Runnable>> PENDIENTES = new ConcurrentHashMap<>();
+    // Acciones a ejecutar si la transacción termina sin commit
+    private static final Map<Connection, List<Runnable>> AL_DESCARTAR = new ConcurrentHashMap<>();
+
+    private Transacciones() {
+    }
+
+    /**
+     * Programa una acción para después del commit. Si la conexión está en modo
+     * autocommit no hay transacción abierta y la acción se ejecuta de inmediato.
+     */
+    public static void alConfirmar(Connection conn, Runnable accion) {
+        try {
+            if (conn.getAutoCommit()) {
+                ejecutar(accion);
+                return;
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "No se pudo consultar autocommit", e);
+        }
+        PENDIENTES.computeIfAbsent(conn, c -> new ArrayList<>()).add(accion);
+    }
+
+    /**
+     * Programa una acción para el caso contrario: la transacción se deshace o la
+     * conexión se devuelve sin commit. En modo autocommit no hace nada, porque
+     * no hay nada que deshacer.
+     */
+    public static void alDescartar(Connection conn, Runnable accion) {
+        try {
+            if (conn.getAutoCommit()) {
+                return;
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "No se pudo consultar autocommit", e);
+        }
+        AL_DESCARTAR.computeIfAbsent(conn, c -> new ArrayList<>()).add(accion);
+    }
+
+    /**
+     * Ejecuta las acciones pendientes de la conexión; se llama después del commit.
+     */
+    public static void confirmado(Connection conn) {
+        AL_DESCARTAR.remove(conn);
+        List<Runnable> acciones = PENDIENTES.remove(conn);
+        if (acciones != null) {
+            for (Runnable accion : acciones) {
+                ejecutar(accion);
+            }
+        }
+    }
+
+    /**
+     * Descarta las acciones pendientes; se llama después de un rollback.
+     */
+    public static void descartar(Connection conn) {
+        PENDIENTES.remove(conn);
+        List<Runnable> acciones = AL_DESCARTAR.remove(conn);
+        if (acciones != null) {
+            for (Runnable accion : acciones) {
+                ejecutar(accion);
+            }
+        }
+    }
+
+    private static void ejecutar(Runnable accion) {
+        try {
+            accion.run();
+        } catch (RuntimeException e) {
+            // una acción posterior al commit nunca debe romper la respuesta
+            LOG.log(Level.WARNING, "Error en acción posterior al commit", e);
+        }
+    }
+}
@@ -12,10 +12,19 @@ package Util;
  *
  * El metodo esCedulaValida realiza múltiples verificaciones: longitud,
  * provincia, tercer dígito y cálculo del dígito verificador.
+ *
+ * La validación trabaja directamente sobre los caracteres (o bytes ASCII),
+ * sin expresiones regulares, substrings ni arreglos temporales, porque se
+ * ejecuta en cada alta, cada actualización y dentro de las cargas masivas.
  */
 
+import java.util.BitSet;
+import java.util.List;
+
 public class ValidadorCedula {
 
+    private static final int LONGITUD = 10;
+
     /**
      * Valida si una cédula ecuatoriana es correcta utilizando reglas
      * formales y el algoritmo módulo 10.
@@ -23,41 +32,105 @@ public class ValidadorCedula {
      * @return true si la cédula es válida, false en caso contrario.
      */
     public static boolean esCedulaValida(String cedula){
-        // 1. Validación básica: no nula, solo dígitos y exactamente 10 caracteres
-        if(cedula == null || !cedula.matches("\\d{10}")) {
+        return esCedulaValida((CharSequence) cedula);
+    }
+
+    /**
+     * Misma validación sobre cualquier CharSequence (StringBuilder, CharBuffer, etc.).
+     * @param cedula caracteres de la cédula.
+     * @return true si la cédula es válida, false en caso contrario.
+     */
+    public static boolean esCedulaValida(CharSequence cedula) {
+        // 1. Validación básica: no nula y exactamente 10 caracteres
+        if (cedula == null || cedula.length() != LONGITUD) {
             return false;
         }
-        // 2. Validación del código de provincia (de 01 a 24)
-        int provincia = Integer.parseInt(cedula.substring(0, 2));
-        if (provincia < 1 || provincia > 24) {
-            return false;
+        // 2. Solo dígitos ASCII; se acumula la suma del módulo 10 en la misma pasada
+        int suma = 0;
+        for (int i = 0; i < LONGITUD - 1; i++) {
+            int digito = cedula.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return false;
+            }
+            suma += ponderar(digito, i);
         }
-        // 3. Validación del tercer dígito (0–5 para personas naturales)
-        int tercerDigito = Character.getNumericValue(cedula.charAt(2));
-        if (tercerDigito >= 6) {
+        int digitoVerificador = cedula.charAt(LONGITUD - 1) - '0';
+        if (digitoVerificador < 0 || digitoVerificador > 9) {
             return false;
         }
-        // 4. Algoritmo Módulo 10 usado para calcular el dígito verificador
-        int[] coeficientes = {2, 1, 2, 1, 2, 1, 2, 1, 2};
-        int suma= 0;
+        return reglasValidas(cedula.charAt(0) - '0', cedula.charAt(1) - '0',
+                cedula.charAt(2) - '0', suma, digitoVerificador);
+    }
 
-        // Multiplicación por coeficientes y suma ajustada
-        for(int i = 0; i<9; i++){
-            int valor = Character.getNumericValue(cedula.charAt(i)) * coeficientes[i];
+    /**
+     * Misma validación sobre bytes ASCII, por ejemplo tomados directamente del
+     * cuerpo de una solicitud sin convertirlos antes a String.
+     * @param datos arreglo con los bytes.
+     * @param desde posición del primer byte de la cédula.
+     * @param longitud cantidad de bytes de la cédula.
+     * @return true si la cédula es válida, false en caso contrario.
+     */
+    public static boolean esCedulaValida(byte[] datos, int desde, int longitud) {
+        if (datos == null || longitud != LONGITUD || desde < 0 || desde > datos.length - LONGITUD) {
+            return false;
+        }
+        int suma = 0;
+        for (int i = 0; i < LONGITUD - 1; i++) {
+            int digito = datos[desde + i] - '0';
+            if (digito < 0 || digito > 9) {
+                return false;
+            }
+            suma += ponderar(digito, i);
+        }
+        int digitoVerificador = datos[desde + LONGITUD - 1] - '0';
+        if (digitoVerificador < 0 || digitoVerificador > 9) {
+            return false;
+        }
+        return reglasValidas(datos[desde] - '0', datos[desde + 1] - '0',
+                datos[desde + 2] - '0', suma, digitoVerificador);
+    }
 
-            // Si el resultado es 10 o más, se resta 9 (regla del módulo 10)
-            if (valor >= 10) valor -= 9;
-            suma += valor;
+    /**
+     * Valida muchas cédulas de una vez.
+     * @param cedulas lista de cédulas.
+     * @return conjunto de bits donde el bit i está encendido si la cédula i es válida.
+     */
+    public static BitSet validarLote(List<? extends CharSequence> cedulas) {
+        BitSet validas = new BitSet(cedulas.size());
+        for (int i = 0; i < cedulas.size(); i++) {
+            if (esCedulaValida(cedulas.get(i))) {
+                validas.set(i);
+            }
         }
-        // Cálculo del dígito verificador esperado
-        int digitoVerficador = Character.getNumericValue(cedula.charAt(9));
-        int decenaSuperior = ((suma + 9)/10)*10;
-        int resultado = decenaSuperior - suma;
+        return validas;
+    }
 
-        // Si el resultado es 10, se reemplaza por 0 (regla del algoritmo)
-        if (resultado == 10) resultado = 0;
+    /**
+     * Algoritmo Módulo 10: los dígitos en posición par se multiplican por 2 y
+     * los impares por 1 (coeficientes 2,1,2,1,...); si el resultado es 10 o
+     * más, se resta 9.
+     */
+    private static int ponderar(int digito, int posicion) {
+        if ((posicion & 1) == 0) {
+            int valor = digito * 2;
+            return valor >= 10 ? valor - 9 : valor;
+        }
+        return digito;
+    }
 
-        // Validación final: comparar con el dígito verificador real
-        return resultado == digitoVerficador;
+    /**
+     * Reglas de provincia (01 a 24), tercer dígito (0–5 para personas naturales)
+     * y dígito verificador. Si el resultado del módulo es 10 se reemplaza por 0.
+     */
+    private static boolean reglasValidas(int d0, int d1, int tercerDigito, int suma, int digitoVerificador) {
+        int provincia = d0 * 10 + d1;
+        if (provincia < 1 || provincia > 24) {
+            return false;
+        }
+        if (tercerDigito >= 6) {
+            return false;
+        }
+        int resultado = (10 - suma % 10) % 10;
+        return resultado == digitoVerificador;
     }
 }
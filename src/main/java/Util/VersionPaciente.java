@@ -0,0 +1,88 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Calcula las etiquetas de versión (ETag fuertes) de los recursos de
+ * pacientes. La de un paciente es un hash SHA-256 de todos sus campos, por lo
+ * que cambia si y solo si cambia su representación. La del listado combina la
+ * versión de la tabla (suma de los fragmentos de tabla_version, que cada
+ * transacción que cambia pacientes incrementa una vez) con los
+ * parámetros de la consulta, de modo que se calcula sin leer los pacientes.
+ */
+import Model.Paciente;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+public final class VersionPaciente {
+
+    // Bytes del hash que se conservan (128 bits son suficientes para una etiqueta)
+    private static final int LARGO = 16;
+
+    private VersionPaciente() {
+    }
+
+    /**
+     * Etiqueta del paciente, calculada a partir de todos sus campos.
+     */
+    public static String etiqueta(Paciente p) {
+        MessageDigest digest = sha256();
+        agregar(digest, String.valueOf(p.getId()));
+        agregar(digest, p.getNombre());
+        agregar(digest, p.getCedula());
+        agregar(digest, p.getCorreo());
+        agregar(digest, String.valueOf(p.getEdad()));
+        agregar(digest, p.getDireccion());
+        agregar(digest, String.valueOf(p.isActivo()));
+        return codificar(digest.digest());
+    }
+
+    /**
+     * Etiqueta del listado para la versión de tabla y la consulta indicadas.
+     * @param version valor de tabla_version para paciente.
+     * @param consulta parámetros de la URL (cursor, filtros, campos...).
+     */
+    public static String etiquetaColeccion(long version, String consulta) {
+        MessageDigest digest = sha256();
+        agregar(digest, "paciente");
+        agregar(digest, String.valueOf(version));
+        agregar(digest, consulta);
+        return codificar(digest.digest());
+    }
+
+    /**
+     * Agrega un campo precedido de su largo, para que ("ab","c") y ("a","bc")
+     * no produzcan el mismo hash; null se distingue de la cadena vacía.
+     */
+    private static void agregar(MessageDigest digest, String valor) {
+        if (valor == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static String codificar(byte[] hash) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, LARGO));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // todas las JVM deben incluir SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
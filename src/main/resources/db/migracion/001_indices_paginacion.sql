@@ -0,0 +1,12 @@
+-- Autor: Génesis Escobar
+-- Fecha: 06-12-2025
+-- Descripción:
+-- Índices de apoyo para el listado paginado por cursor (GET /api/pacientes).
+-- La paginación usa WHERE id > ? ORDER BY id LIMIT ?, que ya recorre la llave
+-- primaria; estos índices cubren los filtros más comunes.
+
+-- Filtro por estado: recorre solo los activos/inactivos en orden de id
+CREATE INDEX idx_paciente_activo_id ON paciente (activo, id);
+
+-- Filtro por prefijo de nombre (nombre LIKE 'prefijo%')
+CREATE INDEX idx_paciente_nombre ON paciente (nombre);
@@ -0,0 +1,18 @@
+-- Autor: Génesis Escobar
+-- Fecha: 06-12-2025
+-- Descripción:
+-- Índices para la búsqueda de pacientes (GET /api/pacientes/search?q=).
+-- Cada tipo de consulta usa su propio índice, de modo que la búsqueda no
+-- recorre la tabla aunque tenga millones de filas.
+
+-- Búsqueda por cédula parcial (cedula LIKE 'prefijo%' ORDER BY cedula)
+CREATE INDEX idx_paciente_cedula ON paciente (cedula);
+
+-- Búsqueda por correo parcial (correo LIKE 'prefijo%' ORDER BY correo)
+CREATE INDEX idx_paciente_correo ON paciente (correo);
+
+-- Búsqueda por palabras del nombre o del correo, con relevancia
+-- (MATCH ... AGAINST en modo booleano con prefijos 'palabra*').
+-- Las palabras de menos de innodb_ft_min_token_size (3 por defecto) no se
+-- indexan; para esas consultas el servicio usa el índice idx_paciente_nombre.
+CREATE FULLTEXT INDEX ft_paciente_nombre_correo ON paciente (nombre, correo);
@@ -0,0 +1,29 @@
+-- Autor: Génesis Escobar
+-- Fecha: 06-12-2025
+-- Descripción:
+-- Versión a nivel de tabla para las solicitudes condicionales del listado
+-- (ETag + If-None-Match en GET /api/pacientes). Cada INSERT, UPDATE o DELETE
+-- sobre paciente incrementa la versión dentro de la misma transacción, así que
+-- basta leer una fila por llave primaria para saber si el listado cambió,
+-- sin volver a leer los pacientes.
+--
+-- Nota: la fila de versión queda bloqueada hasta el commit de cada transacción
+-- que escribe en paciente, por lo que las escrituras concurrentes sobre la
+-- tabla se confirman de a una. Las transacciones de la API son cortas (una por
+-- solicitud o por lote de carga masiva), por lo que el efecto es pequeño.
+
+CREATE TABLE tabla_version (
+    tabla   VARCHAR(64) NOT NULL PRIMARY KEY,
+    version BIGINT      NOT NULL
+);
+
+INSERT INTO tabla_version (tabla, version) VALUES ('paciente', 1);
+
+CREATE TRIGGER trg_paciente_version_insert AFTER INSERT ON paciente
+    FOR EACH ROW UPDATE tabla_version SET version = version + 1 WHERE tabla = 'paciente';
+
+CREATE TRIGGER trg_paciente_version_update AFTER UPDATE ON paciente
+    FOR EACH ROW UPDATE tabla_version SET version = version + 1 WHERE tabla = 'paciente';
+
+CREATE TRIGGER trg_paciente_version_delete AFTER DELETE ON paciente
+    FOR EACH ROW UPDATE tabla_version SET version = version + 1 WHERE tabla = 'paciente';
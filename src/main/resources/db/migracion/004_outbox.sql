@@ -0,0 +1,25 @@
+-- Autor: Génesis Escobar
+-- Fecha: 06-12-2025
+-- Descripción:
+-- Bandeja de salida (outbox) de los cambios de pacientes. El servicio inserta
+-- una fila por cambio en la misma transacción que modifica paciente, así el
+-- evento existe si y solo si el cambio se confirmó. DespachadorOutbox la
+-- vacía en segundo plano hacia el destino configurado (hospital.outbox.destino)
+-- y borra las filas entregadas.
+--
+-- idx_outbox_paciente sirve para entregar en orden por paciente: solo se
+-- despacha la fila más antigua de cada paciente (no existe otra con menor id).
+-- idx_outbox_proximo permite saltar las filas que esperan un reintento.
+
+CREATE TABLE paciente_outbox (
+    id              BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    id_paciente     INT          NOT NULL,
+    tipo            VARCHAR(20)  NOT NULL,
+    carga           TEXT         NOT NULL,
+    creado          TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    intentos        INT          NOT NULL DEFAULT 0,
+    proximo_intento TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    ultimo_error    VARCHAR(500) NULL,
+    KEY idx_outbox_paciente (id_paciente, id),
+    KEY idx_outbox_proximo (proximo_intento)
+);
@@ -0,0 +1,18 @@
+-- Autor: Génesis Escobar
+-- Fecha: 06-12-2025
+-- Descripción:
+-- La cédula identifica a un paciente: se vuelve única para que un reintento
+-- del cliente (o dos recepcionistas a la vez) no registren dos veces a la
+-- misma persona. MySQL verifica la unicidad con el mismo índice al insertar,
+-- sin consultas adicionales desde la aplicación; el servicio traduce el error
+-- 1062 (entrada duplicada) a HTTP 409.
+--
+-- El índice único reemplaza a idx_paciente_cedula (002) y sigue sirviendo a
+-- la búsqueda por prefijo de cédula.
+--
+-- Antes de aplicar, revisar que no existan duplicados:
+--   SELECT cedula, COUNT(*) FROM paciente GROUP BY cedula HAVING COUNT(*) > 1;
+
+ALTER TABLE paciente
+    DROP INDEX idx_paciente_cedula,
+    ADD UNIQUE INDEX uk_paciente_cedula (cedula);
@@ -0,0 +1,32 @@
+-- Autor: Génesis Escobar
+-- Fecha: 06-12-2025
+-- Descripción:
+-- Reemplaza los triggers de 003 por una versión fragmentada que incrementa la
+-- aplicación. Con los triggers cada fila insertada, modificada o borrada
+-- actualizaba la única fila de tabla_version y la dejaba bloqueada hasta el
+-- commit: todas las transacciones que escribían en paciente se confirmaban de
+-- a una, y un UPDATE de 500 filas hacía 500 incrementos.
+--
+-- Ahora la versión se reparte en 16 fragmentos (tabla, fragmento). Cada
+-- transacción que cambia pacientes incrementa una sola vez un fragmento
+-- elegido al azar (PacienteRepository.incrementarVersion), y la versión de la
+-- tabla es la suma de los fragmentos. La suma nunca baja y cambia con cada
+-- commit que modifica pacientes, que es lo que necesita la ETag del listado.
+--
+-- Aplicar junto con la versión de la aplicación que incrementa la versión:
+-- sin triggers y con la aplicación anterior, los cambios no cambiarían la ETag.
+
+DROP TRIGGER IF EXISTS trg_paciente_version_insert;
+DROP TRIGGER IF EXISTS trg_paciente_version_update;
+DROP TRIGGER IF EXISTS trg_paciente_version_delete;
+
+ALTER TABLE tabla_version
+    ADD COLUMN fragmento TINYINT NOT NULL DEFAULT 0 AFTER tabla,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (tabla, fragmento);
+
+INSERT INTO tabla_version (tabla, fragmento, version) VALUES
+    ('paciente', 1, 0), ('paciente', 2, 0), ('paciente', 3, 0), ('paciente', 4, 0),
+    ('paciente', 5, 0), ('paciente', 6, 0), ('paciente', 7, 0), ('paciente', 8, 0),
+    ('paciente', 9, 0), ('paciente', 10, 0), ('paciente', 11, 0), ('paciente', 12, 0),
+    ('paciente', 13, 0), ('paciente', 14, 0), ('paciente', 15, 0);
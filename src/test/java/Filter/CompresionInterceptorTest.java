@@ -0,0 +1,52 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Negociación de Accept-Encoding en CompresionInterceptor.elegir: preferencia
+ * por gzip, deflate como alternativa, q=0 como rechazo explícito y el
+ * comodín * para las codificaciones no nombradas.
+ */
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompresionInterceptorTest {
+
+    @Test
+    void sinCabeceraNoComprime() {
+        assertNull(CompresionInterceptor.elegir(null));
+        assertNull(CompresionInterceptor.elegir(" "));
+        assertNull(CompresionInterceptor.elegir("identity"));
+        assertNull(CompresionInterceptor.elegir("br"));
+    }
+
+    @Test
+    void prefiereGzip() {
+        assertEquals("gzip", CompresionInterceptor.elegir("gzip, deflate, br"));
+        assertEquals("gzip", CompresionInterceptor.elegir("deflate, gzip"));
+        assertEquals("gzip", CompresionInterceptor.elegir("GZIP"));
+        assertEquals("gzip", CompresionInterceptor.elegir("x-gzip"));
+        assertEquals("deflate", CompresionInterceptor.elegir("deflate"));
+    }
+
+    @Test
+    void respetaQCero() {
+        assertEquals("deflate", CompresionInterceptor.elegir("gzip;q=0, deflate"));
+        assertEquals("deflate", CompresionInterceptor.elegir("gzip; q=0.0, deflate;q=0.5"));
+        assertEquals("gzip", CompresionInterceptor.elegir("gzip;q=0.1"));
+        assertNull(CompresionInterceptor.elegir("gzip;q=0, deflate;q=0"));
+        // un q ilegible se trata como rechazo
+        assertNull(CompresionInterceptor.elegir("gzip;q=abc"));
+    }
+
+    @Test
+    void comodinCubreLasNoNombradas() {
+        assertEquals("gzip", CompresionInterceptor.elegir("*"));
+        assertEquals("deflate", CompresionInterceptor.elegir("gzip;q=0, *"));
+        assertNull(CompresionInterceptor.elegir("*;q=0"));
+        assertNull(CompresionInterceptor.elegir("gzip;q=0, deflate;q=0, *"));
+    }
+}
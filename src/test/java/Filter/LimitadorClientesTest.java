@@ -0,0 +1,61 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Cubeta de fichas por cliente: se admite la ráfaga completa, la siguiente
+ * solicitud recibe la espera hasta la próxima ficha, cada cliente tiene su
+ * propia cubeta y las fichas se recuperan con el tiempo.
+ */
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimitadorClientesTest {
+
+    @Test
+    void admiteLaRafagaYLuegoIndicaLaEspera() {
+        LimitadorClientes limitador = new LimitadorClientes(1, 3, 100);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limitador.intentar("10.0.0.1"));
+        }
+        long espera = limitador.intentar("10.0.0.1");
+        assertTrue(espera > 0);
+        assertTrue(espera <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void cadaClienteTieneSuCubeta() {
+        LimitadorClientes limitador = new LimitadorClientes(1, 1, 100);
+        assertEquals(0, limitador.intentar("10.0.0.1"));
+        assertTrue(limitador.intentar("10.0.0.1") > 0);
+        assertEquals(0, limitador.intentar("10.0.0.2"));
+    }
+
+    @Test
+    void lasFichasSeRecuperan() throws InterruptedException {
+        LimitadorClientes limitador = new LimitadorClientes(1_000, 1, 100);
+        assertEquals(0, limitador.intentar("10.0.0.1"));
+        long espera = limitador.intentar("10.0.0.1");
+        assertTrue(espera > 0);
+        assertTrue(espera <= TimeUnit.MILLISECONDS.toNanos(1));
+
+        Thread.sleep(5);
+        assertEquals(0, limitador.intentar("10.0.0.1"));
+    }
+
+    @Test
+    void muchosClientesNoComparten() {
+        // superar el máximo de clientes no vacía la cubeta de quien está limitado
+        LimitadorClientes limitador = new LimitadorClientes(1, 1, 2);
+        assertEquals(0, limitador.intentar("10.0.0.1"));
+        for (int i = 2; i < 10; i++) {
+            assertEquals(0, limitador.intentar("10.0.0." + i));
+        }
+        assertTrue(limitador.intentar("10.0.0.1") > 0);
+    }
+}
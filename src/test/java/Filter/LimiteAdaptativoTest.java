@@ -0,0 +1,121 @@
+package Filter;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Ajuste AIMD del límite de concurrencia: rechazo al llegar al límite, suba
+ * aditiva solo con la clase ocupada, baja multiplicativa por sobrecarga o
+ * latencia (una vez por latencia objetivo) y límite fijo con mínimo = máximo.
+ * Cada prueba usa una clase propia para no compartir configuración ni métricas.
+ */
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimiteAdaptativoTest {
+
+    // latencia objetivo larga: las respuestas de la prueba son siempre rápidas
+    private static final long OBJETIVO_MS = 10_000;
+
+    @Test
+    void rechazaAlLlegarAlLimite() {
+        LimiteAdaptativo limite = new LimiteAdaptativo("prueba-rechazo", 2, 1, 10, OBJETIVO_MS);
+        assertTrue(limite.adquirir());
+        assertTrue(limite.adquirir());
+        assertFalse(limite.adquirir());
+        assertEquals(2, limite.getEnCurso());
+
+        limite.liberar(System.nanoTime(), false);
+        assertEquals(1, limite.getEnCurso());
+        assertTrue(limite.adquirir());
+    }
+
+    @Test
+    void subeSoloConLaClaseOcupada() {
+        LimiteAdaptativo limite = new LimiteAdaptativo("prueba-subida", 4, 1, 10, OBJETIVO_MS);
+
+        // una sola solicitud en curso no llega a la mitad del límite: no crece
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limite.adquirir());
+            limite.liberar(System.nanoTime(), false);
+        }
+        assertEquals(4, limite.getLimite());
+
+        // con dos solicitudes retenidas sube 1/limite por cada respuesta rápida
+        assertTrue(limite.adquirir());
+        assertTrue(limite.adquirir());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limite.adquirir());
+            limite.liberar(System.nanoTime(), false);
+        }
+        assertEquals(5, limite.getLimite());
+    }
+
+    @Test
+    void noSuperaElMaximo() {
+        LimiteAdaptativo limite = new LimiteAdaptativo("prueba-maximo", 2, 1, 2, OBJETIVO_MS);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limite.adquirir());
+            assertTrue(limite.adquirir());
+            limite.liberar(System.nanoTime(), false);
+            limite.liberar(System.nanoTime(), false);
+        }
+        assertEquals(2, limite.getLimite());
+    }
+
+    @Test
+    void bajaUnaVezPorLatenciaObjetivo() {
+        LimiteAdaptativo limite = new LimiteAdaptativo("prueba-bajada", 10, 1, 20, OBJETIVO_MS);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limite.adquirir());
+        }
+        // una ráfaga de 503 que ya estaba en curso reduce el límite una sola vez
+        for (int i = 0; i < 3; i++) {
+            limite.liberar(System.nanoTime(), true);
+        }
+        assertEquals(9, limite.getLimite());
+        assertEquals(0, limite.getEnCurso());
+    }
+
+    @Test
+    void respuestaLentaReduceElLimite() {
+        LimiteAdaptativo limite = new LimiteAdaptativo("prueba-lenta", 10, 8, 20, 1);
+        long lenta = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limite.adquirir());
+            limite.liberar(lenta, false);
+            sleep(2);
+        }
+        // nunca por debajo del mínimo
+        assertEquals(8, limite.getLimite());
+    }
+
+    @Test
+    void minimoIgualAlMaximoEsFijo() {
+        LimiteAdaptativo limite = new LimiteAdaptativo("prueba-fijo", 3, 3, 3, 1);
+        long lenta = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limite.adquirir());
+            limite.liberar(lenta, true);
+            sleep(2);
+        }
+        assertEquals(3, limite.getLimite());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limite.adquirir());
+        }
+        assertFalse(limite.adquirir());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
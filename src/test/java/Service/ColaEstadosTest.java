@@ -0,0 +1,208 @@
+package Service;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Orden entre la cola de estados diferidos y las escrituras síncronas del
+ * estado, contra una base H2 embebida en modo MySQL. Un cambio encolado antes
+ * de una escritura síncrona no debe aplicarse después de ella: al vaciar la
+ * cola el paciente queda con el estado de la escritura síncrona.
+ *
+ * La cola se configura con un intervalo muy largo para que solo se vacíe
+ * cuando alguien lo pide (la escritura síncrona o detener).
+ */
+import Model.FiltroPaciente;
+import Model.SolicitudCambioEstado;
+import Util.ProveedorConexion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColaEstadosTest {
+
+    private static final String URL = "jdbc:h2:mem:cola_estados;MODE=MySQL;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE";
+    private static final int FILAS = 10;
+
+    private static Connection conn;
+
+    @BeforeAll
+    static void crearBase() throws SQLException {
+        System.setProperty("hospital.db.url", URL);
+        System.setProperty("hospital.cache.habilitado", "false");
+        System.setProperty("hospital.estados.diferido.habilitado", "true");
+        System.setProperty("hospital.estados.diferido.intervaloMs", "600000");
+        conn = DriverManager.getConnection(URL, "root", "root");
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE paciente ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "nombre VARCHAR(100) NOT NULL, "
+                    + "cedula VARCHAR(10) NOT NULL, "
+                    + "correo VARCHAR(100), "
+                    + "edad INT, "
+                    + "direccion VARCHAR(200), "
+                    + "activo BOOLEAN DEFAULT TRUE)");
+            st.execute("CREATE TABLE tabla_version (tabla VARCHAR(64) NOT NULL, fragmento TINYINT NOT NULL, "
+                    + "version BIGINT NOT NULL, PRIMARY KEY (tabla, fragmento))");
+            for (int fragmento = 0; fragmento < 16; fragmento++) {
+                st.execute("INSERT INTO tabla_version VALUES ('paciente', " + fragmento + ", 0)");
+            }
+        }
+        String sql = "INSERT INTO paciente (nombre, cedula, correo, edad, direccion, activo) VALUES (?, ?, ?, ?, ?, TRUE)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= FILAS; i++) {
+                ps.setString(1, "Paciente " + i);
+                ps.setString(2, "1710034065");
+                ps.setString(3, "paciente" + i + "@example.com");
+                ps.setInt(4, 20 + i);
+                ps.setString(5, "Quito");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @BeforeEach
+    void iniciarCola() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("UPDATE paciente SET activo = TRUE");
+        }
+        ColaEstados.iniciar();
+        assertTrue(ColaEstados.isHabilitado());
+    }
+
+    @AfterEach
+    void detenerCola() {
+        ColaEstados.detener();
+    }
+
+    @Test
+    void encoladoFalsoLuegoIfMatchVerdadero() throws Exception {
+        CompletableFuture<Boolean> encolado = ColaEstados.encolar(1, false);
+        assertNotNull(encolado);
+
+        boolean existe = enTransaccion(service -> service.cambiarEstado(1, true, Set.of("*")));
+        assertTrue(existe);
+        // la escritura síncrona esperó el commit del cambio encolado
+        assertTrue(encolado.isDone());
+        assertTrue(encolado.get());
+
+        ColaEstados.detener();
+        assertTrue(activo(1));
+    }
+
+    @Test
+    void encoladoFalsoLuegoCambioSinCola() throws Exception {
+        CompletableFuture<Boolean> encolado = ColaEstados.encolar(2, false);
+        assertNotNull(encolado);
+
+        enTransaccion(service -> {
+            service.cambiarEstado(2, true);
+            return null;
+        });
+        assertTrue(encolado.get(1, TimeUnit.SECONDS));
+
+        ColaEstados.detener();
+        assertTrue(activo(2));
+    }
+
+    @Test
+    void pacienteInexistenteIgualConYSinCola() throws Exception {
+        // la cola confirma false y el camino directo también (404 en ambos)
+        CompletableFuture<Boolean> encolado = ColaEstados.encolar(999, false);
+        assertNotNull(encolado);
+        ColaEstados.detener();
+        assertFalse(encolado.get());
+
+        boolean existe = enTransaccion(service -> service.cambiarEstado(999, false, null));
+        assertFalse(existe);
+        existe = enTransaccion(service -> service.cambiarEstado(1, true, null));
+        assertTrue(existe);
+    }
+
+    @Test
+    void encoladoLuegoCambioMasivoPorIds() throws Exception {
+        CompletableFuture<Boolean> encolado = ColaEstados.encolar(3, true);
+        assertNotNull(encolado);
+
+        SolicitudCambioEstado solicitud = new SolicitudCambioEstado();
+        solicitud.setActivo(false);
+        solicitud.setIds(new ArrayList<>(List.of(3, 5)));
+        assertNull(enTransaccion(service -> service.cambiarEstadoMasivo(solicitud)).getError());
+        assertTrue(encolado.isDone());
+
+        ColaEstados.detener();
+        assertFalse(activo(3));
+        assertFalse(activo(5));
+    }
+
+    @Test
+    void encoladoLuegoCambioMasivoPorFiltro() throws Exception {
+        // el filtro no conoce los ids de antemano: se espera toda la cola
+        CompletableFuture<Boolean> coincide = ColaEstados.encolar(9, true);
+        CompletableFuture<Boolean> otro = ColaEstados.encolar(4, false);
+        assertNotNull(coincide);
+        assertNotNull(otro);
+
+        FiltroPaciente filtro = new FiltroPaciente();
+        filtro.setEdadMin(28);
+        SolicitudCambioEstado solicitud = new SolicitudCambioEstado();
+        solicitud.setActivo(false);
+        solicitud.setFiltro(filtro);
+        assertNull(enTransaccion(service -> service.cambiarEstadoMasivo(solicitud)).getError());
+        assertTrue(coincide.isDone());
+        assertTrue(otro.isDone());
+
+        ColaEstados.detener();
+        assertFalse(activo(8));
+        assertFalse(activo(9));
+        assertFalse(activo(10));
+        assertFalse(activo(4));
+    }
+
+    /**
+     * Ejecuta la operación como una solicitud: proveedor del pool, commit y cierre.
+     */
+    private static <T> T enTransaccion(Function<PacienteService, T> operacion) throws SQLException {
+        ProveedorConexion proveedor = new ProveedorConexion();
+        try {
+            T resultado = operacion.apply(new PacienteServiceImpl(proveedor));
+            proveedor.confirmar();
+            return resultado;
+        } catch (RuntimeException e) {
+            proveedor.deshacer();
+            throw e;
+        } finally {
+            proveedor.cerrar();
+        }
+    }
+
+    private static boolean activo(int id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT activo FROM paciente WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Comportamiento del pool de conexiones contra una base H2 en memoria:
+ * espera con tiempo límite cuando está agotado, descarte de conexiones rotas
+ * al prestar, desalojo de inactivas y reciclaje por tiempo de vida máximo.
+ *
+ * Cada prueba fija los límites del pool como propiedades del sistema antes de
+ * crearlo (el pool las lee una sola vez) y las borra al terminar. La conexión
+ * física detrás de un préstamo se obtiene con unwrap(Connection.class).
+ */
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoolConexionesTest {
+
+    private static final String URL = "jdbc:h2:mem:pool_conexiones;DB_CLOSE_DELAY=-1";
+    private static final String[] CLAVES = {"maximo", "minimoInactivas", "esperaMaximaMs",
+            "inactividadMaximaMs", "vidaMaximaMs"};
+
+    private PoolConexiones pool;
+
+    @AfterEach
+    void cerrar() {
+        if (pool != null) {
+            pool.close();
+        }
+        for (String clave : CLAVES) {
+            System.clearProperty("hospital.db.pool." + clave);
+        }
+    }
+
+    @Test
+    void agotadoEsperaYLanzaPoolAgotado() throws Exception {
+        pool = crear("agotado", 2, 0, 300_000, 1_800_000);
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        assertEquals(2, pool.getActivas());
+
+        long inicio = System.nanoTime();
+        assertThrows(PoolAgotadoException.class, () -> pool.obtener(100));
+        assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, pool.getEsperando());
+
+        // quien espera recibe la conexión devuelta
+        CompletableFuture<Connection> espera = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.obtener(5_000);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Connection fisicaA = a.unwrap(Connection.class);
+        a.close();
+        Connection c = espera.get(5, TimeUnit.SECONDS);
+        assertSame(fisicaA, c.unwrap(Connection.class));
+        assertEquals(2, pool.estadisticas().get("total"));
+
+        b.close();
+        c.close();
+        assertEquals(0, pool.getActivas());
+        assertEquals(2, pool.getInactivas());
+    }
+
+    @Test
+    void prestamoDevueltoNoSePuedeUsar() throws Exception {
+        pool = crear("devuelto", 1, 0, 300_000, 1_800_000);
+        Connection prestada = pool.getConnection();
+        prestada.close();
+        prestada.close(); // la segunda vez no devuelve la conexión de nuevo
+        assertTrue(prestada.isClosed());
+        assertThrows(SQLException.class, prestada::createStatement);
+        assertEquals(1, pool.getInactivas());
+    }
+
+    @Test
+    void conexionRotaSeDescartaAlPrestar() throws Exception {
+        pool = crear("validacion", 1, 0, 300_000, 1_800_000);
+        Connection prestada = pool.getConnection();
+        Connection fisica = prestada.unwrap(Connection.class);
+        prestada.close();
+        fisica.close(); // la conexión se cae mientras está en el pool
+
+        // pasada la ventana sin validación, isValid detecta la conexión rota
+        Thread.sleep(600);
+        try (Connection nueva = pool.getConnection()) {
+            assertNotSame(fisica, nueva.unwrap(Connection.class));
+            assertTrue(nueva.isValid(1));
+        }
+        assertEquals(1, pool.estadisticas().get("total"));
+    }
+
+    @Test
+    void desalojaInactivasConservandoElMinimo() throws Exception {
+        pool = crear("desalojo", 3, 1, 1, 1_800_000);
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        Connection c = pool.getConnection();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.getInactivas());
+
+        Thread.sleep(20);
+        pool.desalojar();
+        assertEquals(1, pool.getInactivas());
+        assertEquals(1, pool.estadisticas().get("total"));
+    }
+
+    @Test
+    void vidaMaximaReciclaLaConexion() throws Exception {
+        pool = crear("vida", 1, 0, 300_000, 50);
+
+        // vencida mientras estaba prestada: se cierra al devolverla
+        Connection prestada = pool.getConnection();
+        Connection fisica = prestada.unwrap(Connection.class);
+        Thread.sleep(80);
+        prestada.close();
+        assertTrue(fisica.isClosed());
+        assertEquals(0, pool.getInactivas());
+        assertEquals(0, pool.estadisticas().get("total"));
+
+        // vencida en el pool: se descarta al prestar y se abre otra
+        prestada = pool.getConnection();
+        fisica = prestada.unwrap(Connection.class);
+        prestada.close();
+        assertEquals(1, pool.getInactivas());
+        Thread.sleep(80);
+        try (Connection nueva = pool.getConnection()) {
+            assertNotSame(fisica, nueva.unwrap(Connection.class));
+        }
+        assertTrue(fisica.isClosed());
+        assertFalse(pool.getInactivas() > 1);
+    }
+
+    private static PoolConexiones crear(String nombre, int maximo, int minimoInactivas,
+                                        long inactividadMaximaMs, long vidaMaximaMs) {
+        System.setProperty("hospital.db.pool.maximo", String.valueOf(maximo));
+        System.setProperty("hospital.db.pool.minimoInactivas", String.valueOf(minimoInactivas));
+        System.setProperty("hospital.db.pool.esperaMaximaMs", "5000");
+        System.setProperty("hospital.db.pool.inactividadMaximaMs", String.valueOf(inactividadMaximaMs));
+        System.setProperty("hospital.db.pool.vidaMaximaMs", String.valueOf(vidaMaximaMs));
+        Properties propiedades = new Properties();
+        propiedades.setProperty("user", "sa");
+        propiedades.setProperty("password", "");
+        return PoolConexiones.crear("prueba-" + nombre, URL, propiedades);
+    }
+}
@@ -0,0 +1,106 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Ciclo de vida de una clave en el registro de idempotencia: reserva,
+ * agrupación de solicitudes idénticas en curso, rechazo de una clave reutilizada
+ * con otra huella, liberación tras un error 5xx y límites de vencimiento y
+ * capacidad. Cada prueba usa su propia instancia del registro.
+ */
+import Util.RegistroIdempotencia.Estado;
+import Util.RegistroIdempotencia.Reserva;
+import Util.RegistroIdempotencia.Respuesta;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RegistroIdempotenciaTest {
+
+    private static final String HUELLA = "POST /pacientes abc";
+    private static final Respuesta CREADO = new Respuesta(201, "{\"id\": 7}");
+    private static final Respuesta ERROR = new Respuesta(500, "{\"error\": \"Error interno\"}");
+
+    private final RegistroIdempotencia registro = new RegistroIdempotencia(100, 60_000);
+
+    @Test
+    void reintentoRepiteLaRespuestaGuardada() throws Exception {
+        Reserva original = registro.reservar("k1", HUELLA);
+        assertEquals(Estado.NUEVA, original.estado());
+        registro.terminar("k1", original, CREADO, true);
+
+        Reserva reintento = registro.reservar("k1", HUELLA);
+        assertEquals(Estado.COMPLETADA, reintento.estado());
+        assertEquals(CREADO, reintento.resultado().get());
+    }
+
+    @Test
+    void solicitudesEnCursoSeAgrupan() throws Exception {
+        Reserva original = registro.reservar("k2", HUELLA);
+        Reserva agrupada = registro.reservar("k2", HUELLA);
+        assertEquals(Estado.EN_CURSO, agrupada.estado());
+        assertSame(original.resultado(), agrupada.resultado());
+        assertFalse(agrupada.resultado().isDone());
+
+        registro.terminar("k2", original, CREADO, true);
+        assertEquals(CREADO, agrupada.resultado().get());
+    }
+
+    @Test
+    void huellaDistintaSeRechaza() throws Exception {
+        Reserva original = registro.reservar("k3", HUELLA);
+        Reserva otra = registro.reservar("k3", "POST /pacientes xyz");
+        assertEquals(Estado.HUELLA_DISTINTA, otra.estado());
+        assertNull(otra.resultado());
+
+        // el conflicto no altera la reserva original
+        registro.terminar("k3", original, CREADO, true);
+        assertEquals(Estado.HUELLA_DISTINTA, registro.reservar("k3", "POST /pacientes xyz").estado());
+        assertEquals(CREADO, registro.reservar("k3", HUELLA).resultado().get());
+    }
+
+    @Test
+    void error5xxLiberaLaClave() throws Exception {
+        Reserva original = registro.reservar("k4", HUELLA);
+        Reserva agrupada = registro.reservar("k4", HUELLA);
+        registro.terminar("k4", original, ERROR, false);
+
+        // quien esperaba recibe el error, pero el siguiente reintento se ejecuta
+        assertEquals(ERROR, agrupada.resultado().get());
+        Reserva reintento = registro.reservar("k4", HUELLA);
+        assertEquals(Estado.NUEVA, reintento.estado());
+        assertNotSame(original.resultado(), reintento.resultado());
+    }
+
+    @Test
+    void liberarUnaReservaViejaNoQuitaLaNueva() throws Exception {
+        Reserva vieja = registro.reservar("k5", HUELLA);
+        registro.terminar("k5", vieja, ERROR, false);
+        Reserva nueva = registro.reservar("k5", HUELLA);
+        assertEquals(Estado.NUEVA, nueva.estado());
+
+        registro.terminar("k5", vieja, ERROR, false);
+        assertEquals(Estado.EN_CURSO, registro.reservar("k5", HUELLA).estado());
+    }
+
+    @Test
+    void clavesVencidasYExcedentesSeDescartan() {
+        RegistroIdempotencia vencido = new RegistroIdempotencia(100, -1);
+        Reserva reserva = vencido.reservar("k6", HUELLA);
+        vencido.terminar("k6", reserva, CREADO, true);
+        assertEquals(Estado.NUEVA, vencido.reservar("k6", HUELLA).estado());
+
+        // al superar la capacidad se descarta la clave más antigua
+        RegistroIdempotencia acotado = new RegistroIdempotencia(2, 60_000);
+        acotado.reservar("a", HUELLA);
+        acotado.reservar("b", HUELLA);
+        acotado.reservar("c", HUELLA);
+        assertEquals(Estado.EN_CURSO, acotado.reservar("c", HUELLA).estado());
+        assertEquals(Estado.NUEVA, acotado.reservar("a", HUELLA).estado());
+    }
+}
@@ -0,0 +1,171 @@
+package Util;
+/*
+ * Autor: Génesis Escobar
+ * Fecha: 06-12-2025
+ * Versión: 1.0
+ * Descripción:
+ * Prueba de equivalencia entre ValidadorCedula y la implementación anterior
+ * (expresión regular, substring y arreglo de coeficientes), que se conserva
+ * aquí como referencia. Se recorren todos los prefijos de provincia y tercer
+ * dígito con todos los dígitos verificadores, y además cadenas aleatorias de
+ * largo y caracteres variados (letras, signos, dígitos no ASCII). Las cuatro
+ * entradas (String, CharSequence, byte[] y validarLote) deben coincidir con la
+ * referencia en cada caso.
+ */
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidadorCedulaTest {
+
+    // Semilla fija: una falla se puede reproducir
+    private static final long SEMILLA = 20251206L;
+
+    // Caracteres de las cadenas aleatorias: sobre todo dígitos, más algunos que deben rechazarse
+    private static final char[] ALFABETO = ("0123456789012345678901234567890123456789"
+            + "a Z-+.٠٣٩０５²").toCharArray();
+
+    @Test
+    void casosConocidos() {
+        assertTrue(ValidadorCedula.esCedulaValida("1710034065"));
+        assertTrue(ValidadorCedula.esCedulaValida("0926687856"));
+        assertFalse(ValidadorCedula.esCedulaValida("1710034066"));
+        assertFalse(ValidadorCedula.esCedulaValida("2510034065"));
+        assertFalse(ValidadorCedula.esCedulaValida("1760034065"));
+        assertFalse(ValidadorCedula.esCedulaValida(""));
+        assertFalse(ValidadorCedula.esCedulaValida((String) null));
+        assertFalse(ValidadorCedula.esCedulaValida((CharSequence) null));
+        assertFalse(ValidadorCedula.esCedulaValida(null, 0, 10));
+    }
+
+    @Test
+    void todosLosPrefijosYDigitosVerificadores() {
+        Random aleatorio = new Random(SEMILLA);
+        char[] cedula = new char[10];
+        int validas = 0;
+        for (int prefijo = 0; prefijo < 1_000; prefijo++) {
+            cedula[0] = (char) ('0' + prefijo / 100);
+            cedula[1] = (char) ('0' + prefijo / 10 % 10);
+            cedula[2] = (char) ('0' + prefijo % 10);
+            for (int muestra = 0; muestra < 100; muestra++) {
+                for (int i = 3; i < 9; i++) {
+                    cedula[i] = (char) ('0' + aleatorio.nextInt(10));
+                }
+                for (int verificador = 0; verificador < 10; verificador++) {
+                    cedula[9] = (char) ('0' + verificador);
+                    if (comparar(new String(cedula))) {
+                        validas++;
+                    }
+                }
+            }
+        }
+        // 24 provincias x 6 terceros dígitos x 100 muestras: exactamente un verificador válido
+        assertEquals(24 * 6 * 100, validas);
+    }
+
+    @Test
+    void cadenasAleatorias() {
+        Random aleatorio = new Random(SEMILLA + 1);
+        List<String> lote = new ArrayList<>();
+        for (int n = 0; n < 500_000; n++) {
+            int largo = 8 + aleatorio.nextInt(5);
+            StringBuilder texto = new StringBuilder(largo);
+            for (int i = 0; i < largo; i++) {
+                texto.append(ALFABETO[aleatorio.nextInt(ALFABETO.length)]);
+            }
+            String cedula = texto.toString();
+            comparar(cedula);
+            if (lote.size() < 10_000) {
+                lote.add(cedula);
+            }
+        }
+        compararLote(lote);
+    }
+
+    @Test
+    void loteConValidasEInvalidas() {
+        Random aleatorio = new Random(SEMILLA + 2);
+        List<CharSequence> lote = new ArrayList<>();
+        for (int n = 0; n < 5_000; n++) {
+            StringBuilder cedula = new StringBuilder();
+            cedula.append(String.format("%02d", 1 + aleatorio.nextInt(24)));
+            for (int i = 2; i < 10; i++) {
+                cedula.append((char) ('0' + aleatorio.nextInt(10)));
+            }
+            lote.add(cedula);
+        }
+        lote.add(null);
+        lote.add("");
+        compararLote(lote);
+    }
+
+    @Test
+    void bytesFueraDeRango() {
+        byte[] datos = "xx1710034065yy".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(ValidadorCedula.esCedulaValida(datos, 2, 10));
+        assertFalse(ValidadorCedula.esCedulaValida(datos, 2, 9));
+        assertFalse(ValidadorCedula.esCedulaValida(datos, -1, 10));
+        assertFalse(ValidadorCedula.esCedulaValida(datos, 5, 10));
+        assertFalse(ValidadorCedula.esCedulaValida(datos, Integer.MAX_VALUE, 10));
+    }
+
+    /**
+     * Compara las entradas String, CharSequence y byte[] (con un desplazamiento
+     * dentro de un arreglo más grande) contra la referencia.
+     */
+    private static boolean comparar(String cedula) {
+        boolean esperado = validarAnterior(cedula);
+        assertEquals(esperado, ValidadorCedula.esCedulaValida(cedula), cedula);
+        assertEquals(esperado, ValidadorCedula.esCedulaValida(new StringBuilder(cedula)), cedula);
+        // Los caracteres no ASCII se codifican en UTF-8, como llegarían en el cuerpo
+        byte[] bytes = ("[" + cedula + "]").getBytes(StandardCharsets.UTF_8);
+        assertEquals(esperado, ValidadorCedula.esCedulaValida(bytes, 1, bytes.length - 2), cedula);
+        return esperado;
+    }
+
+    private static void compararLote(List<? extends CharSequence> lote) {
+        BitSet validas = ValidadorCedula.validarLote(lote);
+        for (int i = 0; i < lote.size(); i++) {
+            CharSequence cedula = lote.get(i);
+            assertEquals(validarAnterior(cedula == null ? null : cedula.toString()), validas.get(i),
+                    "posición " + i + ": " + cedula);
+        }
+    }
+
+    /**
+     * Implementación anterior de ValidadorCedula.esCedulaValida, sin cambios.
+     */
+    private static boolean validarAnterior(String cedula) {
+        if (cedula == null || !cedula.matches("\\d{10}")) {
+            return false;
+        }
+        int provincia = Integer.parseInt(cedula.substring(0, 2));
+        if (provincia < 1 || provincia > 24) {
+            return false;
+        }
+        int tercerDigito = Character.getNumericValue(cedula.charAt(2));
+        if (tercerDigito >= 6) {
+            return false;
+        }
+        int[] coeficientes = {2, 1, 2, 1, 2, 1, 2, 1, 2};
+        int suma = 0;
+        for (int i = 0; i < 9; i++) {
+            int valor = Character.getNumericValue(cedula.charAt(i)) * coeficientes[i];
+            if (valor >= 10) valor -= 9;
+            suma += valor;
+        }
+        int digitoVerficador = Character.getNumericValue(cedula.charAt(9));
+        int decenaSuperior = ((suma + 9) / 10) * 10;
+        int resultado = decenaSuperior - suma;
+        if (resultado == 10) resultado = 0;
+        return resultado == digitoVerficador;
+    }
+}